@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.networknt.light.loader.SourceFinder;
+import com.networknt.light.rule.LoadRuleMojo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Listing a source tree, the old recursive walk against SourceFinder. One operation lists the whole tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileWalkBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int files;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private File root;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = SourceTree.rules(files);
+    }
+
+    @Benchmark
+    public List<String> fillListWithAllFilesRecursiveTask() {
+        List<String> list = new ArrayList<String>();
+        LoadRuleMojo.fillListWithAllFilesRecursiveTask(root, list);
+        return list;
+    }
+
+    @Benchmark
+    public List<File> sourceFinder() throws Exception {
+        final List<File> list = new ArrayList<File>();
+        new SourceFinder(Collections.singletonList(root), Collections.singletonList("**/*.java"),
+                Collections.<String>emptyList(), threads).find(new SourceFinder.Visitor() {
+            public void visit(File file) {
+                list.add(file);
+            }
+        });
+        return list;
+    }
+}
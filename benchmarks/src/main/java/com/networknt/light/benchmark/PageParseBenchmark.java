@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.networknt.light.loader.ContentLoader;
+import com.networknt.light.loader.PageContentType;
+import com.networknt.light.loader.SourceReader;
+import com.networknt.light.server.LoadPageMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * parseFile of the page loader over a whole tree when the server already has every page: each file is read and diffed against
+ * the page map, and nothing is uploaded. digestMode switches the map from contents to digests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PageParseBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int files;
+
+    @Param({"false", "true"})
+    public boolean digestMode;
+
+    private final List<String> paths = new ArrayList<String>();
+    private ContentLoader loader;
+
+    @Setup
+    public void setUp() throws IOException {
+        File root = SourceTree.pages(files);
+        LoadPageMojo.fillListWithAllFilesRecursiveTask(root, paths);
+        SourceReader reader = new SourceReader("UTF-8");
+        Map<String, String> pageMap = new ConcurrentHashMap<String, String>();
+        for (String path : paths) {
+            File file = new File(path);
+            SourceReader.Source source = reader.read(file);
+            pageMap.put(LoadPageMojo.getFileName(file), digestMode ? source.getDigest() : source.getText());
+        }
+        loader = new ContentLoader(new SystemStreamLog(), "page", root);
+        loader.addType(new PageContentType());
+        loader.setSources(Collections.singletonList(root), null, null, "UTF-8");
+        loader.setDigestMode(digestMode);
+        loader.setServerMap("page", pageMap);
+    }
+
+    @Benchmark
+    public void parsePageFile() throws MojoExecutionException {
+        for (String path : paths) {
+            loader.parseFile(path);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.networknt.light.loader.ContentLoader;
+import com.networknt.light.loader.RuleClassifier;
+import com.networknt.light.loader.RuleContentType;
+import com.networknt.light.loader.SourceReader;
+import com.networknt.light.rule.LoadRuleMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * parseFile of the rule loader over a whole tree when the server already has every rule: each file is read, classified and
+ * diffed against the rule map, and nothing is uploaded. digestMode switches the map from sources to digests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RuleParseBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int files;
+
+    @Param({"false", "true"})
+    public boolean digestMode;
+
+    private final List<String> paths = new ArrayList<String>();
+    private ContentLoader loader;
+
+    @Setup
+    public void setUp() throws IOException {
+        File root = SourceTree.rules(files);
+        LoadRuleMojo.fillListWithAllFilesRecursiveTask(root, paths);
+        SourceReader reader = new SourceReader("UTF-8");
+        Map<String, String> ruleMap = new ConcurrentHashMap<String, String>();
+        for (String path : paths) {
+            File file = new File(path);
+            SourceReader.Source source = reader.read(file);
+            String className = LoadRuleMojo.getClassName(file);
+            RuleClassifier.Result header = RuleClassifier.classify(source.getBytes(), source.getLength(), true,
+                    className);
+            if (header.isRule()) {
+                ruleMap.put(header.getPackageName() + "." + className,
+                        digestMode ? source.getDigest() : source.getText());
+            }
+        }
+        loader = new ContentLoader(new SystemStreamLog(), "rule", root);
+        loader.addType(new RuleContentType());
+        loader.setSources(Collections.singletonList(root), null, null, "UTF-8");
+        loader.setDigestMode(digestMode);
+        loader.setServerMap("rule", ruleMap);
+    }
+
+    @Benchmark
+    public void parseRuleFile() throws MojoExecutionException {
+        for (String path : paths) {
+            loader.parseFile(path);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.networknt.light.loader.JsonResponses;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading the rule map returned by the server, keeping the sources or reducing each one to its digest while the
+ * response is parsed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ServerMapBenchmark {
+
+    @Param({"1000", "10000"})
+    public int entries;
+
+    @Param({"false", "true"})
+    public boolean digest;
+
+    private byte[] response;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(entries);
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        for (int i = 0; i < entries; i++) {
+            String className = "Generated" + i + "Rule";
+            map.put("com.networknt.light.rule.generated." + className,
+                    SourceTree.rule(random, "com.networknt.light.rule.generated", className, true));
+        }
+        response = new ObjectMapper().writeValueAsBytes(map);
+    }
+
+    @Benchmark
+    public Map<String, String> readStringMap() throws IOException {
+        return JsonResponses.readStringMap(new ByteArrayInputStream(response), digest);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Generates synthetic source trees for the benchmarks. Trees are written once to java.io.tmpdir and reused by
+ * later runs, the same size and kind always gives the same files.
+ *
+ * Rule trees hold Java sources of 1 to 32 KB, mostly around 4 KB, of which four out of five implement Rule.
+ * Page trees hold html pages of 2 to 64 KB. There are 50 files per directory and 20 directories per level.
+ */
+public class SourceTree {
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int FILES_PER_DIRECTORY = 50;
+    private static final int DIRECTORIES_PER_LEVEL = 20;
+
+    public static File rules(int files) throws IOException {
+        return generate("rule", files);
+    }
+
+    public static File pages(int files) throws IOException {
+        return generate("page", files);
+    }
+
+    private static synchronized File generate(String kind, int files) throws IOException {
+        File root = new File(System.getProperty("java.io.tmpdir"), "light-benchmark/" + kind + "-" + files);
+        File done = new File(root, ".complete");
+        if (done.exists()) {
+            return root;
+        }
+        Random random = new Random(files);
+        for (int i = 0; i < files; i++) {
+            File directory = new File(root, directory(i / FILES_PER_DIRECTORY));
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create " + directory);
+            }
+            String content;
+            String name;
+            if ("rule".equals(kind)) {
+                name = "Generated" + i + "Rule";
+                content = rule(random, packageName(directory, root), name, random.nextInt(5) != 0);
+                name += ".java";
+            } else {
+                name = "page" + i;
+                content = page(random, name);
+                name += ".html";
+            }
+            write(new File(directory, name), content);
+        }
+        write(done, "");
+        return root;
+    }
+
+    /**
+     * Path of the n-th leaf directory, e.g. d03/d07 for n = 67.
+     */
+    private static String directory(int n) {
+        StringBuilder sb = new StringBuilder();
+        do {
+            sb.insert(0, String.format("/d%02d", n % DIRECTORIES_PER_LEVEL));
+            n /= DIRECTORIES_PER_LEVEL;
+        } while (n > 0);
+        return sb.substring(1);
+    }
+
+    private static String packageName(File directory, File root) {
+        String relative = directory.getPath().substring(root.getPath().length() + 1);
+        return "com.networknt.light.rule.generated." + relative.replace(File.separatorChar, '.');
+    }
+
+    /**
+     * Size in bytes, log-normal around median with a floor and a ceiling.
+     */
+    private static int size(Random random, int median, int min, int max) {
+        double size = median * Math.exp(random.nextGaussian() * 0.7);
+        return (int) Math.max(min, Math.min(max, size));
+    }
+
+    static String rule(Random random, String packageName, String className, boolean rule) {
+        StringBuilder sb = new StringBuilder(8192);
+        sb.append("/*\n * Copyright 2015 Network New Technologies Inc.\n *\n")
+                .append(" * Licensed under the Apache License, Version 2.0 (the \"License\");\n */\n\n")
+                .append("package ").append(packageName).append(";\n\n")
+                .append("import com.networknt.light.rule.AbstractRule;\n")
+                .append("import com.networknt.light.rule.Rule;\n")
+                .append("import com.networknt.light.util.ServiceLocator;\n")
+                .append("import java.util.Map;\n\n")
+                .append("/**\n * Generated ").append(rule ? "rule" : "helper").append(" for benchmarks.\n */\n")
+                .append("public class ").append(className).append(" extends AbstractRule")
+                .append(rule ? " implements Rule {\n" : " {\n");
+        int target = size(random, 4096, 1024, 32768);
+        int method = 0;
+        while (sb.length() < target) {
+            sb.append("    public boolean execute").append(method++).append("(Object ...objects) throws Exception {\n")
+                    .append("        Map<String, Object> inputMap = (Map<String, Object>) objects[0];\n")
+                    .append("        Map<String, Object> data = (Map<String, Object>) inputMap.get(\"data\");\n")
+                    .append("        String host = (String) data.get(\"host\");\n")
+                    .append("        if (host == null) {\n")
+                    .append("            inputMap.put(\"result\", \"Host is missing\");\n")
+                    .append("            inputMap.put(\"responseCode\", 400);\n")
+                    .append("            return false;\n        }\n")
+                    .append("        // value ").append(random.nextLong()).append('\n')
+                    .append("        return true;\n    }\n\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    static String page(Random random, String id) {
+        StringBuilder sb = new StringBuilder(16384);
+        sb.append("<div class=\"container\" ng-controller=\"").append(id).append("Ctrl\">\n")
+                .append("  <h2>{{title}}</h2>\n");
+        int target = size(random, 8192, 2048, 65536);
+        while (sb.length() < target) {
+            sb.append("  <div class=\"row\">\n")
+                    .append("    <div class=\"col-md-6\">\n")
+                    .append("      <label for=\"field").append(random.nextInt(1000)).append("\">Name</label>\n")
+                    .append("      <input type=\"text\" class=\"form-control\" ng-model=\"data.name\"/>\n")
+                    .append("    </div>\n")
+                    .append("    <p>").append(Long.toHexString(random.nextLong())).append("</p>\n")
+                    .append("  </div>\n");
+        }
+        sb.append("</div>\n");
+        return sb.toString();
+    }
+
+    private static void write(File file, String content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(UTF8));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.networknt.light.loader.SqlWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing the SQL output file for a number of changed rules in each dialect, 100 rows per statement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SqlWriterBenchmark {
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    @Param({"ansi", "postgresql", "mysql", "h2", "sqlserver"})
+    public String dialect;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private String[] keys;
+    private String[] values;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(rows);
+        keys = new String[rows];
+        values = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            keys[i] = "com.networknt.light.rule.generated.Generated" + i + "Rule";
+            values[i] = SourceTree.rule(random, "com.networknt.light.rule.generated", "Generated" + i + "Rule", true);
+        }
+        file = File.createTempFile("benchmark", ".sql");
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        SqlWriter writer = new SqlWriter(file, "UTF-8", "RULE", "class_name", "source_code", dialect, 100, gzip);
+        try {
+            for (int i = 0; i < rows; i++) {
+                writer.write(keys[i], values[i]);
+            }
+        } finally {
+            writer.close();
+        }
+        return file.length();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Base of the content types that use the usual category/name/data commands and compare content as text. The
+ * content is the normalized text of the file, there is no digest map and no SQL output.
+ */
+public abstract class AbstractContentType implements ContentType {
+
+    protected static Map<String, Object> command(String category, String name, boolean readOnly) {
+        Map<String, Object> command = new HashMap<String, Object>();
+        command.put("category", category);
+        command.put("name", name);
+        command.put("readOnly", readOnly);
+        return command;
+    }
+
+    protected static Map<String, Object> command(String category, String name, Map<String, Object> data) {
+        Map<String, Object> command = command(category, name, false);
+        command.put("data", data);
+        return command;
+    }
+
+    public void start(ContentLoader loader) throws MojoExecutionException {
+    }
+
+    public void stop() {
+    }
+
+    public String getContent(SourceFile source) throws IOException {
+        return source.read().getText();
+    }
+
+    public Map<String, Object> getDigestMapCommand() {
+        return null;
+    }
+
+    public boolean isChanged(String server, String content) {
+        return server == null || !server.equals(content);
+    }
+
+    public String getManifestName() {
+        return getName();
+    }
+
+    public ExportTable getExportTable() {
+        return null;
+    }
+
+    public String[] getExportValues(String id, String content, Map<String, Object> command) throws IOException {
+        return new String[]{content};
+    }
+
+    /**
+     * @return name of the file without the extension
+     */
+    protected static String getBaseName(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    public String toString() {
+        return getName();
+    }
+}
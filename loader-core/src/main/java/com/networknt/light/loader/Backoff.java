@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff between retries of a failed request. The delay doubles with each attempt up to a maximum,
+ * and half of it is random so that concurrent uploads that failed together do not all come back at the same time.
+ * A Retry-After given by the server in seconds is used instead if it is longer, as long as it is not over the
+ * maximum.
+ */
+public class Backoff {
+    private final int maxRetries;
+    private final long initialMillis;
+    private final long maxMillis;
+    private final Random random = new Random();
+
+    /**
+     * @param maxRetries number of retries after the first attempt
+     * @param initialMillis delay before the first retry
+     * @param maxMillis longest delay
+     */
+    public Backoff(int maxRetries, long initialMillis, long maxMillis) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.initialMillis = Math.max(1, initialMillis);
+        this.maxMillis = Math.max(this.initialMillis, maxMillis);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Get the delay before the next retry.
+     *
+     * @param attempt zero based number of the attempt that failed
+     * @param retryAfter value of the Retry-After header or null
+     * @return delay in milliseconds
+     */
+    public long delay(int attempt, String retryAfter) {
+        long delay = attempt >= 62 ? maxMillis : Math.min(maxMillis, initialMillis << Math.min(attempt, 30));
+        long half = delay / 2;
+        synchronized (random) {
+            delay = half + (long) (random.nextDouble() * (delay - half + 1));
+        }
+        if (retryAfter != null) {
+            try {
+                long seconds = Long.parseLong(retryAfter.trim());
+                delay = Math.max(delay, Math.min(maxMillis, seconds * 1000));
+            } catch (NumberFormatException e) {
+                // an HTTP date, use the computed delay
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * Check if a response status is worth a retry: the server timed out, is overloaded or a gateway failed.
+     */
+    public static boolean isTransient(int status) {
+        return status == 408 || status == 429 || status == 502 || status == 503 || status == 504;
+    }
+}
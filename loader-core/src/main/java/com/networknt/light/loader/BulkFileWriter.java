@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes rows to a UTF-8 data file for the bulk load command of a database, and a script next to it that loads the
+ * file. Loading a few thousand rows this way is a single statement on the server instead of one per row:
+ *
+ * copy     - CSV with header for PostgreSQL COPY. The script runs in psql, copies the file into a temporary table
+ *            with \copy and moves the rows over with INSERT ... ON CONFLICT (key) DO UPDATE, so that it can be run
+ *            again. A gzip file is read through FROM PROGRAM 'gzip -dc'.
+ * loaddata - tab separated file for MySQL LOAD DATA LOCAL INFILE ... REPLACE, which replaces rows with the same
+ *            key. LOAD DATA cannot read compressed files.
+ *
+ * The data file is named relative to the script, run the script from the directory it is in. A null value is
+ * written as NULL.
+ */
+public class BulkFileWriter implements ExportWriter {
+    public static final String[] FORMATS = {"copy", "loaddata"};
+
+    private final Writer out;
+    private final File scriptFile;
+    private final String script;
+    private final boolean csv;
+
+    /**
+     * @param dataFile data file
+     * @param scriptFile script that loads the data file
+     * @param table table name
+     * @param keyColumn primary key column
+     * @param valueColumns value columns in the order the values are passed to write
+     * @param format one of FORMATS
+     * @param gzip compress the data file
+     * @throws IOException
+     */
+    public BulkFileWriter(File dataFile, File scriptFile, String table, String keyColumn, String[] valueColumns,
+                          String format, boolean gzip) throws IOException {
+        String names = keyColumn;
+        for (String column : valueColumns) {
+            names += ", " + column;
+        }
+        String name = dataFile.getName();
+        if ("copy".equals(format)) {
+            csv = true;
+            String staging = table + "_load";
+            String source = gzip ? "PROGRAM 'gzip -dc " + name + "'" : "'" + name + "'";
+            StringBuilder update = new StringBuilder();
+            for (String column : valueColumns) {
+                update.append(update.length() > 0 ? ", " : "").append(column).append(" = EXCLUDED.").append(column);
+            }
+            script = "BEGIN;\n"
+                    + "CREATE TEMPORARY TABLE " + staging + " (LIKE " + table + " INCLUDING DEFAULTS) ON COMMIT DROP;\n"
+                    + "\\copy " + staging + " (" + names + ") FROM " + source
+                    + " WITH (FORMAT csv, HEADER true, ENCODING 'UTF8')\n"
+                    + "INSERT INTO " + table + " (" + names + ") SELECT " + names + " FROM " + staging
+                    + " ON CONFLICT (" + keyColumn + ") DO UPDATE SET " + update + ";\n"
+                    + "COMMIT;\n";
+        } else if ("loaddata".equals(format)) {
+            if (gzip) {
+                throw new IllegalArgumentException("LOAD DATA cannot read compressed files, turn off sqlGzip");
+            }
+            csv = false;
+            script = "LOAD DATA LOCAL INFILE '" + name + "' REPLACE INTO TABLE " + table + " CHARACTER SET utf8mb4"
+                    + " FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' IGNORE 1 LINES ("
+                    + names + ");\n";
+        } else {
+            throw new IllegalArgumentException("Unknown bulk load format " + format);
+        }
+        this.scriptFile = scriptFile;
+        OutputStream os = Channels.newOutputStream(FileChannel.open(dataFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        if (gzip) {
+            os = new GZIPOutputStream(os, 65536);
+        }
+        out = new BufferedWriter(new OutputStreamWriter(os, Digests.UTF8), 65536);
+        out.write(csv ? names.replace(", ", ",") : names.replace(", ", "\t"));
+        out.write('\n');
+    }
+
+    public void write(String key, String... values) throws IOException {
+        writeField(key);
+        for (String value : values) {
+            out.write(csv ? ',' : '\t');
+            writeField(value);
+        }
+        out.write('\n');
+    }
+
+    private void writeField(String value) throws IOException {
+        if (csv) {
+            // an unquoted empty field is NULL, so every value is quoted
+            if (value != null) {
+                out.write('"');
+                int start = 0;
+                for (int i = 0; i < value.length(); i++) {
+                    if (value.charAt(i) == '"') {
+                        out.write(value, start, i + 1 - start);
+                        out.write('"');
+                        start = i + 1;
+                    }
+                }
+                out.write(value, start, value.length() - start);
+                out.write('"');
+            }
+            return;
+        }
+        if (value == null) {
+            out.write("\\N");
+            return;
+        }
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            char escaped = c == '\\' ? '\\' : c == '\t' ? 't' : c == '\n' ? 'n' : c == '\r' ? 'r' : c == 0 ? '0' : 0;
+            if (escaped != 0) {
+                out.write(value, start, i - start);
+                out.write('\\');
+                out.write(escaped);
+                start = i + 1;
+            }
+        }
+        out.write(value, start, value.length() - start);
+    }
+
+    /**
+     * Finish the data file, then write the script.
+     */
+    public void close() throws IOException {
+        out.close();
+        Writer writer = new OutputStreamWriter(Channels.newOutputStream(FileChannel.open(scriptFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)),
+                Digests.UTF8);
+        try {
+            writer.write(script);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Changes found by the plan goal, to be sent to the server later by the apply goal without the sources. The file is
+ * one gzip stream, which also compresses what the sources have in common, holding:
+ *
+ * - the magic LCS1, the loader name, the url of the server the sources were compared with and the creation time
+ * - for each change the key, the SHA-256 digest of the content and the content
+ * - an empty key as end marker, so a truncated file is detected
+ *
+ * Strings are written as their UTF-8 length followed by the bytes. The file is written next to its final name and
+ * moved in place when it is complete.
+ */
+public class ChangeSet {
+    private static final int MAGIC = 0x4c435331;
+
+    public static class Entry {
+        private final String key;
+        private final String digest;
+        private final String content;
+
+        Entry(String key, String digest, String content) {
+            this.key = key;
+            this.digest = digest;
+            this.content = content;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public String getContent() {
+            return content;
+        }
+    }
+
+    public static class Writer implements Closeable {
+        private final File file;
+        private final File tmp;
+        private final DataOutputStream out;
+        private int count = 0;
+        private boolean closed = false;
+
+        private Writer(File file, String name, String serverUrl) throws IOException {
+            this.file = file;
+            this.tmp = new File(file.getPath() + ".tmp");
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Could not create " + parent);
+            }
+            out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp), 65536),
+                    65536));
+            out.writeInt(MAGIC);
+            writeString(out, name);
+            writeString(out, serverUrl);
+            out.writeLong(System.currentTimeMillis());
+        }
+
+        public synchronized void add(String key, String content) throws IOException {
+            byte[] bytes = content.getBytes(Digests.UTF8);
+            writeString(out, key);
+            out.write(sha256(bytes));
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            count++;
+        }
+
+        public synchronized int getCount() {
+            return count;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Finish the file and move it in place.
+         */
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            writeString(out, "");
+            out.close();
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        /**
+         * Give up on the file, the previous one is left in place.
+         */
+        public synchronized void discard() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.close();
+            } catch (IOException e) {
+                // deleted anyway
+            }
+            tmp.delete();
+        }
+    }
+
+    public static class Reader implements Closeable {
+        private final File file;
+        private final DataInputStream in;
+        private final String name;
+        private final String serverUrl;
+        private final long created;
+        private boolean end = false;
+
+        private Reader(File file) throws IOException {
+            this.file = file;
+            in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), 65536),
+                    65536));
+            try {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException(file + " is not a change set");
+                }
+                name = readString(in);
+                serverUrl = readString(in);
+                created = in.readLong();
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getServerUrl() {
+            return serverUrl;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        /**
+         * Read the next change and check it against its digest.
+         *
+         * @return Entry or null at the end of the change set
+         * @throws IOException if the file is truncated or damaged
+         */
+        public Entry next() throws IOException {
+            if (end) {
+                return null;
+            }
+            try {
+                String key = readString(in);
+                if (key.length() == 0) {
+                    end = true;
+                    return null;
+                }
+                byte[] digest = new byte[32];
+                in.readFully(digest);
+                byte[] bytes = new byte[checkLength(in.readInt())];
+                in.readFully(bytes);
+                if (!MessageDigest.isEqual(digest, sha256(bytes))) {
+                    throw new IOException(file + " is damaged, content of " + key + " does not match its digest");
+                }
+                return new Entry(key, Digests.toHex(digest), new String(bytes, Digests.UTF8));
+            } catch (EOFException e) {
+                throw new IOException(file + " is truncated", e);
+            }
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Start a new change set.
+     *
+     * @param file change set file
+     * @param name name of the loader, rule or page
+     * @param serverUrl url of the server the sources are compared with
+     * @return Writer
+     */
+    public static Writer create(File file, String name, String serverUrl) throws IOException {
+        return new Writer(file, name, serverUrl);
+    }
+
+    public static Reader open(File file) throws IOException {
+        return new Reader(file);
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        MessageDigest digest = Digests.newDigest();
+        digest.update(bytes);
+        return digest.digest();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(Digests.UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[checkLength(in.readInt())];
+        in.readFully(bytes);
+        return new String(bytes, Digests.UTF8);
+    }
+
+    private static int checkLength(int length) throws IOException {
+        if (length < 0 || length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Invalid length " + length + " in change set");
+        }
+        return length;
+    }
+}
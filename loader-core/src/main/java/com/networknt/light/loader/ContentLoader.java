@@ -0,0 +1,1495 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Loads content of one or more types from the source roots to a Light Server through the REST API. The goals of
+ * the plugins configure one and run it: the source roots are walked once, each file is handed to the first type
+ * that claims it, compared with the map the server has of that type and imported if it changed, everything over
+ * one login and one connection pool.
+ *
+ * Next to that it keeps, per type, a manifest of the files in sync for the incremental mode, a table in the SQL
+ * output and a batch of pending imports, and per run an upload journal to resume a failed run and a report of the
+ * metrics. Instead of the server it can write a change set for the apply goal, or write into a ContentStore.
+ *
+ * Configure it with the setters, then call execute, or start, load, finish and stop.
+ */
+public class ContentLoader {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Log log;
+    private final String name;
+    private final File outputDirectory;
+    private final List<Provider> providers = new ArrayList<Provider>();
+
+    private List<File> roots = new ArrayList<File>();
+    private String[] includes = null;
+    private String[] excludes = null;
+    private String encoding = "UTF-8";
+    private String serverUrl = null;
+    private String serverUser = null;
+    private String serverPass = null;
+    private String clientId = null;
+    private Object buildRequest = null;
+    private File tokenCacheFile = null;
+    private int parserThreads = 4;
+    private int parserQueueSize = 256;
+    private int maxConcurrentUploads = 1;
+    private int batchSize = 1;
+    private long maxBatchBytes = 1048576;
+    private long keepAliveMillis = 30000;
+    private String requestCompression = "none";
+    private int compressMinBytes = 1024;
+    private int maxRetries = 3;
+    private long retryBackoffMillis = 500;
+    private long maxRetryBackoffMillis = 30000;
+    private String sqlFormat = "insert";
+    private String sqlDialect = "ansi";
+    private int sqlBatchSize = 1;
+    private boolean sqlGzip = false;
+    private boolean sqlSnapshot = false;
+    private boolean digestMode = false;
+    private boolean incremental = false;
+    private boolean resume = false;
+    private boolean verbose = false;
+    private ContentStore store = null;
+    private String storeUrl = null;
+
+    private CloseableHttpClient httpclient = null;
+    private volatile String jwt = null;
+    private SourceReader sourceReader = new SourceReader("UTF-8");
+    private RequestCompression compression = new RequestCompression("none", 0);
+    private Backoff backoff = new Backoff(0, 1, 1);
+    private UploadJournal journal = null;
+    private TokenCache tokenCache = new TokenCache(null, null);
+    private ServerSession session = null;
+    private int reportedFailures = 0;
+    private int reportedUploads = 0;
+    private volatile boolean batchSupported = true;
+    private UploadQueue uploads = new UploadQueue(1);
+    private LoadMetrics metrics = new LoadMetrics();
+
+    /**
+     * Set by plan, changed content is written to the change set instead of being uploaded.
+     */
+    private boolean planning = false;
+    private ChangeSet.Writer changeSet = null;
+
+    /**
+     * Set by apply, the content comes from a change set and there are no sources to read.
+     */
+    private boolean applying = false;
+
+    /**
+     * @param log log of the goal
+     * @param name name of the loader, e.g. rule, used for the journal, the change set and the report
+     * @param outputDirectory directory of the manifests, the journal, the SQL output and the report
+     */
+    public ContentLoader(Log log, String name, File outputDirectory) {
+        this.log = log;
+        this.name = name;
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Add a type to load. A file matched by the includes of several types goes to the first one that claims it.
+     */
+    public void addType(ContentType type) {
+        providers.add(new Provider(type));
+    }
+
+    public List<ContentType> getTypes() {
+        List<ContentType> types = new ArrayList<ContentType>();
+        for (Provider provider : providers) {
+            types.add(provider.type);
+        }
+        return types;
+    }
+
+    /**
+     * @param roots source roots, the first one has to exist
+     * @param includes glob patterns of the files to walk, or null for the includes of the types
+     * @param excludes glob patterns of the files to leave out, or null. Directories matching a pattern that ends
+     *                 with /** are not walked at all.
+     * @param encoding encoding of the source files
+     */
+    public void setSources(List<File> roots, String[] includes, String[] excludes, String encoding) {
+        this.roots = roots;
+        this.includes = includes;
+        this.excludes = excludes;
+        this.encoding = encoding;
+        this.sourceReader = new SourceReader(encoding);
+    }
+
+    /**
+     * @param buildRequest execution request of the build, so that the server session is not shared with earlier
+     *                     builds of an embedded Maven, or null
+     */
+    public void setServer(String serverUrl, String serverUser, String serverPass, String clientId,
+                          Object buildRequest) {
+        this.serverUrl = serverUrl;
+        this.serverUser = serverUser;
+        this.serverPass = serverPass;
+        this.clientId = clientId;
+        this.buildRequest = buildRequest;
+    }
+
+    /**
+     * @param tokenCacheFile file the access tokens are kept in as well, or null to keep them for the build only
+     */
+    public void setTokenCacheFile(File tokenCacheFile) {
+        this.tokenCacheFile = tokenCacheFile;
+    }
+
+    /**
+     * @param threads number of threads that read and compare files
+     * @param queueSize maximum number of read files waiting to be uploaded
+     */
+    public void setParser(int threads, int queueSize) {
+        this.parserThreads = threads;
+        this.parserQueueSize = queueSize;
+    }
+
+    /**
+     * @param maxConcurrentUploads number of import requests sent at the same time
+     * @param batchSize number of imports of a type in one request, 1 to send them one by one
+     * @param maxBatchBytes maximum size of a batch request body
+     * @param keepAliveMillis how long an idle connection is kept if the server does not say
+     */
+    public void setUploads(int maxConcurrentUploads, int batchSize, long maxBatchBytes, long keepAliveMillis) {
+        this.maxConcurrentUploads = maxConcurrentUploads;
+        this.batchSize = batchSize;
+        this.maxBatchBytes = maxBatchBytes;
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    /**
+     * @param encoding one of RequestCompression.ENCODINGS
+     * @param minBytes smallest request body that is compressed
+     */
+    public void setCompression(String encoding, int minBytes) {
+        this.requestCompression = encoding;
+        this.compressMinBytes = minBytes;
+    }
+
+    public void setRetry(int maxRetries, long backoffMillis, long maxBackoffMillis) {
+        this.maxRetries = maxRetries;
+        this.retryBackoffMillis = backoffMillis;
+        this.maxRetryBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * @param format insert, copy or loaddata
+     * @param dialect one of SqlWriter.DIALECTS for insert
+     * @param batchSize rows per statement for insert
+     * @param gzip compress the output
+     * @param snapshot write all content, not only what changed
+     */
+    public void setSql(String format, String dialect, int batchSize, boolean gzip, boolean snapshot) {
+        this.sqlFormat = format;
+        this.sqlDialect = dialect;
+        this.sqlBatchSize = batchSize;
+        this.sqlGzip = gzip;
+        this.sqlSnapshot = snapshot;
+    }
+
+    /**
+     * @param digestMode compare SHA-256 digests instead of full content
+     */
+    public void setDigestMode(boolean digestMode) {
+        this.digestMode = digestMode;
+    }
+
+    /**
+     * @param incremental skip files that have not been touched since the last load to the same target
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * @param resume only upload what the last run to the same server left unfinished
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * @param verbose log every file and every import
+     */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Write the content into a store instead of importing it through the server. Nothing is sent to the server.
+     *
+     * @param storeUrl url of the store, for the manifest and the report
+     * @param store store, closed by stop
+     */
+    public void setStore(String storeUrl, ContentStore store) {
+        this.storeUrl = storeUrl;
+        this.store = store;
+    }
+
+    /**
+     * Compare with this map instead of asking the server for it.
+     *
+     * @param type name of the type
+     * @param map id to content, or to digest in digest mode
+     */
+    public void setServerMap(String type, Map<String, String> map) {
+        getProvider(type).map = map;
+    }
+
+    /**
+     * @param type name of the type
+     * @return map of id to what the server has, or will have once the uploads are done, null before load
+     */
+    public Map<String, String> getServerMap(String type) {
+        Provider provider = getProvider(type);
+        return provider == null ? null : provider.map;
+    }
+
+    public Log getLog() {
+        return log;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public List<File> getSourceRoots() {
+        return roots;
+    }
+
+    public boolean isApplying() {
+        return applying;
+    }
+
+    public LoadMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return server session of the run, null if there is none
+     */
+    public ServerSession getSession() {
+        return session;
+    }
+
+    /**
+     * @return false once the server rejected a batch import
+     */
+    public boolean isBatchSupported() {
+        return batchSupported;
+    }
+
+    /**
+     * Load everything and fail if some content is not valid.
+     *
+     * @throws MojoExecutionException
+     */
+    public void execute() throws MojoExecutionException {
+        if (!start()) {
+            return;
+        }
+        load();
+        finish();
+        stop();
+        checkInvalid();
+    }
+
+    /**
+     * Check the directories, open the output files and log in to the server.
+     *
+     * @return false if there is nothing to load
+     * @throws MojoExecutionException
+     */
+    public boolean start() throws MojoExecutionException {
+        if (!checkDirectories()) {
+            // nothing is going to be stored
+            if (store != null) {
+                store.close();
+                store = null;
+            }
+            return false;
+        }
+
+        metrics = new LoadMetrics();
+        for (Provider provider : providers) {
+            provider.invalid = 0;
+            provider.type.start(this);
+        }
+
+        // sql statements are written to the file as changes are found.
+        if (!applying) {
+            openSqlOutputFiles();
+        }
+
+        if (store != null) {
+            // the store compares the content itself, there is nothing to log in to.
+            if (incremental) {
+                loadManifests(storeUrl);
+            }
+            return true;
+        }
+
+        compression = new RequestCompression(requestCompression, compressMinBytes);
+        backoff = new Backoff(maxRetries, retryBackoffMillis, maxRetryBackoffMillis);
+        // the client and the server map are shared by all modules of the build that load to the same server.
+        session = ServerSession.get(buildRequest, serverUrl);
+        httpclient = session.getClient(Math.max(2, maxConcurrentUploads), new ServerSession.ClientFactory() {
+            public CloseableHttpClient create(PoolingHttpClientConnectionManager pool) {
+                return createHttpClient(pool);
+            }
+        });
+        uploads = new UploadQueue(maxConcurrentUploads);
+
+        tokenCache = new TokenCache(buildRequest, tokenCacheFile, serverPass);
+        long started = System.nanoTime();
+        login();
+        metrics.phase("login", started);
+        if (jwt == null) {
+            throw new MojoExecutionException("Failed to sign in to " + serverUrl + " as " + serverUser
+                    + ", see the errors above");
+        }
+
+        // the manifest and the journal record uploads, plan does not upload and apply works without sources.
+        if (incremental && !resume && !planning && !applying) {
+            loadManifests(serverUrl);
+        }
+
+        // every upload is recorded so that a failed run can be finished with resume.
+        if (!planning && !applying) {
+            try {
+                journal = UploadJournal.open(outputDirectory, name, serverUrl, resume);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to open the upload journal", e);
+            }
+        }
+        return true;
+    }
+
+    private boolean checkDirectories() {
+        if (!ensureTargetDirectoryExists()) {
+            log.error("Could not create target directory");
+            return false;
+        }
+        if (!applying && !roots.get(0).exists()) {
+            log.error("Source directory \"" + roots.get(0) + "\" is not valid.");
+            return false;
+        }
+        if (providers.isEmpty()) {
+            log.error("No content types to load");
+            return false;
+        }
+        return true;
+    }
+
+    private void loadManifests(String target) {
+        for (Provider provider : providers) {
+            provider.manifest = Manifest.load(outputDirectory, provider.type.getManifestName(), target);
+        }
+    }
+
+    /**
+     * Compare all source files with the server and queue the changed content for upload.
+     *
+     * @throws MojoExecutionException
+     */
+    public void load() throws MojoExecutionException {
+        SourceFinder finder;
+        long started = System.nanoTime();
+        if (store != null || resume) {
+            // the store compares every piece of content itself, and everything left in the journal has to be
+            // uploaded again, no need to ask the server.
+            for (Provider provider : providers) {
+                provider.map = new ConcurrentHashMap<String, String>();
+            }
+            finder = resume && store == null ? createResumeFinder() : createSourceFinder();
+        } else {
+            // get the map of each type from the server in order to compare.
+            // only the first module of the build downloads it.
+            for (final Provider provider : providers) {
+                if (provider.map != null) {
+                    continue;
+                }
+                String key = provider.type.getName() + (digestMode ? ".digest" : "");
+                provider.map = session.getMap(key, new ServerSession.Factory<Map<String, String>>() {
+                    public Map<String, String> create() {
+                        return downloadMap(provider.type);
+                    }
+                });
+                if (provider.map == null) {
+                    log.info("No " + provider.type.getName() + " map from the server, loading all of them");
+                    provider.map = new ConcurrentHashMap<String, String>();
+                }
+            }
+            metrics.phase("map", started);
+            finder = createSourceFinder();
+        }
+
+        // walk the source tree, read and compare files in parallel and import changed content in walk order.
+        started = System.nanoTime();
+        new ParsePipeline<ContentFile>(parserThreads, parserQueueSize).run(finder,
+                new ParsePipeline.Handler<ContentFile>() {
+                    public ContentFile parse(String filePath) {
+                        return readFile(filePath);
+                    }
+
+                    public void apply(ContentFile contentFile) throws MojoExecutionException {
+                        applyFile(contentFile);
+                    }
+                });
+        metrics.phase("scan", started);
+    }
+
+    /**
+     * Wait until everything queued has been uploaded, then close the sql output files and write the report. Call it
+     * once at the end of the run.
+     */
+    public void finish() {
+        flush();
+        closeOutput();
+    }
+
+    /**
+     * Wait until everything queued has been uploaded, commit the store and save the manifests. The sql output files
+     * stay open, so it is called after each burst while watching.
+     */
+    public void flush() {
+        // send the rest of the batches if there are any and wait for all uploads to finish.
+        long started = System.nanoTime();
+        for (Provider provider : providers) {
+            flushImports(provider);
+        }
+        uploads.await();
+        metrics.phase("upload", started);
+        if (uploads.getFailed() > reportedFailures) {
+            log.error((uploads.getFailed() - reportedFailures) + " of "
+                    + (uploads.getFailed() + uploads.getSucceeded() - reportedUploads)
+                    + " import requests failed, " + (applying ? "apply the change set again"
+                    : "run again with -Dresume=true to upload the rest"));
+        }
+        reportedFailures = uploads.getFailed();
+        reportedUploads = uploads.getFailed() + uploads.getSucceeded();
+        if (store != null) {
+            started = System.nanoTime();
+            store.commit();
+            metrics.phase("commit", started);
+            log.info(store.getSummary());
+        }
+
+        // remember what is in sync with the server only after everything has been sent.
+        for (Provider provider : providers) {
+            if (provider.manifest != null) {
+                try {
+                    provider.manifest.save();
+                } catch (IOException e) {
+                    log.error("Failed to write " + provider.manifest.getFile() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Finish the sql output files in case the content is served from a SQL database, and write the report.
+     */
+    private void closeOutput() {
+        for (Provider provider : providers) {
+            closeSqlOutputFile(provider);
+        }
+        writeReport();
+    }
+
+    /**
+     * Write the metrics of the run to the output directory and log the summary.
+     */
+    private void writeReport() {
+        File report = new File(outputDirectory, name + "-load-report.json");
+        try {
+            metrics.write(report, mapper, name, store != null ? storeUrl : serverUrl);
+        } catch (IOException e) {
+            log.error("Failed to write " + report + ": " + e.getMessage());
+        }
+        log.info(Character.toUpperCase(name.charAt(0)) + name.substring(1) + " load: " + metrics.summary());
+    }
+
+    /**
+     * Fail the build if some content was not valid. The rest has been loaded by now.
+     *
+     * @throws MojoExecutionException
+     */
+    public void checkInvalid() throws MojoExecutionException {
+        StringBuilder sb = new StringBuilder();
+        for (Provider provider : providers) {
+            if (provider.invalid > 0) {
+                sb.append(sb.length() > 0 ? ", " : "").append(provider.invalid).append(' ')
+                        .append(provider.type.getName()).append("s ").append(provider.invalidReason);
+            }
+        }
+        if (sb.length() > 0) {
+            throw new MojoExecutionException(sb + ", see the errors above");
+        }
+    }
+
+    private int getInvalid() {
+        int invalid = 0;
+        for (Provider provider : providers) {
+            invalid += provider.invalid;
+        }
+        return invalid;
+    }
+
+    /**
+     * Release the upload threads, the journal, the types and the store.
+     */
+    public void stop() {
+        uploads.shutdown();
+        for (Provider provider : providers) {
+            provider.type.stop();
+        }
+        if (store != null) {
+            store.close();
+            store = null;
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.error("Failed to close " + journal.getFile() + ": " + e.getMessage());
+            }
+        }
+        // the client belongs to the session and is closed at the end of the build.
+        httpclient = null;
+    }
+
+    /**
+     * Compare the sources with the server like load, but write the changed content to a change set for apply
+     * instead of uploading it.
+     *
+     * @param file change set file
+     * @throws MojoExecutionException
+     */
+    public void plan(File file) throws MojoExecutionException {
+        planning = true;
+        if (!start()) {
+            return;
+        }
+        try {
+            changeSet = ChangeSet.create(file, name, serverUrl);
+            load();
+            // a change set is only written if all content in it is valid
+            if (getInvalid() == 0) {
+                changeSet.close();
+                log.info("Wrote " + changeSet.getCount() + " changes to " + file);
+            }
+            finish();
+            checkInvalid();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write " + file, e);
+        } finally {
+            if (changeSet != null) {
+                changeSet.discard();
+                changeSet = null;
+            }
+            stop();
+        }
+    }
+
+    /**
+     * Upload the content of a change set written by plan. No sources are read and nothing is compared with the
+     * server, everything in the change set is sent.
+     *
+     * @param file change set file
+     * @throws MojoExecutionException
+     */
+    public void apply(File file) throws MojoExecutionException {
+        applying = true;
+        ChangeSet.Reader reader = null;
+        try {
+            reader = ChangeSet.open(file);
+            if (!name.equals(reader.getName())) {
+                throw new MojoExecutionException(file + " holds " + reader.getName() + " changes, not " + name
+                        + " changes");
+            }
+            if (!serverUrl.equals(reader.getServerUrl())) {
+                log.warn(file + " was planned against " + reader.getServerUrl() + ", applying it to " + serverUrl);
+            }
+            if (!start()) {
+                return;
+            }
+            try {
+                long started = System.nanoTime();
+                ChangeSet.Entry entry;
+                while ((entry = reader.next()) != null) {
+                    String key = entry.getKey();
+                    int colon = key.indexOf(':');
+                    Provider provider = colon < 0 ? null : getProvider(key.substring(0, colon));
+                    String id = provider == null ? key : key.substring(colon + 1);
+                    if (provider == null) {
+                        // change sets of a single type, like the ones of the rule plugin, may hold bare ids
+                        provider = getProvider(reader.getName());
+                    }
+                    if (provider == null) {
+                        throw new MojoExecutionException(file + " holds " + key + ", which is of no type loaded here");
+                    }
+                    metrics.add(LoadMetrics.FILES_CHANGED, 1);
+                    try {
+                        importContent(provider, id, entry.getContent(),
+                                provider.type.getImportCommand(id, entry.getContent()));
+                    } catch (InvalidContentException e) {
+                        invalid(provider, e);
+                    }
+                }
+                metrics.phase("read", started);
+                finish();
+                checkInvalid();
+            } finally {
+                stop();
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to read " + file, e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Load once like execute and then keep watching the source roots. Every file saved after that is pushed to the
+     * server right away, reusing the login, the connection pool and the server maps from the first load. It runs
+     * until the thread is interrupted. The sql output files are kept open until then and get the rows of every burst.
+     *
+     * @param debounceMillis time without further changes before a burst of edits is pushed
+     * @throws MojoExecutionException
+     */
+    public void watch(long debounceMillis) throws MojoExecutionException {
+        if (!start()) {
+            return;
+        }
+        SourceWatcher watcher = null;
+        boolean interrupted = false;
+        try {
+            load();
+            flush();
+            watcher = new SourceWatcher(getSourceRoots(), createSourceFinder(), debounceMillis);
+            log.info("Watching for changes, press Ctrl+C to stop");
+            while (true) {
+                List<File> files = watcher.next();
+                long start = System.currentTimeMillis();
+                push(files);
+                log.info("Processed " + files.size() + " changed files in "
+                        + (System.currentTimeMillis() - start) + " ms");
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to watch the source directories", e);
+        } finally {
+            if (watcher != null) {
+                try {
+                    watcher.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+            // an interrupted thread would close the file channels of the sql output before it is finished
+            closeOutput();
+            stop();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Upload the given files if they are different from the server. This is used while watching after the first
+     * load, on the calling thread only.
+     *
+     * @param files changed source files
+     * @throws MojoExecutionException
+     */
+    public void push(List<File> files) throws MojoExecutionException {
+        for (File file : files) {
+            applyFile(readFile(file.getPath()));
+        }
+        flush();
+    }
+
+    /**
+     * Read one file and upload it if it changed, on the calling thread.
+     *
+     * @param filePath path of the file
+     * @throws MojoExecutionException
+     */
+    public void parseFile(String filePath) throws MojoExecutionException {
+        applyFile(readFile(filePath));
+    }
+
+    public SourceFinder createSourceFinder() {
+        List<String> includeList;
+        if (includes != null && includes.length > 0) {
+            includeList = Arrays.asList(includes);
+        } else {
+            // a single walk over all roots for all types.
+            Set<String> all = new LinkedHashSet<String>();
+            for (Provider provider : providers) {
+                all.addAll(provider.type.getIncludes());
+            }
+            includeList = new ArrayList<String>(all);
+        }
+        List<String> excludeList = excludes == null ? Collections.<String>emptyList() : Arrays.asList(excludes);
+        return new SourceFinder(roots, includeList, excludeList, parserThreads);
+    }
+
+    private SourceFinder createResumeFinder() {
+        List<File> files = new ArrayList<File>();
+        for (String path : journal.getUnfinished().values()) {
+            files.add(new File(path));
+        }
+        log.info("Resuming " + files.size() + " unfinished uploads from " + journal.getFile());
+        return new SourceFinder(files, Collections.<String>emptyList(), Collections.<String>emptyList(), 1);
+    }
+
+    /**
+     * Create a client on the connection pool of the server session, which is big enough for all concurrent uploads,
+     * so that connections to the server are kept alive and reused instead of opened for each request.
+     */
+    private CloseableHttpClient createHttpClient(PoolingHttpClientConnectionManager connectionManager) {
+        final long defaultKeepAlive = keepAliveMillis;
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+                    @Override
+                    public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                        long duration = super.getKeepAliveDuration(response, context);
+                        return duration > 0 ? duration : defaultKeepAlive;
+                    }
+                })
+                .build();
+    }
+
+    private boolean ensureTargetDirectoryExists() {
+        if (outputDirectory.exists()) {
+            return true;
+        }
+        return outputDirectory.mkdirs();
+    }
+
+    private Provider getProvider(String type) {
+        for (Provider provider : providers) {
+            if (provider.type.getName().equals(type)) {
+                return provider;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read a file, find its type and check if it is different from the server. This is called from the parser
+     * threads so it must not touch anything but the server maps. They are concurrent maps that the consumer thread
+     * writes to with what it uploads while the parsers read them, so a parser may compare with an entry that is
+     * stale by the time its file reaches the consumer. That only matters if two files have the same id.
+     *
+     * @param filePath path of the file
+     * @return ContentFile
+     */
+    ContentFile readFile(final String filePath) {
+        ContentFile contentFile = new ContentFile(filePath);
+        try {
+            File file = new File(filePath);
+            Path relative = relativize(file);
+            SourceFile source = null;
+            for (Provider provider : providers) {
+                if (!provider.matches(relative)) {
+                    continue;
+                }
+                if (source == null) {
+                    metrics.add(LoadMetrics.FILES_SCANNED, 1);
+                    source = new SourceFile(file, sourceReader, metrics);
+                }
+                Manifest.Entry entry = null;
+                Manifest.Entry clean = null;
+                if (provider.manifest != null) {
+                    clean = provider.manifest.getClean(file);
+                    if (clean != null) {
+                        metrics.add(LoadMetrics.FILES_SKIPPED, 1);
+                        contentFile.provider = provider;
+                        contentFile.entry = clean;
+                        // a snapshot needs the content of unchanged files as well
+                        if (!sqlSnapshot || provider.sqlWriter == null) {
+                            return contentFile;
+                        }
+                    } else {
+                        // take size and time before reading so that an edit during the run is seen next time
+                        entry = Manifest.entry(file, null);
+                    }
+                }
+                String id = provider.type.getId(source);
+                if (id == null) {
+                    if (clean != null) {
+                        return contentFile;
+                    }
+                    // recorded as not being content in the manifest of the first type unless another one claims it
+                    if (contentFile.provider == null) {
+                        contentFile.provider = provider;
+                        contentFile.entry = entry;
+                    }
+                    continue;
+                }
+                contentFile.provider = provider;
+                contentFile.id = id;
+                contentFile.entry = clean != null ? clean : entry;
+                String content = provider.type.getContent(source);
+                // only import the content if it has been changed after comparing with server
+                if (clean == null && provider.type.isChanged(provider.map.get(id),
+                        digestMode ? source.getDigest(content) : content)) {
+                    contentFile.content = content;
+                    try {
+                        contentFile.command = provider.type.getImportCommand(id, content);
+                    } catch (InvalidContentException e) {
+                        contentFile.invalid = e;
+                    }
+                } else if (sqlSnapshot) {
+                    contentFile.snapshot = content;
+                }
+                if (entry != null) {
+                    contentFile.entry = new Manifest.Entry(filePath, entry.size, entry.modified,
+                            source.getDigest(content));
+                }
+                return contentFile;
+            }
+        } catch (final IOException e) {
+            contentFile.error = e;
+        }
+        return contentFile;
+    }
+
+    private Path relativize(File file) {
+        Path path = file.toPath();
+        for (File root : roots) {
+            if (path.startsWith(root.toPath())) {
+                return root.toPath().relativize(path);
+            }
+        }
+        return path.getFileName();
+    }
+
+    private void applyFile(ContentFile contentFile) throws MojoExecutionException {
+        if (verbose) {
+            System.out.println("Process file = " + contentFile.filePath);
+        }
+        if (contentFile.error != null) {
+            log.error(contentFile.error.getMessage());
+            return;
+        }
+        Provider provider = contentFile.provider;
+        if (provider == null) {
+            return;
+        }
+        if (contentFile.invalid != null) {
+            // not recorded in the manifest, so it is tried again on the next run
+            invalid(provider, contentFile.invalid);
+            return;
+        }
+        String id = contentFile.id;
+        if (contentFile.content != null && changeSet != null) {
+            metrics.add(LoadMetrics.FILES_CHANGED, 1);
+            try {
+                changeSet.add(provider.type.getName() + ":" + id, contentFile.content);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to write " + changeSet.getFile(), e);
+            }
+            // generate SQL insert statements
+            writeSqlToOutputFile(provider, id, contentFile.content, contentFile.command);
+        } else if (contentFile.content != null && store != null) {
+            storeContent(provider, contentFile);
+        } else if (contentFile.content != null) {
+            metrics.add(LoadMetrics.FILES_CHANGED, 1);
+            if (provider.manifest != null) {
+                provider.manifest.pending(id, contentFile.entry);
+            }
+            if (journal != null) {
+                try {
+                    journal.pending(provider.type.getName() + ":" + id, contentFile.filePath);
+                } catch (IOException e) {
+                    log.warn("Failed to write " + journal.getFile() + ": " + e.getMessage());
+                }
+            }
+            // the shared map holds what the server will have once the upload is done. It is updated before the
+            // upload is queued, so that a failed upload, which may run inline, takes the content out again.
+            provider.map.put(id, digestMode ? Digests.sha256Hex(contentFile.content) : contentFile.content);
+            importContent(provider, id, contentFile.content, contentFile.command);
+            // generate SQL insert statements
+            writeSqlToOutputFile(provider, id, contentFile.content, contentFile.command);
+        } else {
+            if (contentFile.snapshot != null) {
+                writeSqlToOutputFile(provider, id, contentFile.snapshot, null);
+            }
+            if (provider.manifest != null && contentFile.entry != null) {
+                provider.manifest.clean(contentFile.entry);
+            }
+        }
+    }
+
+    /**
+     * Log the errors of content that is not valid. It is neither loaded nor recorded in the manifest.
+     */
+    private void invalid(Provider provider, InvalidContentException e) {
+        provider.invalid++;
+        provider.invalidReason = e.getMessage();
+        for (String error : e.getErrors()) {
+            log.error(error);
+        }
+    }
+
+    /**
+     * Write content to the store if it is new or different from the one in there.
+     */
+    private void storeContent(Provider provider, ContentFile contentFile) {
+        try {
+            if (store.store(contentFile.id, contentFile.content)) {
+                metrics.add(LoadMetrics.FILES_CHANGED, 1);
+                if (verbose) {
+                    System.out.println("Stored " + contentFile.id);
+                }
+                writeSqlToOutputFile(provider, contentFile.id, contentFile.content, contentFile.command);
+            } else if (sqlSnapshot) {
+                writeSqlToOutputFile(provider, contentFile.id, contentFile.content, null);
+            }
+            if (provider.manifest != null && contentFile.entry != null) {
+                provider.manifest.clean(contentFile.entry);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to store " + contentFile.id + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sign in to the server, or take the token of an earlier sign in. If the sign in fails the error is logged and
+     * jwt is left null.
+     */
+    private void login() {
+        // reuse the token of an earlier sign in if it has not expired
+        jwt = tokenCache.get(serverUrl, serverUser);
+        if (jwt != null) {
+            System.out.println("Using cached access token");
+            return;
+        }
+        // login to the server
+        Map<String, Object> inputMap = new HashMap<String, Object>();
+        inputMap.put("category", "user");
+        inputMap.put("name", "signInUser");
+        inputMap.put("readOnly", false);
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put("userIdEmail", serverUser);
+        data.put("password", serverPass);
+        data.put("rememberMe", true);
+        data.put("clientId", clientId);
+        inputMap.put("data", data);
+
+        CloseableHttpResponse response = null;
+        try {
+            HttpPost httpPost = new HttpPost(serverUrl + "/api/rs");
+            httpPost.setEntity(compression.entity(mapper.writeValueAsBytes(inputMap)));
+            response = executeWithRetry("signInUser", httpPost);
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (status != 200) {
+                log.error("Failed to sign in as " + serverUser + ": server returned " + status + " "
+                        + EntityUtils.toString(entity));
+                return;
+            }
+            jwt = JsonResponses.readField(entity.getContent(), "accessToken");
+            EntityUtils.consume(entity);
+            if (jwt == null) {
+                log.error("Failed to sign in as " + serverUser + ": the server returned no access token");
+                return;
+            }
+            tokenCache.put(serverUrl, serverUser, jwt);
+            System.out.println("Logged in successfully");
+        } catch (Exception e) {
+            log.error("Failed to sign in as " + serverUser + ": " + e.getMessage());
+        } finally {
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get what the server has of a type in order to compare. In digest mode the digest map is asked for; if the
+     * server does not support it, the full map is downloaded once and each value is reduced to a digest while the
+     * response is read so that the server content is never on the heap at once.
+     *
+     * @return map of id to content or digest, or null if the type has no map or the server does not support it
+     */
+    private Map<String, String> downloadMap(ContentType type) {
+        Map<String, Object> command = type.getMapCommand();
+        if (digestMode) {
+            Map<String, Object> digestCommand = type.getDigestMapCommand();
+            Map<String, String> map = digestCommand == null ? null : downloadMap(type, digestCommand, false);
+            if (map != null || command == null) {
+                return map;
+            }
+            if (digestCommand != null) {
+                log.info("Server does not support " + digestCommand.get("name") + ", computing digests locally");
+            }
+            return downloadMap(type, command, true);
+        }
+        return command == null ? null : downloadMap(type, command, false);
+    }
+
+    private Map<String, String> downloadMap(ContentType type, Map<String, Object> command, boolean digest) {
+        Map<String, String> map = null;
+        String endpoint = String.valueOf(command.get("name"));
+        CloseableHttpResponse response = null;
+        try {
+            HttpPost httpPost = new HttpPost(serverUrl + "/api/rs");
+            httpPost.addHeader("Authorization", "Bearer " + jwt);
+            httpPost.addHeader("Accept-Encoding", "gzip, deflate");
+            httpPost.setEntity(compression.entity(mapper.writeValueAsBytes(command)));
+            response = executeWithRetry(endpoint, httpPost);
+            HttpEntity entity = response.getEntity();
+            if (response.getStatusLine().getStatusCode() >= 300) {
+                EntityUtils.consume(entity);
+                return null;
+            }
+            map = JsonResponses.readStringMap(entity.getContent(), digest);
+            EntityUtils.consume(entity);
+            System.out.println("Got " + type.getName() + " map from server");
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Queue the import of a piece of content, in the batch of its type or as a request of its own.
+     */
+    private void importContent(final Provider provider, final String id, String content,
+                               final Map<String, Object> command) {
+        final String endpoint = String.valueOf(command.get("name"));
+        try {
+            if (batchSize > 1 && batchSupported) {
+                if (provider.batch == null) {
+                    provider.batch = new ImportBatch(batchSize, maxBatchBytes);
+                }
+                byte[] json = mapper.writeValueAsBytes(command);
+                if (!provider.batch.fits(json)) {
+                    flushImports(provider);
+                }
+                provider.endpoint = endpoint;
+                provider.batch.add(id, json);
+                if (provider.batch.isFull()) {
+                    flushImports(provider);
+                }
+            } else {
+                // serialized while it is sent, the queue only holds the map
+                final long size = RequestCompression.utf8Length(content);
+                uploads.submit(new Callable<Boolean>() {
+                    public Boolean call() {
+                        try {
+                            return postImport(provider, endpoint, id, compression.entity(mapper, command, size));
+                        } catch (IOException e) {
+                            log.error("Failed to load " + id + ": " + e.getMessage());
+                            failed(provider, id);
+                            return false;
+                        }
+                    }
+                });
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private boolean postImport(Provider provider, String endpoint, String id, byte[] json) {
+        try {
+            return postImport(provider, endpoint, id, compression.entity(json));
+        } catch (IOException e) {
+            log.error("Failed to load " + id + ": " + e.getMessage());
+        }
+        failed(provider, id);
+        return false;
+    }
+
+    private boolean postImport(Provider provider, String endpoint, String id, HttpEntity body) {
+        CloseableHttpResponse response = null;
+        try {
+            HttpPost httpPost = new HttpPost(serverUrl + "/api/rs");
+            httpPost.addHeader("Authorization", "Bearer " + jwt);
+            httpPost.setEntity(body);
+            response = executeWithRetry(endpoint, httpPost);
+            HttpEntity entity = response.getEntity();
+            int status = response.getStatusLine().getStatusCode();
+            if (status >= 300) {
+                log.error("Failed to load " + id + ": " + status + " " + EntityUtils.toString(entity));
+            } else {
+                EntityUtils.consume(entity);
+                metrics.add(LoadMetrics.BYTES_UPLOADED, RequestCompression.sentLength(body));
+                if (verbose) {
+                    System.out.println("Loaded " + id);
+                }
+                uploaded(provider, id);
+                return true;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        failed(provider, id);
+        return false;
+    }
+
+    /**
+     * Hand all pending imports of a type to the upload queue as one batch.
+     */
+    private void flushImports(final Provider provider) {
+        if (provider.batch == null || provider.batch.isEmpty()) {
+            return;
+        }
+        final ImportBatch batch = provider.batch;
+        final String endpoint = provider.endpoint;
+        provider.batch = new ImportBatch(batchSize, maxBatchBytes);
+        uploads.submit(new Callable<Boolean>() {
+            public Boolean call() {
+                return sendBatch(provider, endpoint, batch);
+            }
+        });
+    }
+
+    /**
+     * Send all pending imports of a type as one multi-item request and report the result of each item. If the
+     * server does not accept the batch form, the items are sent one by one and batching is turned off for the
+     * rest of the run. If the request fails for any other reason, only the items of this batch are sent one by one.
+     */
+    private boolean sendBatch(Provider provider, String endpoint, ImportBatch batch) {
+        boolean success = true;
+        JsonNode results = null;
+        boolean rejected = false;
+        CloseableHttpResponse response = null;
+        try {
+            HttpPost httpPost = new HttpPost(serverUrl + "/api/rs");
+            httpPost.addHeader("Authorization", "Bearer " + jwt);
+            httpPost.setEntity(compression.entity(batch.toJson()));
+            response = executeWithRetry(endpoint + ".batch", httpPost);
+            HttpEntity entity = response.getEntity();
+            int status = response.getStatusLine().getStatusCode();
+            if (status < 300 && entity != null) {
+                metrics.add(LoadMetrics.BYTES_UPLOADED, httpPost.getEntity().getContentLength());
+                results = mapper.readTree(entity.getContent());
+                // a server that does not know the batch form may answer the array with something else
+                rejected = results == null || !results.isArray() || results.size() != batch.size();
+            } else {
+                String body = entity == null ? "" : EntityUtils.toString(entity);
+                rejected = ImportBatch.isRejected(status, body);
+                if (!rejected) {
+                    log.warn("Batch import failed: " + status + " " + body);
+                }
+            }
+            EntityUtils.consume(entity);
+        } catch (Exception e) {
+            log.warn("Batch import failed: " + e.getMessage());
+        } finally {
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        try {
+            if (results != null && !rejected) {
+                for (int i = 0; i < batch.size(); i++) {
+                    JsonNode error = results.get(i).get("error");
+                    if (error != null) {
+                        log.error("Failed to load " + batch.getKey(i) + ": " + error.asText());
+                        failed(provider, batch.getKey(i));
+                        success = false;
+                    } else {
+                        if (verbose) {
+                            System.out.println("Loaded " + batch.getKey(i));
+                        }
+                        uploaded(provider, batch.getKey(i));
+                    }
+                }
+            } else {
+                if (rejected) {
+                    log.warn("Server does not support batch import, falling back to single requests");
+                    batchSupported = false;
+                } else {
+                    // the server may be back for the next batch, only this one is sent item by item
+                    log.warn("Sending the " + batch.size() + " " + provider.type.getName()
+                            + "s of the failed batch one by one");
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    success &= postImport(provider, endpoint, batch.getKey(i), batch.getCommand(i));
+                }
+            }
+        } finally {
+            batch.clear();
+        }
+        return success;
+    }
+
+    private void uploaded(Provider provider, String id) {
+        if (provider.manifest != null) {
+            provider.manifest.uploaded(id);
+        }
+        if (journal != null) {
+            try {
+                journal.completed(provider.type.getName() + ":" + id);
+            } catch (IOException e) {
+                log.warn("Failed to write " + journal.getFile() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Forget the content of a failed upload, so that it is not taken as being on the server.
+     */
+    private void failed(Provider provider, String id) {
+        if (provider.map != null) {
+            provider.map.remove(id);
+        }
+    }
+
+    /**
+     * Sign in again after the server rejected a token. Uploads running at the same time that got the same
+     * rejection use the token of the first one to get here.
+     *
+     * @param rejected Authorization header that was rejected
+     * @return new token or null if the sign in failed
+     */
+    private synchronized String relogin(String rejected) {
+        if (jwt != null && !rejected.equals("Bearer " + jwt)) {
+            return jwt;
+        }
+        tokenCache.invalidate(serverUrl, serverUser);
+        login();
+        return jwt;
+    }
+
+    /**
+     * Execute a request and retry it with exponential backoff while it fails with an I/O error or the server is
+     * too busy to answer. The request entity must be repeatable. Each attempt is recorded in the metrics of the
+     * endpoint.
+     */
+    private CloseableHttpResponse executeWithRetry(String endpoint, HttpPost httpPost) throws IOException {
+        boolean signedIn = false;
+        for (int attempt = 0; ; attempt++) {
+            long delay;
+            long sent = System.nanoTime();
+            try {
+                CloseableHttpResponse response = httpclient.execute(httpPost);
+                int status = response.getStatusLine().getStatusCode();
+                metrics.request(endpoint, sent, status >= 300);
+                Header authorization = httpPost.getFirstHeader("Authorization");
+                if (status == 401 && authorization != null && !signedIn) {
+                    // the token has expired or been revoked, sign in again once and repeat the request
+                    String token = relogin(authorization.getValue());
+                    if (token == null) {
+                        return response;
+                    }
+                    EntityUtils.consume(response.getEntity());
+                    response.close();
+                    httpPost.setHeader("Authorization", "Bearer " + token);
+                    signedIn = true;
+                    attempt--;
+                    continue;
+                }
+                if (attempt >= backoff.getMaxRetries() || !Backoff.isTransient(status)) {
+                    return response;
+                }
+                Header retryAfter = response.getFirstHeader("Retry-After");
+                delay = backoff.delay(attempt, retryAfter == null ? null : retryAfter.getValue());
+                EntityUtils.consume(response.getEntity());
+                response.close();
+                log.warn("Server returned " + status + ", retrying in " + delay + " ms");
+            } catch (IOException e) {
+                metrics.request(endpoint, sent, true);
+                if (attempt >= backoff.getMaxRetries()) {
+                    throw e;
+                }
+                delay = backoff.delay(attempt, null);
+                log.warn("Request failed: " + e.getMessage() + ", retrying in " + delay + " ms");
+            }
+            metrics.add(LoadMetrics.RETRIES, 1);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry");
+            }
+        }
+    }
+
+    private void openSqlOutputFiles() throws MojoExecutionException {
+        String gz = sqlGzip ? ".gz" : "";
+        for (Provider provider : providers) {
+            ExportTable table = provider.type.getExportTable();
+            if (table == null) {
+                continue;
+            }
+            try {
+                if (sqlFormat == null || "insert".equals(sqlFormat)) {
+                    provider.sqlWriter = new SqlWriter(new File(outputDirectory, table.getFileName() + ".sql" + gz),
+                            encoding, table.getTable(), table.getKeyColumn(), table.getColumns(), sqlDialect,
+                            sqlBatchSize, sqlGzip);
+                } else {
+                    File file = new File(outputDirectory,
+                            table.getFileName() + ("copy".equals(sqlFormat) ? ".csv" : ".tsv") + gz);
+                    provider.sqlWriter = new BulkFileWriter(file,
+                            new File(outputDirectory, table.getFileName() + "-load.sql"), table.getTable(),
+                            table.getKeyColumn(), table.getColumns(), sqlFormat, sqlGzip);
+                }
+            } catch (final IllegalArgumentException e) {
+                throw new MojoExecutionException(e.getMessage());
+            } catch (final IOException e) {
+                log.error(e.getMessage());
+            }
+        }
+    }
+
+    private void writeSqlToOutputFile(Provider provider, String id, String content, Map<String, Object> command) {
+        if (provider.sqlWriter == null) {
+            return;
+        }
+        try {
+            provider.sqlWriter.write(id, provider.type.getExportValues(id, content, command));
+        } catch (final IOException e) {
+            log.error(e.getMessage());
+        }
+    }
+
+    private void closeSqlOutputFile(Provider provider) {
+        if (provider.sqlWriter == null) {
+            return;
+        }
+        try {
+            provider.sqlWriter.close();
+        } catch (final IOException e) {
+            log.error(e.getMessage());
+        }
+        provider.sqlWriter = null;
+    }
+
+    /**
+     * A content type with its include patterns, the map of what is on the server and what the run keeps for it.
+     */
+    static class Provider {
+        final ContentType type;
+        final List<PathMatcher> includes = new ArrayList<PathMatcher>();
+        Map<String, String> map;
+        Manifest manifest;
+        ExportWriter sqlWriter;
+        ImportBatch batch;
+        String endpoint;
+        int invalid;
+        String invalidReason;
+
+        Provider(ContentType type) {
+            this.type = type;
+            for (String pattern : type.getIncludes()) {
+                SourceFinder.addGlob(includes, pattern);
+            }
+        }
+
+        boolean matches(Path relative) {
+            return SourceFinder.matches(includes, relative);
+        }
+    }
+
+    /**
+     * Outcome of reading one file. provider is null if no type wants the file, id is null if it is not content of
+     * the type and content is only set if it is different from the one on the server.
+     */
+    static class ContentFile {
+        final String filePath;
+        Provider provider;
+        String id;
+        String content;
+        String snapshot;
+        Map<String, Object> command;
+        InvalidContentException invalid;
+        Manifest.Entry entry;
+        IOException error;
+
+        ContentFile(String filePath) {
+            this.filePath = filePath;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+/**
+ * A database the content is written to directly instead of being imported through the server, e.g. to seed a new
+ * environment. The loader hands it every piece of content it reads, on the thread that runs the loader, and it
+ * finds out itself what is new or changed.
+ */
+public interface ContentStore {
+
+    /**
+     * @param id id of the content
+     * @param content content
+     * @return true if the content was new or different from the stored one
+     */
+    boolean store(String id, String content);
+
+    /**
+     * Write what is still pending.
+     */
+    void commit();
+
+    /**
+     * @return what was stored, for the log
+     */
+    String getSummary();
+
+    void close();
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * A kind of content the loader pushes to the server, e.g. rules from Java sources or pages from HTML files. The
+ * built in types are registered in META-INF/services/com.networknt.light.loader.ContentType and more can be added
+ * the same way by a jar on the plugin class path. AbstractContentType has defaults for all but the essentials.
+ *
+ * getId, getContent, isChanged and getImportCommand are called from the parser threads and must not change any
+ * state that is shared between files.
+ */
+public interface ContentType {
+
+    /**
+     * @return name of the type used in the configuration and the log, e.g. rule
+     */
+    String getName();
+
+    /**
+     * @return glob patterns relative to a source root of the files that may hold this type
+     */
+    List<String> getIncludes();
+
+    /**
+     * Called before the sources are read, e.g. to set up a compiler for the source roots of the loader.
+     *
+     * @param loader loader that runs this type
+     * @throws MojoExecutionException if the type cannot be used
+     */
+    void start(ContentLoader loader) throws MojoExecutionException;
+
+    /**
+     * Release what start set up.
+     */
+    void stop();
+
+    /**
+     * Classify a file and extract the id of its content, reading no more of the file than needed.
+     *
+     * @param source source file
+     * @return id on the server or null if the file is not of this type
+     * @throws IOException
+     */
+    String getId(SourceFile source) throws IOException;
+
+    /**
+     * @param source source file of this type
+     * @return content that is compared with the server and imported, e.g. the normalized text of the file
+     * @throws IOException
+     */
+    String getContent(SourceFile source) throws IOException;
+
+    /**
+     * @return command that returns a JSON object of id to content for all content of this type on the server,
+     * or null if the server has no such command and everything has to be imported
+     */
+    Map<String, Object> getMapCommand();
+
+    /**
+     * @return command that returns a JSON object of id to SHA-256 digest, or null if there is none and the map
+     * of getMapCommand is reduced to digests while it is read
+     */
+    Map<String, Object> getDigestMapCommand();
+
+    /**
+     * Compare the content of a file with the one on the server.
+     *
+     * @param server content on the server or null if there is none, its digest in digest mode
+     * @param content content of the file, its digest in digest mode
+     * @return true if the content has to be imported
+     */
+    boolean isChanged(String server, String content);
+
+    /**
+     * Build the command that imports one piece of content.
+     *
+     * @param id id returned by getId
+     * @param content content returned by getContent
+     * @return command
+     * @throws InvalidContentException if the content cannot be imported
+     */
+    Map<String, Object> getImportCommand(String id, String content) throws InvalidContentException;
+
+    /**
+     * @return name of the manifest of the incremental mode, it changes if the content of the files does
+     */
+    String getManifestName();
+
+    /**
+     * @return table of the type in the SQL output, or null if it is not written there
+     */
+    ExportTable getExportTable();
+
+    /**
+     * Values of a row of the SQL output.
+     *
+     * @param id id of the content
+     * @param content content
+     * @param command import command of the content, or null if it was not imported
+     * @return values in the order of the columns of getExportTable
+     * @throws IOException
+     */
+    String[] getExportValues(String id, String content, Map<String, Object> command) throws IOException;
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+/**
+ * Table of a content type in the SQL output. The output files are named after the file name, e.g. rule.sql, or
+ * rule.csv and rule-load.sql for a bulk load, and each piece of content is one row keyed by its id.
+ */
+public class ExportTable {
+    private final String fileName;
+    private final String table;
+    private final String keyColumn;
+    private final String[] columns;
+
+    /**
+     * @param fileName base name of the output files
+     * @param table table name
+     * @param keyColumn primary key column, holds the id
+     * @param columns value columns in the order of ContentType.getExportValues
+     */
+    public ExportTable(String fileName, String table, String keyColumn, String... columns) {
+        this.fileName = fileName;
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.columns = columns;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes one row per rule or page to a file that a SQL database can import.
+ */
+public interface ExportWriter extends Closeable {
+
+    /**
+     * Write one row.
+     *
+     * @param key key
+     * @param values one value per value column, null for NULL
+     * @throws IOException
+     */
+    void write(String key, String... values) throws IOException;
+}
@@ -0,0 +1,529 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Removes what a browser does not render from a page. The output only depends on the input, so a page that has
+ * not been edited always minifies to the same content and can be compared with the server as usual.
+ *
+ * - comments are dropped, except conditional comments, ones starting with ! and Angular comment directives
+ * - white space next to a tag of the document head or a br is dropped, other runs of white space become one
+ *   space, or one line end if the run had one. Block elements like div, li or td keep one, a page may lay them
+ *   out inline and then the space is rendered
+ * - white space inside tags is reduced to one space between attributes, attribute values are left alone
+ * - pre, textarea and xmp are copied as they are
+ * - style blocks lose comments and white space around braces, colons, semicolons and commas
+ * - JavaScript blocks lose comments, indentation and blank lines; line ends are kept so that automatic semicolon
+ *   insertion works the same, strings, template literals and regular expressions are copied as they are
+ * - script blocks holding templates (text/ng-template, text/html, text/x-template) are minified as HTML, other
+ *   script types are copied as they are
+ *
+ * White space is taken to be collapsed the normal way everywhere but in the elements above, a page that relies
+ * on CSS white-space: pre elsewhere should not be minified.
+ */
+public class HtmlMinifier {
+
+    /**
+     * Elements white space before or after whose tags is never rendered, whatever the style sheet does: the head and
+     * what is in it is not displayed, and a line does not start or end with a space.
+     */
+    private static final Set<String> UNRENDERED_SPACE = new HashSet<String>(Arrays.asList(
+            "!doctype", "base", "body", "br", "head", "html", "link", "meta", "title"));
+
+    /**
+     * Elements whose content is not parsed as HTML.
+     */
+    private static final Set<String> RAW = new HashSet<String>(Arrays.asList(
+            "script", "style", "pre", "textarea", "xmp"));
+
+    private static final Set<String> SCRIPT_TYPES = new HashSet<String>(Arrays.asList(
+            "", "text/javascript", "application/javascript", "application/x-javascript", "text/ecmascript",
+            "application/ecmascript", "module"));
+
+    private static final Set<String> TEMPLATE_TYPES = new HashSet<String>(Arrays.asList(
+            "text/ng-template", "text/html", "text/x-template"));
+
+    /**
+     * Keywords after which a slash starts a regular expression and not a division.
+     */
+    private static final Set<String> EXPRESSION_KEYWORDS = new HashSet<String>(Arrays.asList(
+            "return", "typeof", "instanceof", "in", "of", "new", "delete", "void", "throw", "case", "do", "else",
+            "yield", "await"));
+
+    private static final Pattern TYPE = Pattern.compile("\\stype\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+))",
+            Pattern.CASE_INSENSITIVE);
+
+    private HtmlMinifier() {
+    }
+
+    /**
+     * Minify a page.
+     *
+     * @param html page content
+     * @return minified content
+     */
+    public static String minify(String html) {
+        StringBuilder out = new StringBuilder(html.length());
+        minifyHtml(html, out);
+        return out.toString();
+    }
+
+    private static void minifyHtml(String s, StringBuilder out) {
+        int n = s.length();
+        StringBuilder text = new StringBuilder();
+        // white space at the start and the end of the content is dropped
+        boolean trimBefore = true;
+        int i = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c == '<' && s.startsWith("<!--", i)) {
+                int end = s.indexOf("-->", i + 4);
+                end = end < 0 ? n : end + 3;
+                if (isKeptComment(s, i + 4)) {
+                    flushText(text, trimBefore, false, out);
+                    out.append(s, i, end);
+                    trimBefore = false;
+                }
+                // text on both sides of a dropped comment is one text
+                i = end;
+            } else if (c == '<' && isTagStart(s, i + 1)) {
+                String name = tagName(s, i + 1);
+                boolean opening = s.charAt(i + 1) != '/';
+                boolean trim = UNRENDERED_SPACE.contains(name);
+                flushText(text, trimBefore, trim, out);
+                int tagStart = out.length();
+                i = appendTag(s, i, out);
+                trimBefore = trim;
+                // like a browser, the content of a raw element runs to its closing tag even after <script/>
+                if (opening && RAW.contains(name)) {
+                    int close = indexOfCloseTag(s, i, name);
+                    appendRaw(name, out.substring(tagStart), s.substring(i, close), out);
+                    i = close;
+                }
+            } else {
+                text.append(c);
+                i++;
+            }
+        }
+        flushText(text, trimBefore, true, out);
+    }
+
+    private static boolean isKeptComment(String s, int start) {
+        if (s.startsWith("[if", start) || s.startsWith("<![endif]", start) || s.startsWith("!", start)) {
+            return true;
+        }
+        int i = start;
+        while (i < s.length() && isSpace(s.charAt(i))) {
+            i++;
+        }
+        return s.startsWith("directive:", i);
+    }
+
+    private static boolean isTagStart(String s, int i) {
+        if (i >= s.length()) {
+            return false;
+        }
+        char c = s.charAt(i);
+        if (c == '/') {
+            return i + 1 < s.length() && Character.isLetter(s.charAt(i + 1));
+        }
+        return Character.isLetter(c) || c == '!' || c == '?';
+    }
+
+    /**
+     * @return lower case name of the tag starting at i, without the slash of a closing tag
+     */
+    private static String tagName(String s, int i) {
+        if (s.charAt(i) == '/') {
+            i++;
+        }
+        int end = i;
+        while (end < s.length() && !isSpace(s.charAt(end)) && s.charAt(end) != '>' && s.charAt(end) != '/') {
+            end++;
+        }
+        return s.substring(i, end).toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Copy a tag with the white space between attributes reduced to one space.
+     *
+     * @return index after the tag
+     */
+    private static int appendTag(String s, int start, StringBuilder out) {
+        int n = s.length();
+        boolean space = false;
+        char last = 0;
+        int i = start;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (isSpace(c)) {
+                space = true;
+                i++;
+                continue;
+            }
+            if (space) {
+                if (c != '>' && c != '=' && last != '=') {
+                    out.append(' ');
+                }
+                space = false;
+            }
+            if ((c == '"' || c == '\'') && last == '=') {
+                int end = s.indexOf(c, i + 1);
+                end = end < 0 ? n : end + 1;
+                out.append(s, i, end);
+                last = c;
+                i = end;
+                continue;
+            }
+            out.append(c);
+            i++;
+            if (c == '>') {
+                return i;
+            }
+            last = c;
+        }
+        return n;
+    }
+
+    private static int indexOfCloseTag(String s, int from, String name) {
+        int i = s.indexOf("</", from);
+        while (i >= 0) {
+            int end = i + 2 + name.length();
+            if (s.regionMatches(true, i + 2, name, 0, name.length())
+                    && (end == s.length() || isSpace(s.charAt(end)) || s.charAt(end) == '>' || s.charAt(end) == '/')) {
+                return i;
+            }
+            i = s.indexOf("</", i + 2);
+        }
+        return s.length();
+    }
+
+    private static void appendRaw(String name, String tag, String body, StringBuilder out) {
+        String type = null;
+        Matcher matcher = TYPE.matcher(tag);
+        if (matcher.find()) {
+            type = matcher.group(1) != null ? matcher.group(1)
+                    : matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+            type = type.trim().toLowerCase(Locale.ENGLISH);
+        }
+        if ("script".equals(name) && (type == null || SCRIPT_TYPES.contains(type))) {
+            out.append(minifyJs(body));
+        } else if ("script".equals(name) && TEMPLATE_TYPES.contains(type)) {
+            minifyHtml(body, out);
+        } else if ("style".equals(name) && (type == null || "text/css".equals(type))) {
+            out.append(minifyCss(body));
+        } else {
+            out.append(body);
+        }
+    }
+
+    /**
+     * Write the text found between two tags with its white space collapsed.
+     *
+     * @param trimBefore drop white space at the start of the text
+     * @param trimAfter drop white space at the end of the text
+     */
+    private static void flushText(StringBuilder text, boolean trimBefore, boolean trimAfter, StringBuilder out) {
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            char c = text.charAt(i);
+            if (!isSpace(c)) {
+                out.append(c);
+                i++;
+                continue;
+            }
+            int start = i;
+            boolean newline = false;
+            while (i < n && isSpace(text.charAt(i))) {
+                newline |= text.charAt(i) == '\n';
+                i++;
+            }
+            if (!(start == 0 && trimBefore) && !(i == n && trimAfter)) {
+                out.append(newline ? '\n' : ' ');
+            }
+        }
+        text.setLength(0);
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+    }
+
+    /**
+     * Minify a style sheet.
+     */
+    static String minifyCss(String s) {
+        StringBuilder out = new StringBuilder(s.length());
+        int n = s.length();
+        boolean space = false;
+        int i = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c == '/' && i + 1 < n && s.charAt(i + 1) == '*') {
+                int end = s.indexOf("*/", i + 2);
+                end = end < 0 ? n : end + 2;
+                if (i + 2 < n && s.charAt(i + 2) == '!') {
+                    appendCssSpace(space, c, out);
+                    space = false;
+                    out.append(s, i, end);
+                } else {
+                    space = true;
+                }
+                i = end;
+                continue;
+            }
+            if (isSpace(c)) {
+                space = true;
+                i++;
+                continue;
+            }
+            appendCssSpace(space, c, out);
+            space = false;
+            if (c == '"' || c == '\'') {
+                i = appendString(s, i, out);
+                continue;
+            }
+            if (c == '}' && out.length() > 0 && out.charAt(out.length() - 1) == ';') {
+                out.setLength(out.length() - 1);
+            }
+            out.append(c);
+            i++;
+        }
+        return out.toString();
+    }
+
+    private static void appendCssSpace(boolean space, char next, StringBuilder out) {
+        if (!space || out.length() == 0) {
+            return;
+        }
+        char last = out.charAt(out.length() - 1);
+        // a space before a colon can be a descendant selector, a:hover and a :hover are not the same
+        if ("{};,:(".indexOf(last) < 0 && "{};,)".indexOf(next) < 0) {
+            out.append(' ');
+        }
+    }
+
+    private static int appendString(String s, int start, StringBuilder out) {
+        int end = skipString(s, start);
+        out.append(s, start, end);
+        return end;
+    }
+
+    /**
+     * @return index after the quoted string starting at start, or the end of the line if it is not closed
+     */
+    private static int skipString(String s, int start) {
+        char quote = s.charAt(start);
+        int i = start + 1;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                i++;
+                break;
+            }
+            if (isLineTerminator(c)) {
+                break;
+            }
+            i++;
+        }
+        return Math.min(i, s.length());
+    }
+
+    /**
+     * Minify a script.
+     */
+    static String minifyJs(String s) {
+        StringBuilder out = new StringBuilder(s.length());
+        int n = s.length();
+        // 0 no white space pending, 1 a space, 2 a line end
+        int space = 0;
+        boolean regexAllowed = true;
+        int i = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c == '/' && i + 1 < n && s.charAt(i + 1) == '/') {
+                while (i < n && !isLineTerminator(s.charAt(i))) {
+                    i++;
+                }
+                space = Math.max(space, 1);
+                continue;
+            }
+            if (c == '/' && i + 1 < n && s.charAt(i + 1) == '*') {
+                int end = s.indexOf("*/", i + 2);
+                end = end < 0 ? n : end + 2;
+                boolean newline = false;
+                for (int k = i; k < end && !newline; k++) {
+                    newline = isLineTerminator(s.charAt(k));
+                }
+                space = Math.max(space, newline ? 2 : 1);
+                i = end;
+                continue;
+            }
+            if (isJsSpace(c)) {
+                space = Math.max(space, isLineTerminator(c) ? 2 : 1);
+                i++;
+                continue;
+            }
+            if (space > 0) {
+                appendJsSpace(space, s, i, out);
+                space = 0;
+            }
+            if (c == '"' || c == '\'') {
+                i = appendString(s, i, out);
+                regexAllowed = false;
+            } else if (c == '`') {
+                int end = skipTemplate(s, i);
+                out.append(s, i, end);
+                i = end;
+                regexAllowed = false;
+            } else if (c == '/' && regexAllowed && skipRegex(s, i) > 0) {
+                int end = skipRegex(s, i);
+                out.append(s, i, end);
+                i = end;
+                regexAllowed = false;
+            } else if (isIdentifierChar(c)) {
+                int end = i;
+                while (end < n && isIdentifierChar(s.charAt(end))) {
+                    end++;
+                }
+                String word = s.substring(i, end);
+                out.append(word);
+                i = end;
+                regexAllowed = EXPRESSION_KEYWORDS.contains(word);
+            } else {
+                // after ++ and -- a slash is a division, like after ) and ]
+                boolean increment = (c == '+' || c == '-') && out.length() > 0 && out.charAt(out.length() - 1) == c;
+                out.append(c);
+                i++;
+                regexAllowed = c != ')' && c != ']' && !increment;
+            }
+        }
+        return out.toString();
+    }
+
+    private static void appendJsSpace(int space, String s, int next, StringBuilder out) {
+        if (out.length() == 0) {
+            return;
+        }
+        char last = out.charAt(out.length() - 1);
+        char c = s.charAt(next);
+        if (space == 2) {
+            // a line end only matters for automatic semicolon insertion and for --> at the start of a line
+            if (("{;,(".indexOf(last) < 0 && c != '}') || s.startsWith("-->", next)) {
+                out.append('\n');
+            }
+        } else if ("{}()[];,:=?".indexOf(last) < 0 && "{}()[];,:=?".indexOf(c) < 0) {
+            out.append(' ');
+        }
+    }
+
+    /**
+     * @return index after the template literal starting at start, including the expressions in it
+     */
+    private static int skipTemplate(String s, int start) {
+        int n = s.length();
+        int i = start + 1;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '`') {
+                return i + 1;
+            } else if (c == '$' && i + 1 < n && s.charAt(i + 1) == '{') {
+                int depth = 1;
+                i += 2;
+                while (i < n && depth > 0) {
+                    char e = s.charAt(i);
+                    if (e == '"' || e == '\'') {
+                        i = skipString(s, i);
+                        continue;
+                    }
+                    if (e == '`') {
+                        i = skipTemplate(s, i);
+                        continue;
+                    }
+                    if (e == '{') {
+                        depth++;
+                    } else if (e == '}') {
+                        depth--;
+                    }
+                    i++;
+                }
+            } else {
+                i++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return index after the regular expression starting at start, or -1 if it does not end on the same line
+     */
+    private static int skipRegex(String s, int start) {
+        int n = s.length();
+        boolean inClass = false;
+        int i = start + 1;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (isLineTerminator(c)) {
+                return -1;
+            }
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                inClass = true;
+            } else if (c == ']') {
+                inClass = false;
+            } else if (c == '/' && !inClass) {
+                i++;
+                while (i < n && isIdentifierChar(s.charAt(i))) {
+                    i++;
+                }
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isJsSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\u000b' || c == '\f' || c == '\u00a0' || c == '\ufeff'
+                || isLineTerminator(c) || Character.getType(c) == Character.SPACE_SEPARATOR;
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '\\' || (c > 127 && !isJsSpace(c));
+    }
+}
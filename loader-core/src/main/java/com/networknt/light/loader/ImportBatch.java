@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Import commands waiting to be sent to the server as one multi-item request. Commands are kept serialized so that
+ * the size of the batch is known exactly and the request body is built without serializing them again.
+ */
+public class ImportBatch {
+    private final int batchSize;
+    private final long maxBatchBytes;
+    private final List<String> keys = new ArrayList<String>();
+    private final List<byte[]> commands = new ArrayList<byte[]>();
+    private long bytes = 0;
+
+    public ImportBatch(int batchSize, long maxBatchBytes) {
+        this.batchSize = Math.max(1, batchSize);
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * Check if a command can be added without going over maxBatchBytes. An empty batch takes any command so that
+     * a single big item is still sent.
+     *
+     * @param command serialized command
+     * @return boolean
+     */
+    public boolean fits(byte[] command) {
+        return commands.isEmpty() || bytes + command.length + 1 <= maxBatchBytes;
+    }
+
+    public void add(String key, byte[] command) {
+        keys.add(key);
+        commands.add(command);
+        bytes += command.length + 1;
+    }
+
+    public boolean isFull() {
+        return commands.size() >= batchSize || bytes >= maxBatchBytes;
+    }
+
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    public int size() {
+        return commands.size();
+    }
+
+    public String getKey(int i) {
+        return keys.get(i);
+    }
+
+    public byte[] getCommand(int i) {
+        return commands.get(i);
+    }
+
+    /**
+     * @return all commands as one JSON array
+     */
+    public byte[] toJson() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int)Math.min(Integer.MAX_VALUE - 8, bytes + 2));
+        out.write('[');
+        for (int i = 0; i < commands.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            byte[] command = commands.get(i);
+            out.write(command, 0, command.length);
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    /**
+     * Tell if a failed batch request was turned down because the server does not know the batch form, as opposed
+     * to failing for a reason that may go away, like a busy server. A plain 400 is not enough, a server that knows
+     * the batch form answers a batch it cannot handle with 400 as well; only the body tells them apart.
+     *
+     * @param status HTTP status of the response
+     * @param body response body
+     * @return true if the batch form should not be used again
+     */
+    public static boolean isRejected(int status, String body) {
+        if (status == 404 || status == 405 || status == 501) {
+            return true;
+        }
+        String text = body == null ? "" : body.toLowerCase();
+        return text.contains("unknown command") || text.contains("invalid command");
+    }
+
+    public void clear() {
+        keys.clear();
+        commands.clear();
+        bytes = 0;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown by a content type for content that cannot be imported, e.g. a rule that does not compile. The file is
+ * left out, its errors are logged and the build fails once everything else has been loaded.
+ */
+public class InvalidContentException extends Exception {
+    private final List<String> errors;
+
+    /**
+     * @param reason what is wrong, said of several pieces of content so that it can be counted, e.g. do not compile
+     * @param errors messages to log, e.g. the compiler errors
+     */
+    public InvalidContentException(String reason, List<String> errors) {
+        super(reason);
+        this.errors = errors == null ? Collections.<String>emptyList() : errors;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
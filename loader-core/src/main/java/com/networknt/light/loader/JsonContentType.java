@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * JSON documents such as forms or menus, configured in the pom:
+ *
+ * <pre>
+ * &lt;jsonTypes&gt;
+ *     &lt;jsonType&gt;
+ *         &lt;name&gt;form&lt;/name&gt;
+ *         &lt;includes&gt;&lt;include&gt;forms/**&#47;*.json&lt;/include&gt;&lt;/includes&gt;
+ *         &lt;importCommand&gt;impForm&lt;/importCommand&gt;
+ *         &lt;mapCommand&gt;getFormMap&lt;/mapCommand&gt;
+ *         &lt;sqlTable&gt;FORM&lt;/sqlTable&gt;
+ *     &lt;/jsonType&gt;
+ * &lt;/jsonTypes&gt;
+ * </pre>
+ *
+ * The id is the value of idField in the document and the parsed document is sent as the data of the import
+ * command. Without a mapCommand every document is imported on each run. With a sqlTable the documents are written
+ * to name.sql as well, with the id in column id and the document in column content.
+ */
+public class JsonContentType extends AbstractContentType {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private String name;
+    private String[] includes;
+    private String category;
+    private String importCommand;
+    private String mapCommand;
+    private String idField = "id";
+    private String sqlTable;
+
+    public JsonContentType() {
+    }
+
+    public JsonContentType(String name, String[] includes, String category, String importCommand,
+                           String mapCommand, String idField) {
+        this.name = name;
+        this.includes = includes;
+        this.category = category;
+        this.importCommand = importCommand;
+        this.mapCommand = mapCommand;
+        this.idField = idField;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getIncludes() {
+        if (includes == null || includes.length == 0) {
+            return Collections.singletonList("**/" + name + "s/**/*.json");
+        }
+        return Arrays.asList(includes);
+    }
+
+    public String getId(SourceFile source) throws IOException {
+        String content = source.read().getText();
+        try {
+            JsonNode id = mapper.readTree(content).get(idField);
+            return id == null || !id.isValueNode() ? null : id.asText();
+        } catch (IOException e) {
+            // not a JSON document
+            return null;
+        }
+    }
+
+    public Map<String, Object> getMapCommand() {
+        return mapCommand == null ? null : command(getCategory(), mapCommand, true);
+    }
+
+    public Map<String, Object> getImportCommand(String id, String content) throws InvalidContentException {
+        try {
+            Map<String, Object> data = mapper.readValue(content, new TypeReference<Map<String, Object>>() {
+            });
+            return command(getCategory(), importCommand, data);
+        } catch (IOException e) {
+            throw new InvalidContentException("are not valid JSON",
+                    Collections.singletonList("Invalid JSON in " + id + ": " + e.getMessage()));
+        }
+    }
+
+    @Override
+    public ExportTable getExportTable() {
+        return sqlTable == null ? null : new ExportTable(name, sqlTable, "id", "content");
+    }
+
+    /**
+     * @param sqlTable table of the documents in the SQL output, or null to leave them out
+     */
+    public void setSqlTable(String sqlTable) {
+        this.sqlTable = sqlTable;
+    }
+
+    /**
+     * @return true if the type has the settings it needs
+     */
+    public boolean isValid() {
+        return name != null && importCommand != null;
+    }
+
+    private String getCategory() {
+        return category == null ? name : category;
+    }
+}
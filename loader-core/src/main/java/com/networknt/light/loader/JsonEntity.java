@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * Request body of a value written as JSON with a Jackson generator.
+ *
+ * A gzip body is written straight to the connection through gzip instead of being serialized to a byte array
+ * first. Strings and byte arrays in the value are copied into the stream as it is written, so the only copy of a
+ * large page or rule is the one the caller already holds. Its length is only known once it has been compressed, it
+ * is sent with chunked transfer encoding and written again for every retry of the request.
+ *
+ * A plain body is sent with Content-Length. It is serialized once, when the entity is created, and the same bytes
+ * are sent for every retry.
+ */
+public class JsonEntity extends AbstractHttpEntity {
+    private final ObjectMapper mapper;
+    private final Object value;
+    private final boolean gzip;
+    private final byte[] body;
+    private volatile long bytesWritten = -1;
+
+    /**
+     * @param mapper mapper that writes the value
+     * @param value maps, lists, strings, numbers and byte arrays
+     * @param gzip compress the body and mark it with Content-Encoding: gzip
+     * @throws IOException if a plain body cannot be serialized
+     */
+    public JsonEntity(ObjectMapper mapper, Object value, boolean gzip) throws IOException {
+        this.mapper = mapper;
+        this.value = value;
+        this.gzip = gzip;
+        this.body = gzip ? null : mapper.writeValueAsBytes(value);
+        setContentType(ContentType.APPLICATION_JSON.toString());
+        setChunked(gzip);
+        if (gzip) {
+            setContentEncoding("gzip");
+        }
+    }
+
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    /**
+     * @return length of a plain body, -1 for a gzip body
+     */
+    public long getContentLength() {
+        return gzip ? -1 : body.length;
+    }
+
+    /**
+     * @return bytes sent by the last writeTo, -1 if the body has not been written yet
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public InputStream getContent() throws IOException {
+        if (!gzip) {
+            return new ByteArrayInputStream(body);
+        }
+        // only used if something reads the body instead of writing it, e.g. EntityUtils
+        return new ByteArrayInputStream(RequestCompression.compress(mapper.writeValueAsBytes(value), "gzip"));
+    }
+
+    public void writeTo(OutputStream outstream) throws IOException {
+        if (!gzip) {
+            outstream.write(body);
+            outstream.flush();
+            bytesWritten = body.length;
+            return;
+        }
+        bytesWritten = write(outstream);
+    }
+
+    /**
+     * Write the value through gzip.
+     *
+     * @return number of bytes written to the target
+     */
+    private long write(OutputStream target) throws IOException {
+        final long[] count = new long[1];
+        OutputStream counting = new FilterOutputStream(target) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                count[0]++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                count[0] += len;
+            }
+
+            @Override
+            public void close() throws IOException {
+                // the connection is closed by the client
+                flush();
+            }
+        };
+        JsonGenerator generator = mapper.getFactory().createGenerator(new GZIPOutputStream(counting, 8192),
+                JsonEncoding.UTF8);
+        try {
+            mapper.writeValue(generator, value);
+        } finally {
+            // closes the gzip stream as well, which writes its trailer
+            generator.close();
+        }
+        return count[0];
+    }
+
+    public boolean isStreaming() {
+        return false;
+    }
+}
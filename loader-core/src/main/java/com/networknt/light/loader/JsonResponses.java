@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads /api/rs responses with the Jackson streaming parser straight from the response stream, so that a big
+ * response is never held as a String.
+ */
+public class JsonResponses {
+    private static final JsonFactory factory = new JsonFactory();
+
+    /**
+     * Get a top level scalar field of a JSON object. The rest of the object is skipped without building it.
+     *
+     * @param in response stream, closed when done
+     * @param name field name
+     * @return String value or null if the field is missing
+     * @throws IOException
+     */
+    public static String readField(InputStream in, String name) throws IOException {
+        JsonParser parser = factory.createParser(in);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (name.equals(field) && token.isScalarValue()) {
+                    return token == JsonToken.VALUE_NULL ? null : parser.getText();
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Read a JSON object of strings into a map. With digest true each value is replaced by its SHA-256 digest as
+     * soon as it has been read, so only one value is on the heap at a time.
+     *
+     * @param in response stream, closed when done
+     * @param digest store digests instead of values
+     * @return Map<String, String>
+     * @throws IOException
+     */
+    public static Map<String, String> readStringMap(InputStream in, boolean digest) throws IOException {
+        JsonParser parser = factory.createParser(in);
+        try {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            Map<String, String> map = new HashMap<String, String>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String key = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (!token.isScalarValue()) {
+                    throw new JsonParseException(parser, "Expected a string value for " + key);
+                }
+                String value = token == JsonToken.VALUE_NULL ? null : parser.getText();
+                map.put(key, digest ? Digests.sha256Hex(value) : value);
+            }
+            return map;
+        } finally {
+            parser.close();
+        }
+    }
+}
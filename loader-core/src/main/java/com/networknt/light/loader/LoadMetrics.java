@@ -0,0 +1,276 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Counters, phase timings and request latencies of a loader run. Everything can be updated from the parser and
+ * upload threads. At the end of a run the numbers are written to a JSON report and summed up in one log line.
+ *
+ * Phases are wall clock time spent by the mojo thread: login, map (download of the server map), scan (walk, read
+ * and compare, uploads run in the background meanwhile) and upload (waiting for the uploads still running after
+ * the scan). Request latency is measured per endpoint from sending a request to receiving the response headers,
+ * each retry counts as a request of its own.
+ */
+public class LoadMetrics {
+    public static final String FILES_SCANNED = "filesScanned";
+    public static final String FILES_SKIPPED = "filesSkipped";
+    public static final String FILES_CHANGED = "filesChanged";
+    public static final String BYTES_READ = "bytesRead";
+    public static final String BYTES_MINIFIED = "bytesMinified";
+    public static final String BYTES_UPLOADED = "bytesUploaded";
+    public static final String RETRIES = "retries";
+
+    /**
+     * Latency histogram with buckets growing exponentially, 8 per power of two, so that a percentile is within
+     * 1/8 of the real value and memory does not grow with the number of requests.
+     */
+    public static class Histogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+
+        private final long[] buckets = new long[64 << SUB_BITS];
+        private long count = 0;
+        private long errors = 0;
+        private long totalMicros = 0;
+        private long maxMicros = 0;
+
+        public synchronized void record(long micros, boolean error) {
+            micros = Math.max(0, micros);
+            buckets[index(micros)]++;
+            count++;
+            totalMicros += micros;
+            maxMicros = Math.max(maxMicros, micros);
+            if (error) {
+                errors++;
+            }
+        }
+
+        static int index(long value) {
+            if (value < SUB_COUNT) {
+                return (int) value;
+            }
+            int exp = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+            return ((exp - SUB_BITS + 1) << SUB_BITS) + sub;
+        }
+
+        static long upperBound(int index) {
+            if (index < SUB_COUNT) {
+                return index;
+            }
+            int shift = (index >> SUB_BITS) - 1;
+            long lower = (long) (SUB_COUNT + (index & (SUB_COUNT - 1))) << shift;
+            return lower + (1L << shift) - 1;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return upper bound of the latency in microseconds, 0 if nothing has been recorded
+         */
+        public synchronized long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), maxMicros);
+                }
+            }
+            return maxMicros;
+        }
+
+        synchronized Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<String, Object>();
+            map.put("requests", count);
+            map.put("errors", errors);
+            map.put("p50Millis", millis(getPercentile(50)));
+            map.put("p99Millis", millis(getPercentile(99)));
+            map.put("maxMillis", millis(maxMicros));
+            map.put("meanMillis", millis(count == 0 ? 0 : totalMicros / count));
+            return map;
+        }
+    }
+
+    private final long startTime = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+    private final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+    private final ConcurrentHashMap<String, Histogram> endpoints = new ConcurrentHashMap<String, Histogram>();
+
+    public void add(String counter, long n) {
+        AtomicLong value = counters.get(counter);
+        if (value == null) {
+            AtomicLong created = new AtomicLong();
+            value = counters.putIfAbsent(counter, created);
+            if (value == null) {
+                value = created;
+            }
+        }
+        value.addAndGet(n);
+    }
+
+    public long get(String counter) {
+        AtomicLong value = counters.get(counter);
+        return value == null ? 0 : value.get();
+    }
+
+    /**
+     * Add the time since start to a phase. A phase that runs more than once, like upload in watch mode, adds up.
+     *
+     * @param phase name of the phase
+     * @param start System.nanoTime() at the start of the phase
+     */
+    public synchronized void phase(String phase, long start) {
+        Long total = phases.get(phase);
+        phases.put(phase, (total == null ? 0 : total) + System.nanoTime() - start);
+    }
+
+    /**
+     * Record one request.
+     *
+     * @param endpoint command name
+     * @param start System.nanoTime() when the request was sent
+     * @param error true if the request failed or the server returned an error status
+     */
+    public void request(String endpoint, long start, boolean error) {
+        Histogram histogram = endpoints.get(endpoint);
+        if (histogram == null) {
+            Histogram created = new Histogram();
+            histogram = endpoints.putIfAbsent(endpoint, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        histogram.record((System.nanoTime() - start) / 1000, error);
+    }
+
+    public Histogram getEndpoint(String endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    /**
+     * @return the report as nested maps
+     */
+    public synchronized Map<String, Object> toReport(String loader, String target) {
+        long elapsed = System.nanoTime() - startNanos;
+        Map<String, Object> report = new LinkedHashMap<String, Object>();
+        report.put("loader", loader);
+        report.put("target", target);
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        report.put("startTime", format.format(new Date(startTime)));
+        report.put("elapsedMillis", millis(elapsed / 1000));
+        Map<String, Object> phaseMillis = new LinkedHashMap<String, Object>();
+        for (Map.Entry<String, Long> entry : phases.entrySet()) {
+            phaseMillis.put(entry.getKey(), millis(entry.getValue() / 1000));
+        }
+        report.put("phases", phaseMillis);
+        Map<String, Object> counterValues = new TreeMap<String, Object>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            counterValues.put(entry.getKey(), entry.getValue().get());
+        }
+        report.put("counters", counterValues);
+        Map<String, Object> throughput = new LinkedHashMap<String, Object>();
+        double seconds = Math.max(elapsed, 1) / 1e9;
+        throughput.put("filesPerSecond", round(get(FILES_SCANNED) / seconds));
+        throughput.put("bytesReadPerSecond", round(get(BYTES_READ) / seconds));
+        throughput.put("bytesUploadedPerSecond", round(get(BYTES_UPLOADED) / seconds));
+        report.put("throughput", throughput);
+        Map<String, Object> endpointStats = new TreeMap<String, Object>();
+        for (Map.Entry<String, Histogram> entry : endpoints.entrySet()) {
+            endpointStats.put(entry.getKey(), entry.getValue().toMap());
+        }
+        report.put("endpoints", endpointStats);
+        return report;
+    }
+
+    /**
+     * Write the report as JSON.
+     */
+    public void write(File file, ObjectMapper mapper, String loader, String target) throws IOException {
+        mapper.writerWithDefaultPrettyPrinter().writeValue(file, toReport(loader, target));
+    }
+
+    /**
+     * @return one line with the main numbers of the run
+     */
+    public synchronized String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(get(FILES_SCANNED)).append(" files scanned (").append(get(FILES_SKIPPED)).append(" skipped, ")
+                .append(bytes(get(BYTES_READ))).append(" read), ").append(get(FILES_CHANGED)).append(" changed, ")
+                .append(bytes(get(BYTES_UPLOADED))).append(" uploaded in ")
+                .append(duration(System.nanoTime() - startNanos));
+        String separator = " (";
+        for (Map.Entry<String, Long> entry : phases.entrySet()) {
+            sb.append(separator).append(entry.getKey()).append(' ').append(duration(entry.getValue()));
+            separator = ", ";
+        }
+        if (!phases.isEmpty()) {
+            sb.append(')');
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(endpoints).entrySet()) {
+            Histogram histogram = entry.getValue();
+            sb.append("; ").append(entry.getKey()).append(' ').append(histogram.getCount()).append(" x p50 ")
+                    .append(millis(histogram.getPercentile(50))).append(" ms p99 ")
+                    .append(millis(histogram.getPercentile(99))).append(" ms");
+        }
+        return sb.toString();
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    private static String duration(long nanos) {
+        return nanos >= 1000000000L ? round(nanos / 1e9) + " s" : (nanos / 1000000) + " ms";
+    }
+
+    private static String bytes(long n) {
+        if (n >= 1 << 20) {
+            return round(n / 1048576.0) + " MB";
+        }
+        return n >= 1 << 10 ? round(n / 1024.0) + " KB" : n + " B";
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Local record of the source files that were in sync with a server at the end of the last load. A file whose size
+ * and modification time are the same as in the manifest can be skipped without opening it. There is one manifest
+ * per server url in the output directory and it is replaced atomically, so a failed run leaves the previous
+ * manifest untouched.
+ *
+ * Each line of the file holds path, size, modification time and content digest separated by tabs.
+ */
+public class Manifest {
+
+    public static class Entry {
+        final String path;
+        final long size;
+        final long modified;
+        final String digest;
+
+        public Entry(String path, long size, long modified, String digest) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.digest = digest;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+    }
+
+    private final File file;
+    private final String serverUrl;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new TreeMap<String, Entry>();
+    private final Map<String, Entry> pending = new HashMap<String, Entry>();
+
+    private Manifest(File file, String serverUrl, Map<String, Entry> previous) {
+        this.file = file;
+        this.serverUrl = serverUrl;
+        this.previous = previous;
+    }
+
+    /**
+     * Load the manifest of a server from the output directory. A missing or unreadable manifest gives an empty one.
+     *
+     * @param outputDirectory build output directory
+     * @param name name of the loader, rule or page
+     * @param serverUrl url of the server
+     * @return Manifest
+     */
+    public static Manifest load(File outputDirectory, String name, String serverUrl) {
+        String key = Digests.sha256Hex(serverUrl).substring(0, 16);
+        File file = new File(outputDirectory, name + "-manifest-" + key + ".txt");
+        Map<String, Entry> previous = new HashMap<String, Entry>();
+        if (file.exists()) {
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Digests.UTF8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] fields = line.split("\t");
+                    if (fields.length == 4) {
+                        previous.put(fields[0], new Entry(fields[0], Long.parseLong(fields[1]),
+                                Long.parseLong(fields[2]), "-".equals(fields[3]) ? null : fields[3]));
+                    }
+                }
+            } catch (Exception e) {
+                // start from scratch if the manifest is broken
+                previous.clear();
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                }
+            }
+        }
+        return new Manifest(file, serverUrl, previous);
+    }
+
+    /**
+     * Create an entry for a file from its current size and modification time.
+     */
+    public static Entry entry(File file, String digest) {
+        return new Entry(file.getPath(), file.length(), file.lastModified(), digest);
+    }
+
+    /**
+     * Get the previous entry of a file if the file has not been touched since. This is safe to call from the
+     * parser threads.
+     *
+     * @param file source file
+     * @return Entry or null if the file has to be read
+     */
+    public Entry getClean(File file) {
+        Entry entry = previous.get(file.getPath());
+        if (entry != null && entry.size == file.length() && entry.modified == file.lastModified()) {
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Record a file that is in sync with the server.
+     */
+    public synchronized void clean(Entry entry) {
+        current.put(entry.path, entry);
+    }
+
+    /**
+     * Record a file that is being uploaded. It is only written to the manifest once uploaded is called for its key.
+     */
+    public synchronized void pending(String key, Entry entry) {
+        pending.put(key, entry);
+    }
+
+    public synchronized void uploaded(String key) {
+        Entry entry = pending.remove(key);
+        if (entry != null) {
+            current.put(entry.path, entry);
+        }
+    }
+
+    /**
+     * Write the manifest to a temporary file and move it over the old one.
+     *
+     * @throws IOException
+     */
+    public synchronized void save() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        Writer out = new OutputStreamWriter(new FileOutputStream(tmp), Digests.UTF8);
+        try {
+            out.write("# " + serverUrl + "\n");
+            for (Entry entry : current.values()) {
+                out.write(entry.path + "\t" + entry.size + "\t" + entry.modified + "\t"
+                        + (entry.digest == null ? "-" : entry.digest) + "\n");
+            }
+        } finally {
+            out.close();
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
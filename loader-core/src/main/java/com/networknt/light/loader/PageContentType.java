@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTML pages. The id is the file name without the extension.
+ *
+ * Pages can be minified before they are compared with the server, see HtmlMinifier, and sent with a variant that
+ * is compressed at build time, see Precompressor.
+ */
+public class PageContentType extends AbstractContentType {
+    private boolean minifyHtml = false;
+    private Precompressor precompressor = new Precompressor("none");
+
+    public String getName() {
+        return "page";
+    }
+
+    public List<String> getIncludes() {
+        return Collections.singletonList("**/*.html");
+    }
+
+    /**
+     * @param minifyHtml compare and import minified pages
+     */
+    public void setMinifyHtml(boolean minifyHtml) {
+        this.minifyHtml = minifyHtml;
+    }
+
+    /**
+     * @param precompress one of Precompressor.ENCODINGS
+     * @throws IllegalArgumentException if the encoding is not supported
+     */
+    public void setPrecompress(String precompress) {
+        this.precompressor = new Precompressor(precompress);
+    }
+
+    public String getId(SourceFile source) {
+        return getBaseName(source.getFile());
+    }
+
+    @Override
+    public String getContent(SourceFile source) throws IOException {
+        SourceReader.Source content = source.read();
+        if (!minifyHtml) {
+            return content.getText();
+        }
+        String minified = HtmlMinifier.minify(content.getText());
+        source.getMetrics().add(LoadMetrics.BYTES_MINIFIED,
+                content.getLength() - RequestCompression.utf8Length(minified));
+        return minified;
+    }
+
+    public Map<String, Object> getMapCommand() {
+        return command("page", "getPageMap", true);
+    }
+
+    @Override
+    public Map<String, Object> getDigestMapCommand() {
+        return command("page", "getPageDigestMap", true);
+    }
+
+    public Map<String, Object> getImportCommand(String id, String content) {
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put("id", id);
+        data.put("content", content);
+        byte[] compressed = compress(content);
+        if (compressed != null) {
+            // byte arrays are written as base64
+            data.put("variants", Collections.singletonMap(precompressor.getEncoding(), compressed));
+        }
+        return command("page", "impPage", data);
+    }
+
+    /**
+     * Minified pages are kept apart, files that were in sync unminified are not in sync minified.
+     */
+    @Override
+    public String getManifestName() {
+        return minifyHtml ? "page-min" : "page";
+    }
+
+    @Override
+    public ExportTable getExportTable() {
+        if (precompressor.isEnabled()) {
+            return new ExportTable("server", "PAGE", "id", "content", "content_" + precompressor.getEncoding());
+        }
+        return new ExportTable("server", "PAGE", "id", "content");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public String[] getExportValues(String id, String content, Map<String, Object> command) {
+        if (!precompressor.isEnabled()) {
+            return new String[]{content};
+        }
+        // the variant of an imported page is in its command already
+        byte[] compressed;
+        if (command == null) {
+            compressed = compress(content);
+        } else {
+            Map<String, Object> data = (Map<String, Object>) command.get("data");
+            Map<String, byte[]> variants = (Map<String, byte[]>) data.get("variants");
+            compressed = variants == null ? null : variants.get(precompressor.getEncoding());
+        }
+        return new String[]{content, compressed == null ? null : Base64.getEncoder().encodeToString(compressed)};
+    }
+
+    private byte[] compress(String content) {
+        try {
+            return precompressor.compress(content);
+        } catch (IOException e) {
+            // compressed in memory
+            throw new IllegalStateException(e);
+        }
+    }
+}
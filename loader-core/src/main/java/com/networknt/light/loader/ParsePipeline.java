@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Streams the files found by a SourceFinder through a pool of parser threads. The directory walk runs on its own
+ * thread and blocks once queueSize files are waiting to be consumed, so memory stays bounded no matter how big the
+ * tree is. Results are handed back to the calling thread in walk order, which keeps the log output and the upload
+ * order the same from run to run.
+ */
+public class ParsePipeline<T> {
+
+    /**
+     * Callback of the pipeline. parse is called on the parser threads and must not touch shared mutable state,
+     * apply is called on the thread that runs the pipeline.
+     */
+    public interface Handler<T> {
+        T parse(String filePath) throws Exception;
+
+        void apply(T result) throws MojoExecutionException;
+    }
+
+    private static final Future<Object> END = new FutureTask<Object>(new Callable<Object>() {
+        public Object call() {
+            return null;
+        }
+    });
+
+    private final int threads;
+    private final int queueSize;
+
+    public ParsePipeline(int threads, int queueSize) {
+        this.threads = Math.max(1, threads);
+        this.queueSize = Math.max(1, queueSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void run(final SourceFinder finder, final Handler<T> handler) throws MojoExecutionException {
+        final BlockingQueue<Future<T>> queue = new ArrayBlockingQueue<Future<T>>(queueSize);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "loader-parser-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        final Throwable[] walkError = new Throwable[1];
+        Thread walker = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    finder.find(new SourceFinder.Visitor() {
+                        public void visit(final File file) throws InterruptedException {
+                            queue.put(executor.submit(new Callable<T>() {
+                                public T call() throws Exception {
+                                    return handler.parse(file.getPath());
+                                }
+                            }));
+                        }
+                    });
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Throwable e) {
+                    walkError[0] = e;
+                }
+                try {
+                    queue.put((Future<T>) (Future<?>) END);
+                } catch (InterruptedException e) {
+                    // consumer has given up already
+                }
+            }
+        }, "loader-walker");
+        walker.setDaemon(true);
+        walker.start();
+        try {
+            while (true) {
+                Future<T> future = queue.take();
+                if (future == (Future<?>) END) {
+                    break;
+                }
+                handler.apply(future.get());
+            }
+            walker.join();
+            if (walkError[0] != null) {
+                throw new MojoExecutionException("Failed to walk source directories", walkError[0]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while parsing source files", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Failed to parse file", e.getCause());
+        } finally {
+            walker.interrupt();
+            executor.shutdownNow();
+        }
+    }
+}
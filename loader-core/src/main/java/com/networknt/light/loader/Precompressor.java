@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses pages once at build time, so that the server can send the stored bytes to clients that accept the
+ * encoding instead of compressing the page on every request. The gzip header has neither file name nor time stamp,
+ * the same page always gives the same bytes.
+ *
+ * none - no compressed variant
+ * gzip - gzip at the best compression level
+ */
+public class Precompressor {
+    public static final String[] ENCODINGS = {"none", "gzip"};
+
+    private final String encoding;
+
+    /**
+     * @param encoding one of ENCODINGS
+     */
+    public Precompressor(String encoding) {
+        this.encoding = encoding == null ? "none" : encoding.toLowerCase();
+        if ("br".equals(this.encoding) || "brotli".equals(this.encoding)) {
+            throw new IllegalArgumentException("Brotli needs a native encoder and is not supported, use gzip");
+        }
+        if (!"none".equals(this.encoding) && !"gzip".equals(this.encoding)) {
+            throw new IllegalArgumentException("Unknown precompression " + encoding);
+        }
+    }
+
+    public boolean isEnabled() {
+        return !"none".equals(encoding);
+    }
+
+    /**
+     * @return content encoding of the variant, e.g. gzip
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Compress a page.
+     *
+     * @param content page content
+     * @return compressed UTF-8 content, or null if compression is off or the page would not get smaller
+     * @throws IOException
+     */
+    public byte[] compress(String content) throws IOException {
+        if (!isEnabled()) {
+            return null;
+        }
+        byte[] data = content.getBytes(Digests.UTF8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        GZIPOutputStream gzip = new GZIPOutputStream(out, 8192) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        };
+        gzip.write(data);
+        gzip.close();
+        return out.size() < data.length ? out.toByteArray() : null;
+    }
+}
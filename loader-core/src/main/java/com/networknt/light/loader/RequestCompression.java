@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.xerial.snappy.Snappy;
+
+/**
+ * Builds the JSON request bodies sent to the server. Bodies of at least minSize bytes are compressed with the
+ * configured encoding and marked with Content-Encoding; smaller ones, and ones that would not get smaller, are
+ * sent as they are because compressing them costs more than it saves. Large single imports compressed with gzip are
+ * streamed with JsonEntity instead of being serialized up front.
+ *
+ * none   - never compress
+ * gzip   - Content-Encoding: gzip
+ * snappy - Content-Encoding: snappy, one raw snappy block
+ */
+public class RequestCompression {
+    public static final String[] ENCODINGS = {"none", "gzip", "snappy"};
+
+    private final String encoding;
+    private final int minSize;
+
+    /**
+     * @param encoding one of ENCODINGS
+     * @param minSize smallest body in bytes that is compressed
+     */
+    public RequestCompression(String encoding, int minSize) {
+        this.encoding = encoding == null ? "none" : encoding.toLowerCase();
+        if (!"none".equals(this.encoding) && !"gzip".equals(this.encoding) && !"snappy".equals(this.encoding)) {
+            throw new IllegalArgumentException("Unknown request compression " + encoding);
+        }
+        this.minSize = minSize;
+    }
+
+    /**
+     * Create the entity of a request.
+     *
+     * @param json UTF-8 JSON body
+     * @return HttpEntity
+     * @throws IOException
+     */
+    public HttpEntity entity(byte[] json) throws IOException {
+        if (!"none".equals(encoding) && json.length >= minSize) {
+            byte[] compressed = compress(json, encoding);
+            if (compressed.length < json.length) {
+                ByteArrayEntity entity = new ByteArrayEntity(compressed, ContentType.APPLICATION_JSON);
+                entity.setContentEncoding(encoding);
+                return entity;
+            }
+        }
+        return new ByteArrayEntity(json, ContentType.APPLICATION_JSON);
+    }
+
+    /**
+     * Create the entity of a request that is written as JSON by a JsonEntity. Only a gzip body is written straight
+     * to the connection; a plain body is serialized once to be sent with its length, and a snappy body is one block
+     * that needs all of the input, so with snappy a body of at least minSize is serialized first.
+     *
+     * @param mapper mapper that writes the value
+     * @param value request
+     * @param size expected size of the body in UTF-8 bytes, compared with minSize, see utf8Length
+     * @return HttpEntity
+     * @throws IOException
+     */
+    public HttpEntity entity(ObjectMapper mapper, Object value, long size) throws IOException {
+        if ("snappy".equals(encoding) && size >= minSize) {
+            return entity(mapper.writeValueAsBytes(value));
+        }
+        return new JsonEntity(mapper, value, "gzip".equals(encoding) && size >= minSize);
+    }
+
+    /**
+     * Count the bytes of a string in UTF-8 without encoding it.
+     *
+     * @param s string
+     * @return length in bytes
+     */
+    public static long utf8Length(CharSequence s) {
+        long length = 0;
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return number of bytes the entity put on the wire the last time it was sent
+     */
+    public static long sentLength(HttpEntity entity) {
+        return entity instanceof JsonEntity ? ((JsonEntity) entity).getBytesWritten() : entity.getContentLength();
+    }
+
+    static byte[] compress(byte[] data, String encoding) throws IOException {
+        if ("snappy".equals(encoding)) {
+            return Snappy.compress(data);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        GZIPOutputStream gzip = new GZIPOutputStream(out, 8192);
+        gzip.write(data);
+        gzip.close();
+        return out.toByteArray();
+    }
+}
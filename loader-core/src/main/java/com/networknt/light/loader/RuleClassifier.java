@@ -0,0 +1,322 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+/**
+ * Decides if a Java source is a rule by reading its header with a small token scanner instead of looking for the
+ * words implements and Rule on the same line. Comments, string and character literals and annotations are skipped,
+ * the package declaration is read and type declarations are followed up to their opening brace. The source is a
+ * rule if its primary type, the top level type named after the file, lists Rule or a qualified name ending in
+ * .Rule in its implements clause. If no top level type has the name of the file, the first one is taken.
+ *
+ * The scan stops at the opening brace of the primary type, so it can be run on the first few KB of a file. If the
+ * buffer ends before the header is complete the result is not resolved and the caller has to provide more.
+ */
+public class RuleClassifier {
+
+    public static class Result {
+        private boolean resolved;
+        private boolean rule;
+        private String packageName;
+        private String typeName;
+
+        /**
+         * @return true if the header of the primary type has been read or the whole source has been scanned
+         */
+        public boolean isResolved() {
+            return resolved;
+        }
+
+        public boolean isRule() {
+            return rule;
+        }
+
+        /**
+         * @return package name or null for the default package
+         */
+        public String getPackageName() {
+            return packageName;
+        }
+
+        /**
+         * @return name of the primary type or null if there is none
+         */
+        public String getTypeName() {
+            return typeName;
+        }
+    }
+
+    private static final String EOF = null;
+    private static final String LITERAL = "\"";
+
+    private final byte[] b;
+    private final int n;
+    private int pos = 0;
+
+    private RuleClassifier(byte[] b, int n) {
+        this.b = b;
+        this.n = n;
+        // byte order mark
+        if (n >= 3 && b[0] == (byte) 0xEF && b[1] == (byte) 0xBB && b[2] == (byte) 0xBF) {
+            pos = 3;
+        }
+    }
+
+    /**
+     * Classify a source.
+     *
+     * @param bytes UTF-8 or ASCII compatible source
+     * @param length number of bytes to scan
+     * @param complete true if the bytes are the whole source, false if they are only its beginning
+     * @param typeName expected name of the primary type, the file name without the extension
+     * @return Result
+     */
+    public static Result classify(byte[] bytes, int length, boolean complete, String typeName) {
+        return new RuleClassifier(bytes, length).scan(complete, typeName);
+    }
+
+    private Result scan(boolean complete, String typeName) {
+        Result result = new Result();
+        Result first = null;
+        String t;
+        while ((t = next()) != EOF) {
+            if ("package".equals(t)) {
+                result.packageName = qualifiedName(next());
+                skipTo(";");
+            } else if ("import".equals(t)) {
+                skipTo(";");
+            } else if ("@".equals(t)) {
+                int mark = pos;
+                if (!"interface".equals(next())) {
+                    pos = mark;
+                    skipAnnotation();
+                } else {
+                    first = typeDeclaration(false, result, first, typeName);
+                }
+            } else if ("class".equals(t) || "interface".equals(t) || "enum".equals(t) || "record".equals(t)) {
+                first = typeDeclaration(!"interface".equals(t), result, first, typeName);
+            } else if ("{".equals(t)) {
+                skipBlock("{", "}");
+            }
+            if (result.resolved) {
+                return result;
+            }
+        }
+        if (complete) {
+            // no type named after the file, take the first one
+            result.resolved = true;
+            if (first != null) {
+                result.rule = first.rule;
+                result.typeName = first.typeName;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Read a type declaration up to its opening brace. The result is resolved if it is the primary type,
+     * otherwise the body is skipped and the first declaration seen is returned.
+     */
+    private Result typeDeclaration(boolean canImplement, Result result, Result first, String typeName) {
+        String name = next();
+        if (!isIdentifier(name)) {
+            return first;
+        }
+        boolean rule = false;
+        String clause = null;
+        String t = next();
+        while (t != EOF && !"{".equals(t)) {
+            if ("<".equals(t)) {
+                skipBlock("<", ">");
+            } else if ("(".equals(t)) {
+                // record components
+                skipBlock("(", ")");
+            } else if ("@".equals(t)) {
+                skipAnnotation();
+            } else if ("extends".equals(t) || "implements".equals(t) || "permits".equals(t)) {
+                clause = t;
+            } else if (isIdentifier(t)) {
+                int mark = pos;
+                String type = t;
+                String dot;
+                while (".".equals(dot = next())) {
+                    type = type + "." + next();
+                    mark = pos;
+                }
+                pos = mark;
+                if (canImplement && "implements".equals(clause) && ("Rule".equals(type) || type.endsWith(".Rule"))) {
+                    rule = true;
+                }
+            }
+            t = next();
+        }
+        if (t == EOF) {
+            return first;
+        }
+        if (typeName == null || typeName.equals(name)) {
+            result.resolved = true;
+            result.rule = rule;
+            result.typeName = name;
+            return first;
+        }
+        skipBlock("{", "}");
+        if (first == null) {
+            first = new Result();
+            first.rule = rule;
+            first.typeName = name;
+        }
+        return first;
+    }
+
+    private String qualifiedName(String t) {
+        if (!isIdentifier(t)) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(t);
+        int mark = pos;
+        while (".".equals(next())) {
+            String part = next();
+            if (!isIdentifier(part)) {
+                break;
+            }
+            sb.append('.').append(part);
+            mark = pos;
+        }
+        pos = mark;
+        return sb.toString();
+    }
+
+    private void skipTo(String end) {
+        String t;
+        while ((t = next()) != EOF && !end.equals(t)) {
+            // skip
+        }
+    }
+
+    /**
+     * Skip a block whose opening token has just been read, including nested ones.
+     */
+    private void skipBlock(String open, String close) {
+        int depth = 1;
+        String t;
+        while (depth > 0 && (t = next()) != EOF) {
+            if (open.equals(t)) {
+                depth++;
+            } else if (close.equals(t)) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Skip the name and arguments of an annotation whose @ has just been read.
+     */
+    private void skipAnnotation() {
+        qualifiedName(next());
+        int mark = pos;
+        if ("(".equals(next())) {
+            skipBlock("(", ")");
+        } else {
+            pos = mark;
+        }
+    }
+
+    private static boolean isIdentifier(String t) {
+        return t != EOF && t != LITERAL && isIdentifierStart(t.charAt(0) & 0xff);
+    }
+
+    private static boolean isIdentifierStart(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$' || c >= 0x80;
+    }
+
+    private static boolean isIdentifierPart(int c) {
+        return isIdentifierStart(c) || (c >= '0' && c <= '9');
+    }
+
+    /**
+     * Read the next token: an identifier or keyword, LITERAL for a string, character or number literal, a single
+     * character for anything else, or EOF at the end of the buffer.
+     */
+    private String next() {
+        skipSpaceAndComments();
+        if (pos >= n) {
+            return EOF;
+        }
+        int c = b[pos] & 0xff;
+        if (isIdentifierStart(c)) {
+            int start = pos;
+            while (pos < n && isIdentifierPart(b[pos] & 0xff)) {
+                pos++;
+            }
+            return new String(b, start, pos - start, Digests.UTF8);
+        }
+        if (c == '"') {
+            if (pos + 2 < n && b[pos + 1] == '"' && b[pos + 2] == '"') {
+                // text block
+                pos += 3;
+                while (pos < n && !(b[pos] == '"' && pos + 2 < n && b[pos + 1] == '"' && b[pos + 2] == '"')) {
+                    pos += b[pos] == '\\' ? 2 : 1;
+                }
+                pos = Math.min(n, pos + 3);
+            } else {
+                skipQuoted('"');
+            }
+            return LITERAL;
+        }
+        if (c == '\'') {
+            skipQuoted('\'');
+            return LITERAL;
+        }
+        if (c >= '0' && c <= '9') {
+            while (pos < n && (isIdentifierPart(b[pos] & 0xff) || b[pos] == '.')) {
+                pos++;
+            }
+            return LITERAL;
+        }
+        pos++;
+        return String.valueOf((char) c);
+    }
+
+    private void skipQuoted(char quote) {
+        pos++;
+        while (pos < n && b[pos] != quote && b[pos] != '\n') {
+            pos += b[pos] == '\\' ? 2 : 1;
+        }
+        pos = Math.min(n, pos + 1);
+    }
+
+    private void skipSpaceAndComments() {
+        while (pos < n) {
+            byte c = b[pos];
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f') {
+                pos++;
+            } else if (c == '/' && pos + 1 < n && b[pos + 1] == '/') {
+                while (pos < n && b[pos] != '\n' && b[pos] != '\r') {
+                    pos++;
+                }
+            } else if (c == '/' && pos + 1 < n && b[pos + 1] == '*') {
+                pos += 2;
+                while (pos < n && !(b[pos] == '*' && pos + 1 < n && b[pos + 1] == '/')) {
+                    pos++;
+                }
+                pos = Math.min(n, pos + 2);
+            } else {
+                return;
+            }
+        }
+    }
+}
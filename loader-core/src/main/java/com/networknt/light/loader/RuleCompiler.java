@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles rules in memory with the Java compiler of the JDK running the build, so that a rule that would not
+ * compile on the server is found before it is uploaded. Classes a rule refers to are looked up on the classpath
+ * and then as source in the source path; those found as source are checked but not written out. The class files
+ * of the rule itself, with its nested and anonymous classes, are kept in memory.
+ *
+ * compile can be called from several threads at once. Each compilation borrows a file manager of its own, so
+ * there are never more file managers than threads compiling at the same time.
+ */
+public class RuleCompiler implements Closeable {
+
+    /**
+     * Outcome of compiling one rule.
+     */
+    public static class Result {
+        private final List<String> errors;
+        private final Map<String, byte[]> classes;
+
+        Result(List<String> errors, Map<String, byte[]> classes) {
+            this.errors = errors;
+            this.classes = classes;
+        }
+
+        public boolean isSuccess() {
+            return errors.isEmpty();
+        }
+
+        /**
+         * @return error messages with class name and line number, empty if the rule compiles
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return class files by binary class name, empty if the rule does not compile
+         */
+        public Map<String, byte[]> getClasses() {
+            return classes;
+        }
+    }
+
+    private final JavaCompiler compiler;
+    private final Charset charset;
+    private final List<String> options = new ArrayList<String>();
+    private final Queue<StandardJavaFileManager> fileManagers = new ConcurrentLinkedQueue<StandardJavaFileManager>();
+
+    /**
+     * @param classpath jars and class directories the rules are compiled against
+     * @param sourcepath source roots of classes the rules refer to
+     * @param encoding encoding of the source files in the source path
+     * @param release Java release to compile for, or null for the default of the compiler. Compilers without
+     *                --release get it as -source and -target, which does not check the API of the release.
+     * @throws IllegalStateException if the build does not run on a JDK
+     * @throws IllegalArgumentException if the compiler does not support the release
+     */
+    public RuleCompiler(List<File> classpath, List<File> sourcepath, String encoding, String release) {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No Java compiler found, rules can only be compiled if the build runs"
+                    + " on a JDK");
+        }
+        charset = Charset.forName(encoding == null ? "UTF-8" : encoding);
+        options.addAll(Arrays.asList("-proc:none", "-implicit:none", "-encoding", charset.name()));
+        options.add("-classpath");
+        options.add(join(classpath));
+        options.add("-sourcepath");
+        options.add(join(sourcepath));
+        if (release != null && release.length() > 0) {
+            // javac 8 has no --release, it can only be told the language level and the class file version
+            if (compiler.isSupportedOption("--release") >= 0) {
+                options.add("--release");
+                options.add(release);
+            } else {
+                options.addAll(Arrays.asList("-source", release, "-target", release));
+            }
+        }
+        // creating a task checks the options without compiling anything
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, Locale.ENGLISH, charset);
+        compiler.getTask(null, fileManager, null, options, null, null);
+        fileManagers.add(fileManager);
+    }
+
+    /**
+     * @return options passed to the compiler
+     */
+    List<String> getOptions() {
+        return options;
+    }
+
+    private static String join(List<File> files) {
+        StringBuilder sb = new StringBuilder();
+        for (File file : files) {
+            if (sb.length() > 0) {
+                sb.append(File.pathSeparatorChar);
+            }
+            sb.append(file.getPath());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Compile a rule.
+     *
+     * @param className fully qualified name of the rule
+     * @param source source code of the rule
+     * @return Result
+     */
+    public Result compile(String className, final String source) {
+        StandardJavaFileManager standard = fileManagers.poll();
+        if (standard == null) {
+            standard = compiler.getStandardFileManager(null, Locale.ENGLISH, charset);
+        }
+        try {
+            final Map<String, ByteArrayOutputStream> outputs = new TreeMap<String, ByteArrayOutputStream>();
+            ForwardingJavaFileManager<StandardJavaFileManager> fileManager =
+                    new ForwardingJavaFileManager<StandardJavaFileManager>(standard) {
+                        @Override
+                        public JavaFileObject getJavaFileForOutput(Location location, final String name,
+                                                                   JavaFileObject.Kind kind, FileObject sibling) {
+                            return new SimpleJavaFileObject(URI.create("mem:///" + name.replace('.', '/')
+                                    + kind.extension), kind) {
+                                @Override
+                                public OutputStream openOutputStream() {
+                                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                                    outputs.put(name, out);
+                                    return out;
+                                }
+                            };
+                        }
+                    };
+            JavaFileObject unit = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/')
+                    + JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+            boolean success = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    Collections.singletonList(unit)).call();
+
+            List<String> errors = new ArrayList<String>();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    String file = diagnostic.getSource() == unit || diagnostic.getSource() == null ? className
+                            : diagnostic.getSource().getName();
+                    errors.add(file + ":" + diagnostic.getLineNumber() + ": "
+                            + diagnostic.getMessage(Locale.ENGLISH));
+                }
+            }
+            if (!success && errors.isEmpty()) {
+                errors.add(className + ": compilation failed");
+            }
+            Map<String, byte[]> classes = new TreeMap<String, byte[]>();
+            if (success) {
+                for (Map.Entry<String, ByteArrayOutputStream> entry : outputs.entrySet()) {
+                    classes.put(entry.getKey(), entry.getValue().toByteArray());
+                }
+            }
+            return new Result(errors, classes);
+        } finally {
+            fileManagers.add(standard);
+        }
+    }
+
+    public void close() throws IOException {
+        StandardJavaFileManager fileManager;
+        while ((fileManager = fileManagers.poll()) != null) {
+            fileManager.close();
+        }
+    }
+}
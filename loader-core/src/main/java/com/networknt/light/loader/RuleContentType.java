@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Java sources that implement com.networknt.light.rule.Rule. The id is the fully qualified class name, taken
+ * from the package declaration and the file name. See RuleClassifier for how a rule is told apart.
+ *
+ * Changed rules can be compiled with the Java compiler of the build before they are imported, see setCompile.
+ */
+public class RuleContentType extends AbstractContentType {
+
+    /**
+     * Number of bytes read from a source to find its type header. It grows if the header is not complete.
+     */
+    private static final int HEAD_SIZE = 4096;
+
+    private boolean compileRules = false;
+    private boolean uploadBytecode = false;
+    private List<String> classpathElements = null;
+    private String release = null;
+    private RuleCompiler ruleCompiler = null;
+    private ContentLoader loader = null;
+
+    public String getName() {
+        return "rule";
+    }
+
+    public List<String> getIncludes() {
+        return Collections.singletonList("**/*.java");
+    }
+
+    /**
+     * Compile each changed rule against the classpath, with the source roots of the loader as source path. A rule
+     * that does not compile is not imported. Rules from a change set are not compiled.
+     *
+     * @param compileRules compile the rules
+     * @param uploadBytecode send the class files in the bytecode field of impRule, implies compileRules
+     * @param classpathElements compile classpath
+     * @param release Java release to compile for, or null for the default of the compiler
+     */
+    public void setCompile(boolean compileRules, boolean uploadBytecode, List<String> classpathElements,
+                           String release) {
+        this.compileRules = compileRules;
+        this.uploadBytecode = uploadBytecode;
+        this.classpathElements = classpathElements;
+        this.release = release;
+    }
+
+    @Override
+    public void start(ContentLoader loader) throws MojoExecutionException {
+        this.loader = loader;
+        if (loader.isApplying()) {
+            if (uploadBytecode) {
+                loader.getLog().warn("Change sets only hold sources, the rules are uploaded without class files");
+            }
+            return;
+        }
+        if (compileRules || uploadBytecode) {
+            List<File> classpath = new ArrayList<File>();
+            if (classpathElements != null) {
+                for (String element : classpathElements) {
+                    classpath.add(new File(element));
+                }
+            }
+            try {
+                ruleCompiler = new RuleCompiler(classpath, loader.getSourceRoots(), loader.getEncoding(), release);
+            } catch (RuntimeException e) {
+                throw new MojoExecutionException(e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (ruleCompiler != null) {
+            try {
+                ruleCompiler.close();
+            } catch (IOException e) {
+                loader.getLog().warn("Failed to close the compiler: " + e.getMessage());
+            }
+            ruleCompiler = null;
+        }
+    }
+
+    public String getId(SourceFile source) throws IOException {
+        String className = getBaseName(source.getFile());
+        RuleClassifier.Result header;
+        if (source.isUtf8()) {
+            // only the header is read to tell if the file is a rule, the rest of the file is read if it is one
+            header = classifyHead(source, className);
+        } else {
+            SourceReader.Source content = source.read();
+            header = RuleClassifier.classify(content.getBytes(), content.getLength(), true, className);
+        }
+        if (!header.isRule()) {
+            return null;
+        }
+        return header.getPackageName() == null ? className : header.getPackageName() + "." + className;
+    }
+
+    /**
+     * Classify a UTF-8 source from the first HEAD_SIZE bytes, reading more only if its type header is longer.
+     */
+    private static RuleClassifier.Result classifyHead(SourceFile source, String className) throws IOException {
+        for (int size = HEAD_SIZE; ; size *= 4) {
+            byte[] head = source.readHead(size);
+            boolean complete = head.length < size;
+            RuleClassifier.Result result = RuleClassifier.classify(head, head.length, complete, className);
+            if (result.isResolved() || complete) {
+                return result;
+            }
+        }
+    }
+
+    public Map<String, Object> getMapCommand() {
+        return command("rule", "getRuleMap", true);
+    }
+
+    @Override
+    public Map<String, Object> getDigestMapCommand() {
+        return command("rule", "getRuleDigestMap", true);
+    }
+
+    public Map<String, Object> getImportCommand(String id, String content) throws InvalidContentException {
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put("ruleClass", id);
+        data.put("sourceCode", content);
+        if (ruleCompiler != null) {
+            RuleCompiler.Result result = ruleCompiler.compile(id, content);
+            if (!result.isSuccess()) {
+                throw new InvalidContentException("do not compile", result.getErrors());
+            }
+            if (uploadBytecode && !result.getClasses().isEmpty()) {
+                // byte arrays are written as base64
+                data.put("bytecode", result.getClasses());
+            }
+        }
+        return command("rule", "impRule", data);
+    }
+
+    @Override
+    public ExportTable getExportTable() {
+        return new ExportTable("rule", "RULE", "class_name", "source_code");
+    }
+}
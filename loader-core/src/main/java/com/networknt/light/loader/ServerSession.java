@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * State shared by all executions of the plugin against the same server within one build: the pooled HTTP client
+ * and the content maps downloaded from the server. The plugin class loader lives as long as the build, so the
+ * first module creates the client and fetches a map, and every later module reuses them.
+ *
+ * Maps are handed out as concurrent maps and each module updates them in place with what it has uploaded, so the
+ * next module compares against the content that is on the server now and not the one at the start of the build.
+ *
+ * A JVM that embeds Maven may run several builds one after another with the same class loader. Sessions are kept
+ * for the build that asked for them last; the first request of a new build closes the sessions of the previous one,
+ * so it neither reuses its connections nor compares against maps that are out of date by now.
+ */
+public class ServerSession {
+
+    public interface Factory<T> {
+        T create();
+    }
+
+    public interface ClientFactory {
+        /**
+         * Create the client of a server.
+         *
+         * @param pool connection pool the client must use, it is owned by the session
+         * @return CloseableHttpClient
+         */
+        CloseableHttpClient create(PoolingHttpClientConnectionManager pool);
+    }
+
+    private static final Map<String, ServerSession> SESSIONS = new HashMap<String, ServerSession>();
+    private static Object currentBuild = null;
+    private static boolean hookAdded = false;
+
+    private final String serverUrl;
+    private CloseableHttpClient client;
+    private PoolingHttpClientConnectionManager pool;
+    private final Map<String, Map<String, String>> maps = new HashMap<String, Map<String, String>>();
+
+    private ServerSession(String serverUrl) {
+        this.serverUrl = serverUrl;
+    }
+
+    /**
+     * Get the session of a server in the current build, it is created on first use.
+     */
+    public static ServerSession get(String serverUrl) {
+        return get(null, serverUrl);
+    }
+
+    /**
+     * Get the session of a server in a build, it is created on first use. If the build is not the one that got
+     * the last session, the sessions of the earlier build are closed first.
+     *
+     * @param build identifies the build, e.g. the execution request of the Maven session; null for the current one
+     * @param serverUrl url of the server
+     * @return ServerSession
+     */
+    public static synchronized ServerSession get(Object build, String serverUrl) {
+        if (build != null && build != currentBuild) {
+            closeAll();
+            currentBuild = build;
+        }
+        ServerSession session = SESSIONS.get(serverUrl);
+        if (session == null) {
+            session = new ServerSession(serverUrl);
+            SESSIONS.put(serverUrl, session);
+        }
+        return session;
+    }
+
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    /**
+     * Get the HTTP client of the server. The client is closed when the JVM exits or the next build starts.
+     *
+     * The pool is sized for the first module. A later module that sends more requests at the same time grows it,
+     * so that it does not wait for connections held by its own uploads.
+     *
+     * @param connections number of connections the caller uses at the same time
+     * @param factory creates the client on first use
+     * @return CloseableHttpClient
+     */
+    public synchronized CloseableHttpClient getClient(int connections, ClientFactory factory) {
+        if (client == null) {
+            pool = new PoolingHttpClientConnectionManager();
+            pool.setMaxTotal(connections);
+            pool.setDefaultMaxPerRoute(connections);
+            client = factory.create(pool);
+            addShutdownHook();
+        } else if (connections > pool.getMaxTotal()) {
+            pool.setMaxTotal(connections);
+            pool.setDefaultMaxPerRoute(connections);
+        }
+        return client;
+    }
+
+    /**
+     * Number of connections in the pool of the client, 0 if there is no client yet.
+     */
+    public synchronized int getPoolSize() {
+        return pool == null ? 0 : pool.getMaxTotal();
+    }
+
+    /**
+     * Get a map of the server. Modules running in parallel wait for the one that is fetching it. If the fetch
+     * fails nothing is cached and the next module tries again.
+     *
+     * @param name name of the map, e.g. content or digest
+     * @param factory fetches the map from the server, returns null on failure
+     * @return concurrent map or null if it could not be fetched
+     */
+    public synchronized Map<String, String> getMap(String name, Factory<Map<String, String>> factory) {
+        Map<String, String> map = maps.get(name);
+        if (map == null) {
+            Map<String, String> fetched = factory.create();
+            if (fetched == null) {
+                return null;
+            }
+            map = new ConcurrentHashMap<String, String>(Math.max(16, fetched.size() * 4 / 3 + 1));
+            for (Map.Entry<String, String> entry : fetched.entrySet()) {
+                if (entry.getValue() != null) {
+                    map.put(entry.getKey(), entry.getValue());
+                }
+            }
+            maps.put(name, map);
+        }
+        return map;
+    }
+
+    private static synchronized void addShutdownHook() {
+        if (hookAdded) {
+            return;
+        }
+        hookAdded = true;
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                closeAll();
+            }
+        }, "loader-session-close"));
+    }
+
+    /**
+     * Close the clients and forget the maps of all sessions. Called when a new build starts and at exit.
+     */
+    public static synchronized void closeAll() {
+        for (ServerSession session : SESSIONS.values()) {
+            synchronized (session) {
+                if (session.client != null) {
+                    try {
+                        session.client.close();
+                    } catch (IOException e) {
+                        // the JVM is going away or the build is over
+                    }
+                    session.client = null;
+                    session.pool = null;
+                }
+                session.maps.clear();
+            }
+        }
+        SESSIONS.clear();
+    }
+}
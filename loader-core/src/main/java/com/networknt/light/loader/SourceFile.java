@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A source file as the content types see it while the sources are read. It is only read as far as the types ask:
+ * a type that goes by the file name does not read it at all, a rule is told apart by its first bytes, and the whole
+ * file is read at most once however many types look at it. Everything read is counted in the metrics of the run.
+ *
+ * Each file is handled by one parser thread, so this is not thread safe.
+ */
+public class SourceFile {
+    private final File file;
+    private final SourceReader reader;
+    private final LoadMetrics metrics;
+    private SourceReader.Source source = null;
+
+    SourceFile(File file, SourceReader reader, LoadMetrics metrics) {
+        this.file = file;
+        this.reader = reader;
+        this.metrics = metrics;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return true if sources are read as UTF-8, so the first bytes of a file can be scanned before it is read
+     */
+    public boolean isUtf8() {
+        return reader.isUtf8();
+    }
+
+    /**
+     * Read at most size bytes from the start of the file, as they are on disk. Only meaningful if isUtf8.
+     *
+     * @param size number of bytes
+     * @return bytes, fewer than size if the file is shorter
+     * @throws IOException
+     */
+    public byte[] readHead(int size) throws IOException {
+        if (source != null) {
+            return Arrays.copyOf(source.getBytes(), Math.min(size, source.getLength()));
+        }
+        byte[] head = SourceReader.readHead(file, size);
+        metrics.add(LoadMetrics.BYTES_READ, head.length);
+        return head;
+    }
+
+    /**
+     * @return normalized content of the whole file, see SourceReader
+     * @throws IOException
+     */
+    public SourceReader.Source read() throws IOException {
+        if (source == null) {
+            source = reader.read(file);
+            metrics.add(LoadMetrics.BYTES_READ, file.length());
+        }
+        return source;
+    }
+
+    /**
+     * @return metrics of the run, for types that count what they do with the content
+     */
+    public LoadMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Digest of content taken from this file. If it is the text of the file as read, the digest is taken from the
+     * bytes that were read instead of encoding the text again.
+     */
+    String getDigest(String content) {
+        // the same instance, getText caches the string it decodes
+        if (source != null && content == source.getText()) {
+            return source.getDigest();
+        }
+        return Digests.sha256Hex(content);
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Finds the source files to load under one or more roots. Files are matched against include and exclude globs
+ * relative to their root while the tree is walked, and directories matching an exclude pattern ending in /** are
+ * not entered at all. A leading **&#47; also matches files directly in the root, the same as in Maven.
+ *
+ * Directory listings are read with Files.walkFileTree on a fork/join pool. When a directory is entered, the
+ * listings of all its sub directories are started, so big subtrees are read in parallel while the files are still
+ * handed out one by one in a fixed order: roots in the given order, then in each directory the files sorted by name
+ * followed by the sub directories sorted by name.
+ *
+ * Symbolic links are followed. A link to the directory it is in or to one of its parents would be walked forever,
+ * it is skipped.
+ */
+public class SourceFinder {
+
+    public interface Visitor {
+        void visit(File file) throws InterruptedException;
+    }
+
+    private static class Listing {
+        final List<Path> files = new ArrayList<Path>();
+        final List<Path> directories = new ArrayList<Path>();
+        // file keys of the directory and its parents, each listing is a walk of its own that cannot see them
+        final Set<Object> ancestors;
+
+        Listing(Set<Object> parents) {
+            ancestors = new HashSet<Object>(parents);
+        }
+    }
+
+    private final List<File> roots;
+    private final List<PathMatcher> includes = new ArrayList<PathMatcher>();
+    private final List<PathMatcher> excludes = new ArrayList<PathMatcher>();
+    private final List<PathMatcher> excludedDirectories = new ArrayList<PathMatcher>();
+    private final int threads;
+
+    /**
+     * @param roots source roots, missing ones are ignored
+     * @param includes glob patterns of files to find, all files if empty
+     * @param excludes glob patterns of files and directories to leave out
+     * @param threads number of threads reading directories
+     */
+    public SourceFinder(List<File> roots, List<String> includes, List<String> excludes, int threads) {
+        this.roots = roots;
+        this.threads = Math.max(1, threads);
+        for (String pattern : includes) {
+            addGlob(this.includes, pattern);
+        }
+        for (String pattern : excludes) {
+            addGlob(this.excludes, pattern);
+            if (pattern.endsWith("/**")) {
+                addGlob(excludedDirectories, pattern.substring(0, pattern.length() - 3));
+            }
+        }
+    }
+
+    /**
+     * Add a glob pattern. A pattern that starts with a ** directory also matches paths right under the root.
+     */
+    static void addGlob(List<PathMatcher> matchers, String pattern) {
+        matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+        if (pattern.startsWith("**/")) {
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern.substring(3)));
+        }
+    }
+
+    static boolean matches(List<PathMatcher> matchers, Path path) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isIncluded(Path relative) {
+        return (includes.isEmpty() || matches(includes, relative)) && !matches(excludes, relative);
+    }
+
+    boolean isExcludedDirectory(Path relative) {
+        return matches(excludedDirectories, relative);
+    }
+
+    /**
+     * Walk all roots and call the visitor for each matching file.
+     *
+     * @param visitor called on the calling thread in walk order
+     * @throws IOException if a directory cannot be read
+     * @throws InterruptedException
+     */
+    public void find(Visitor visitor) throws IOException, InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (File root : roots) {
+                Path rootPath = root.toPath();
+                if (Files.isRegularFile(rootPath)) {
+                    visitor.visit(root);
+                } else if (Files.isDirectory(rootPath)) {
+                    visit(pool, rootPath, list(pool, rootPath, rootPath, Collections.<Object>emptySet()), visitor);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void visit(ForkJoinPool pool, Path root, Future<Listing> future, Visitor visitor)
+            throws IOException, InterruptedException {
+        Listing listing;
+        try {
+            listing = future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        // start reading all sub directories before going down into the first one
+        List<Future<Listing>> children = new ArrayList<Future<Listing>>(listing.directories.size());
+        for (Path directory : listing.directories) {
+            children.add(list(pool, root, directory, listing.ancestors));
+        }
+        for (Path file : listing.files) {
+            visitor.visit(file.toFile());
+        }
+        for (Future<Listing> child : children) {
+            visit(pool, root, child, visitor);
+        }
+    }
+
+    private Future<Listing> list(ForkJoinPool pool, final Path root, final Path directory,
+                                 final Set<Object> parents) {
+        return pool.submit(new Callable<Listing>() {
+            public Listing call() throws IOException {
+                final Listing listing = new Listing(parents);
+                Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1,
+                        new SimpleFileVisitor<Path>() {
+                            @Override
+                            public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) {
+                                if (attrs.fileKey() != null) {
+                                    listing.ancestors.add(attrs.fileKey());
+                                }
+                                return FileVisitResult.CONTINUE;
+                            }
+
+                            @Override
+                            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                                Path relative = root.relativize(path);
+                                if (attrs.isDirectory()) {
+                                    if (!isExcludedDirectory(relative)
+                                            && !listing.ancestors.contains(attrs.fileKey())) {
+                                        listing.directories.add(path);
+                                    }
+                                } else if (attrs.isRegularFile() && isIncluded(relative)) {
+                                    listing.files.add(path);
+                                }
+                                return FileVisitResult.CONTINUE;
+                            }
+
+                            @Override
+                            public FileVisitResult visitFileFailed(Path path, IOException e) throws IOException {
+                                if (e instanceof FileSystemLoopException) {
+                                    return FileVisitResult.CONTINUE;
+                                }
+                                throw e;
+                            }
+                        });
+                Collections.sort(listing.files);
+                Collections.sort(listing.directories);
+                return listing;
+            }
+        });
+    }
+}
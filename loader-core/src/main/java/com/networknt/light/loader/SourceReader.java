@@ -0,0 +1,329 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads source files with one bulk FileChannel read and normalizes the line ends the same way the old Scanner
+ * based loop did, so content already on the server keeps matching:
+ *
+ * - lines end with CR LF, LF, CR, U+0085, U+2028 or U+2029 and are joined with LF
+ * - every line, including the last one, is followed by LF
+ * - trailing lines that only hold white space are dropped
+ *
+ * For UTF-8 sources all of this is done on the raw bytes. The content is only decoded to a String when it is
+ * needed, and if the file already is in normal form the bytes are used as read without any copy.
+ */
+public class SourceReader {
+
+    /**
+     * Normalized content of a source file as UTF-8 bytes.
+     */
+    public static class Source {
+        private final byte[] bytes;
+        private final int length;
+        private String text;
+        private String digest;
+
+        Source(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public String getText() {
+            if (text == null) {
+                text = new String(bytes, 0, length, Digests.UTF8);
+            }
+            return text;
+        }
+
+        public String getDigest() {
+            if (digest == null) {
+                digest = Digests.sha256Hex(bytes, 0, length);
+            }
+            return digest;
+        }
+    }
+
+    private final Charset charset;
+    private final boolean utf8;
+
+    public SourceReader(String encoding) {
+        this.charset = Charset.forName(encoding == null ? "UTF-8" : encoding);
+        this.utf8 = Digests.UTF8.equals(charset);
+    }
+
+    public Source read(File file) throws IOException {
+        byte[] raw = readAll(file);
+        if (utf8) {
+            return normalize(raw, raw.length);
+        }
+        byte[] bytes = normalize(decode(raw)).getBytes(Digests.UTF8);
+        return new Source(bytes, bytes.length);
+    }
+
+    /**
+     * @return true if sources are read as UTF-8, so their raw bytes can be scanned before they are normalized
+     */
+    public boolean isUtf8() {
+        return utf8;
+    }
+
+    /**
+     * Read at most max bytes from the start of a file.
+     */
+    static byte[] readHead(File file, int max) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(max, channel.size()));
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the buffer is full or the end of file
+            }
+            return buffer.position() == buffer.capacity() ? buffer.array()
+                    : Arrays.copyOf(buffer.array(), buffer.position());
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Read a whole file, whatever its encoding.
+     */
+    public static byte[] readAll(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("File is too large: " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the buffer is full or the end of file
+            }
+            return buffer.position() == size ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+        } finally {
+            channel.close();
+        }
+    }
+
+    private String decode(byte[] raw) throws IOException {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(ByteBuffer.wrap(raw)).toString();
+    }
+
+    /**
+     * Normalize UTF-8 bytes.
+     */
+    static Source normalize(byte[] b, int n) {
+        // first pass: find the end of the last line that has content and check if the line ends are all \n
+        int firstLineEnd = -1;
+        int firstLineSeparator = 0;
+        int lastContentEnd = -1;
+        int lastContentSeparator = 0;
+        int firstOddSeparator = -1;
+        boolean content = false;
+        int i = 0;
+        while (i < n) {
+            int separator = separatorLength(b, i, n);
+            if (separator > 0) {
+                if (separator != 1 || b[i] != '\n') {
+                    if (firstOddSeparator < 0) {
+                        firstOddSeparator = i;
+                    }
+                    // Scanner does not take U+0085 as white space, so it counts as content
+                    if (separator == 2 && b[i] == (byte) 0xC2) {
+                        content = true;
+                    }
+                }
+                if (firstLineEnd < 0) {
+                    firstLineEnd = i;
+                    firstLineSeparator = separator;
+                }
+                if (content) {
+                    lastContentEnd = i;
+                    lastContentSeparator = separator;
+                }
+                content = false;
+                i += separator;
+                continue;
+            }
+            int c = b[i] & 0xff;
+            if (c < 0x80) {
+                if (!Character.isWhitespace(c)) {
+                    content = true;
+                }
+                i++;
+            } else {
+                int length = sequenceLength(c);
+                if (length == 1 || i + length > n || !Character.isWhitespace(codePoint(b, i, length))) {
+                    content = true;
+                }
+                i += length;
+            }
+        }
+        if (n == 0) {
+            return new Source(b, 0);
+        }
+        if (content) {
+            // last line without separator
+            lastContentEnd = n;
+            lastContentSeparator = 0;
+        } else if (lastContentEnd < 0) {
+            // nothing but white space, Scanner keeps the first line
+            lastContentEnd = firstLineEnd < 0 ? n : firstLineEnd;
+            lastContentSeparator = firstLineEnd < 0 ? 0 : firstLineSeparator;
+        }
+        if (firstOddSeparator < 0 || firstOddSeparator > lastContentEnd) {
+            if (lastContentSeparator == 1) {
+                return new Source(b, lastContentEnd + 1);
+            }
+            byte[] bytes = Arrays.copyOf(b, lastContentEnd + 1);
+            bytes[lastContentEnd] = '\n';
+            return new Source(bytes, bytes.length);
+        }
+        // second pass: copy the lines with \n as line end
+        ByteArrayOutputStream out = new ByteArrayOutputStream(lastContentEnd + 1);
+        int start = 0;
+        i = 0;
+        while (i < lastContentEnd) {
+            int separator = separatorLength(b, i, n);
+            if (separator > 0) {
+                out.write(b, start, i - start);
+                out.write('\n');
+                i += separator;
+                start = i;
+            } else {
+                i++;
+            }
+        }
+        out.write(b, start, lastContentEnd - start);
+        out.write('\n');
+        return new Source(out.toByteArray(), out.size());
+    }
+
+    private static int separatorLength(byte[] b, int i, int n) {
+        byte c = b[i];
+        if (c == '\n') {
+            return 1;
+        }
+        if (c == '\r') {
+            return i + 1 < n && b[i + 1] == '\n' ? 2 : 1;
+        }
+        if (c == (byte) 0xC2 && i + 1 < n && b[i + 1] == (byte) 0x85) {
+            return 2;
+        }
+        if (c == (byte) 0xE2 && i + 2 < n && b[i + 1] == (byte) 0x80
+                && (b[i + 2] == (byte) 0xA8 || b[i + 2] == (byte) 0xA9)) {
+            return 3;
+        }
+        return 0;
+    }
+
+    private static int sequenceLength(int c) {
+        if (c >= 0xF0 && c < 0xF8) {
+            return 4;
+        }
+        if (c >= 0xE0) {
+            return c < 0xF0 ? 3 : 1;
+        }
+        if (c >= 0xC0) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static int codePoint(byte[] b, int i, int length) {
+        int cp = b[i] & (0xff >> (length + 1));
+        for (int k = 1; k < length; k++) {
+            cp = (cp << 6) | (b[i + k] & 0x3f);
+        }
+        return cp;
+    }
+
+    /**
+     * Normalize decoded text of a source that is not UTF-8.
+     */
+    static String normalize(CharSequence s) {
+        int n = s.length();
+        int firstLineEnd = -1;
+        int lastContentEnd = -1;
+        boolean content = false;
+        int i = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029' || c == '\u0085') {
+                if (c == '\u0085') {
+                    content = true;
+                }
+                if (firstLineEnd < 0) {
+                    firstLineEnd = i;
+                }
+                if (content) {
+                    lastContentEnd = i;
+                }
+                content = false;
+                i += c == '\r' && i + 1 < n && s.charAt(i + 1) == '\n' ? 2 : 1;
+                continue;
+            }
+            if (!Character.isWhitespace(c)) {
+                content = true;
+            }
+            i++;
+        }
+        if (n == 0) {
+            return "";
+        }
+        if (content) {
+            lastContentEnd = n;
+        } else if (lastContentEnd < 0) {
+            lastContentEnd = firstLineEnd < 0 ? n : firstLineEnd;
+        }
+        StringBuilder sb = new StringBuilder(lastContentEnd + 1);
+        i = 0;
+        while (i < lastContentEnd) {
+            char c = s.charAt(i);
+            if (c == '\r') {
+                sb.append('\n');
+                i += i + 1 < n && s.charAt(i + 1) == '\n' ? 2 : 1;
+            } else {
+                sb.append(c == '\u2028' || c == '\u2029' || c == '\u0085' ? '\n' : c);
+                i++;
+            }
+        }
+        sb.append('\n');
+        return sb.toString();
+    }
+}
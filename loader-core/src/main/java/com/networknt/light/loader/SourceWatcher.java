@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the source roots for created and modified files with a WatchService. Every directory under the roots is
+ * registered, except the ones excluded by the SourceFinder, and directories created later are registered as they
+ * show up. Editors often write a file several times on save, so changes are collected until nothing has happened
+ * for debounceMillis and then handed out together, each file once.
+ */
+public class SourceWatcher implements Closeable {
+    private final WatchService service;
+    private final SourceFinder finder;
+    private final long debounceMillis;
+    // root and directory of each registered key
+    private final Map<WatchKey, Path[]> keys = new HashMap<WatchKey, Path[]>();
+
+    /**
+     * @param roots source roots, missing ones and files are ignored
+     * @param finder decides which files and directories are part of the sources
+     * @param debounceMillis quiet time before changes are handed out
+     * @throws IOException
+     */
+    public SourceWatcher(List<File> roots, SourceFinder finder, long debounceMillis) throws IOException {
+        this.service = FileSystems.getDefault().newWatchService();
+        this.finder = finder;
+        this.debounceMillis = Math.max(0, debounceMillis);
+        for (File root : roots) {
+            if (root.isDirectory()) {
+                register(root.toPath(), root.toPath(), null);
+            }
+        }
+    }
+
+    private void register(final Path root, Path start, final Set<Path> files) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(root) && finder.isExcludedDirectory(root.relativize(dir))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                keys.put(key, new Path[]{root, dir});
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (files != null && attrs.isRegularFile() && finder.isIncluded(root.relativize(file))) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Wait for the next burst of changes.
+     *
+     * @return changed source files sorted by path
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public List<File> next() throws IOException, InterruptedException {
+        Set<Path> changed = new TreeSet<Path>();
+        while (changed.isEmpty()) {
+            WatchKey key = service.take();
+            while (key != null) {
+                handle(key, changed);
+                key = service.poll(debounceMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        List<File> files = new ArrayList<File>(changed.size());
+        for (Path path : changed) {
+            files.add(path.toFile());
+        }
+        return files;
+    }
+
+    private void handle(WatchKey key, Set<Path> changed) throws IOException {
+        Path[] registered = keys.get(key);
+        if (registered != null) {
+            Path root = registered[0];
+            Path dir = registered[1];
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // events of this directory were lost, take all of its files
+                    DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+                    try {
+                        for (Path path : stream) {
+                            if (Files.isRegularFile(path) && finder.isIncluded(root.relativize(path))) {
+                                changed.add(path);
+                            }
+                        }
+                    } finally {
+                        stream.close();
+                    }
+                    continue;
+                }
+                Path path = dir.resolve((Path) event.context());
+                Path relative = root.relativize(path);
+                if (Files.isDirectory(path)) {
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && !finder.isExcludedDirectory(relative)) {
+                        // files may have been written before the new directory was registered
+                        register(root, path, changed);
+                    }
+                } else if (Files.isRegularFile(path) && finder.isIncluded(relative)) {
+                    changed.add(path);
+                }
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+    }
+
+    public void close() throws IOException {
+        service.close();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes SQL statements for changed content straight to the output file as they are found. Rows can be grouped
+ * into multi-row statements and written as upserts for the given dialect:
+ *
+ * ansi       - plain INSERT
+ * postgresql - INSERT ... ON CONFLICT (key) DO UPDATE
+ * mysql      - INSERT ... ON DUPLICATE KEY UPDATE
+ * h2         - MERGE INTO ... KEY (key)
+ * sqlserver  - MERGE INTO ... USING (VALUES ...)
+ *
+ * A row can have more than one value column, all of them are updated by the upserts. A null value is written as
+ * NULL.
+ */
+public class SqlWriter implements ExportWriter {
+    public static final String[] DIALECTS = {"ansi", "postgresql", "mysql", "h2", "sqlserver"};
+
+    private final Writer out;
+    private final String dialect;
+    private final int batchSize;
+    private final String prefix;
+    private final String suffix;
+    private int rows = 0;
+
+    /**
+     * @param file output file
+     * @param encoding encoding of the output file
+     * @param table table name
+     * @param keyColumn primary key column
+     * @param valueColumn content column
+     * @param dialect one of DIALECTS
+     * @param batchSize number of rows per statement
+     * @param gzip compress the output file
+     * @throws IOException
+     */
+    public SqlWriter(File file, String encoding, String table, String keyColumn, String valueColumn,
+                     String dialect, int batchSize, boolean gzip) throws IOException {
+        this(file, encoding, table, keyColumn, new String[]{valueColumn}, dialect, batchSize, gzip);
+    }
+
+    /**
+     * @param file output file
+     * @param encoding encoding of the output file
+     * @param table table name
+     * @param keyColumn primary key column
+     * @param valueColumns value columns in the order the values are passed to write
+     * @param dialect one of DIALECTS
+     * @param batchSize number of rows per statement
+     * @param gzip compress the output file
+     * @throws IOException
+     */
+    public SqlWriter(File file, String encoding, String table, String keyColumn, String[] valueColumns,
+                     String dialect, int batchSize, boolean gzip) throws IOException {
+        this.dialect = dialect == null ? "ansi" : dialect.toLowerCase();
+        this.batchSize = Math.max(1, batchSize);
+        String names = list("", valueColumns);
+        String columns = table + "(" + keyColumn + ", " + names + ")";
+        if ("ansi".equals(this.dialect)) {
+            prefix = "INSERT INTO " + columns + " VALUES ";
+            suffix = ";\n";
+        } else if ("postgresql".equals(this.dialect)) {
+            prefix = "INSERT INTO " + columns + " VALUES ";
+            suffix = " ON CONFLICT (" + keyColumn + ") DO UPDATE SET " + assignments(valueColumns, " = EXCLUDED.", "")
+                    + ";\n";
+        } else if ("mysql".equals(this.dialect)) {
+            prefix = "INSERT INTO " + columns + " VALUES ";
+            suffix = " ON DUPLICATE KEY UPDATE " + assignments(valueColumns, " = VALUES(", ")") + ";\n";
+        } else if ("h2".equals(this.dialect)) {
+            prefix = "MERGE INTO " + columns + " KEY (" + keyColumn + ") VALUES ";
+            suffix = ";\n";
+        } else if ("sqlserver".equals(this.dialect)) {
+            prefix = "MERGE INTO " + table + " AS t USING (VALUES ";
+            suffix = ") AS s (" + keyColumn + ", " + names + ") ON t." + keyColumn + " = s." + keyColumn
+                    + " WHEN MATCHED THEN UPDATE SET " + assignments(valueColumns, " = s.", "")
+                    + " WHEN NOT MATCHED THEN INSERT (" + keyColumn + ", " + names + ") VALUES (s."
+                    + keyColumn + ", " + list("s.", valueColumns) + ");\n";
+        } else {
+            throw new IllegalArgumentException("Unknown SQL dialect " + dialect);
+        }
+        OutputStream os = Channels.newOutputStream(FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        if (gzip) {
+            os = new GZIPOutputStream(os, 65536);
+        }
+        out = new BufferedWriter(new OutputStreamWriter(os, encoding), 65536);
+    }
+
+    private static String list(String qualifier, String[] columns) {
+        StringBuilder sb = new StringBuilder();
+        for (String column : columns) {
+            sb.append(sb.length() > 0 ? ", " : "").append(qualifier).append(column);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return column + before + column + after for each column, e.g. content = EXCLUDED.content
+     */
+    private static String assignments(String[] columns, String before, String after) {
+        StringBuilder sb = new StringBuilder();
+        for (String column : columns) {
+            sb.append(sb.length() > 0 ? ", " : "").append(column).append(before).append(column).append(after);
+        }
+        return sb.toString();
+    }
+
+    public void write(String key, String... values) throws IOException {
+        if (rows == 0) {
+            out.write(prefix);
+        } else {
+            out.write(",\n");
+        }
+        out.write("(");
+        writeLiteral(key);
+        for (String value : values) {
+            out.write(", ");
+            writeLiteral(value);
+        }
+        out.write(")");
+        if (++rows == batchSize) {
+            endStatement();
+        }
+    }
+
+    private void endStatement() throws IOException {
+        out.write(suffix);
+        rows = 0;
+    }
+
+    private void writeLiteral(String value) throws IOException {
+        if (value == null) {
+            out.write("NULL");
+            return;
+        }
+        out.write('\'');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\'' || (c == '\\' && "mysql".equals(dialect))) {
+                out.write(value, start, i - start);
+                out.write(c);
+                out.write(c);
+                start = i + 1;
+            }
+        }
+        out.write(value, start, value.length() - start);
+        out.write('\'');
+    }
+
+    public void close() throws IOException {
+        try {
+            if (rows > 0) {
+                endStatement();
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Keeps the access token of each server url and user so that a build signs in once instead of once per module and
+ * execution. Tokens are held in memory for the life of the build and, if a file is given, also stored in that file
+ * for later builds. Like the {@link ServerSession}, the tokens in memory are dropped when the next build of a
+ * long-running Maven starts. The expiry in the exp claim of the token is honoured, with a minute to spare.
+ *
+ * In the file each token is encrypted with AES-GCM under a key derived from the password of the user, so the file
+ * is of no use to anybody who does not know the password already, and a changed password simply makes the old
+ * entry unreadable. Each line holds the hashed server url and user, the IV and the encrypted token.
+ */
+public class TokenCache {
+    private static final Map<String, String> SESSION = new ConcurrentHashMap<String, String>();
+    private static final long EXPIRY_MARGIN = 60000;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static Object currentBuild = null;
+
+    private final File file;
+    private final String password;
+
+    /**
+     * @param file file the tokens are kept in across builds, null to keep them in memory only
+     * @param password password of the user, the file is encrypted with it
+     */
+    public TokenCache(File file, String password) {
+        this(null, file, password);
+    }
+
+    /**
+     * @param build object that identifies the build, e.g. the execution request of the Maven session, or null to use
+     *              the tokens of the current one
+     * @param file file the tokens are kept in across builds, null to keep them in memory only
+     * @param password password of the user, the file is encrypted with it
+     */
+    public TokenCache(Object build, File file, String password) {
+        this.file = file;
+        this.password = password == null ? "" : password;
+        startBuild(build);
+    }
+
+    private static synchronized void startBuild(Object build) {
+        if (build != null && build != currentBuild) {
+            SESSION.clear();
+            currentBuild = build;
+        }
+    }
+
+    /**
+     * Get a token that has not expired yet.
+     *
+     * @return token or null if a sign in is needed
+     */
+    public String get(String serverUrl, String user) {
+        String key = key(serverUrl, user);
+        String token = SESSION.get(key);
+        if (token == null && file != null) {
+            String encrypted = read().get(key);
+            if (encrypted != null) {
+                token = decrypt(key, encrypted);
+            }
+        }
+        if (token == null || isExpired(token)) {
+            SESSION.remove(key);
+            return null;
+        }
+        SESSION.put(key, token);
+        return token;
+    }
+
+    public synchronized void put(String serverUrl, String user, String token) {
+        String key = key(serverUrl, user);
+        SESSION.put(key, token);
+        if (file != null) {
+            Map<String, String> entries = read();
+            entries.put(key, encrypt(key, token));
+            write(entries);
+        }
+    }
+
+    /**
+     * Drop a token the server does not accept any more.
+     */
+    public synchronized void invalidate(String serverUrl, String user) {
+        String key = key(serverUrl, user);
+        SESSION.remove(key);
+        if (file != null) {
+            Map<String, String> entries = read();
+            if (entries.remove(key) != null) {
+                write(entries);
+            }
+        }
+    }
+
+    static boolean isExpired(String token) {
+        return getExpiry(token) - EXPIRY_MARGIN < System.currentTimeMillis();
+    }
+
+    /**
+     * Get the expiry time of a JWT from its exp claim.
+     *
+     * @return expiry time in milliseconds, Long.MAX_VALUE if the token has no exp claim
+     */
+    static long getExpiry(String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length >= 2) {
+            try {
+                JsonNode exp = MAPPER.readTree(Base64.getUrlDecoder().decode(parts[1])).get("exp");
+                if (exp != null && exp.canConvertToLong()) {
+                    return exp.asLong() * 1000;
+                }
+            } catch (Exception e) {
+                // not a JWT, keep it until the server rejects it
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static String key(String serverUrl, String user) {
+        return Digests.sha256Hex(serverUrl + "\n" + user);
+    }
+
+    private Map<String, String> read() {
+        Map<String, String> entries = new LinkedHashMap<String, String>();
+        if (!file.exists()) {
+            return entries;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Digests.UTF8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab > 0) {
+                        entries.put(line.substring(0, tab), line.substring(tab + 1));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // a broken cache only costs a sign in
+            entries.clear();
+        }
+        return entries;
+    }
+
+    private void write(Map<String, String> entries) {
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.exists()) {
+                dir.mkdirs();
+            }
+            File tmp = new File(file.getPath() + ".tmp");
+            Writer out = new OutputStreamWriter(new FileOutputStream(tmp), Digests.UTF8);
+            try {
+                for (Map.Entry<String, String> entry : entries.entrySet()) {
+                    out.write(entry.getKey() + "\t" + entry.getValue() + "\n");
+                }
+            } finally {
+                out.close();
+            }
+            try {
+                Files.setPosixFilePermissions(tmp.toPath(), PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // not a POSIX file system
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // the token is still cached in memory
+        }
+    }
+
+    private String encrypt(String key, String token) {
+        try {
+            byte[] iv = new byte[12];
+            RANDOM.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey(key), new GCMParameterSpec(128, iv));
+            byte[] encrypted = cipher.doFinal(token.getBytes(Digests.UTF8));
+            return Base64.getEncoder().encodeToString(iv) + "\t" + Base64.getEncoder().encodeToString(encrypted);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String decrypt(String key, String value) {
+        int tab = value.indexOf('\t');
+        if (tab < 0) {
+            return null;
+        }
+        try {
+            byte[] iv = Base64.getDecoder().decode(value.substring(0, tab));
+            byte[] encrypted = Base64.getDecoder().decode(value.substring(tab + 1));
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, secretKey(key), new GCMParameterSpec(128, iv));
+            return new String(cipher.doFinal(encrypted), Digests.UTF8);
+        } catch (GeneralSecurityException e) {
+            // the password has been changed or the entry is broken
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private SecretKeySpec secretKey(String salt) throws GeneralSecurityException {
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt.getBytes(Digests.UTF8), 20000, 256);
+        return new SecretKeySpec(factory.generateSecret(spec).getEncoded(), "AES");
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Append-only record of the uploads of a run. A line is written when content is queued for upload and another one
+ * when the server has accepted it, and each line is flushed right away, so after a crash or a failed run the
+ * journal tells exactly which uploads never finished:
+ *
+ * P key path - pending upload of the content read from path
+ * D key      - upload done
+ *
+ * There is one journal per server url in the output directory. A normal run starts a new journal, a resumed run
+ * reads the unfinished entries and keeps appending to the same file.
+ */
+public class UploadJournal implements Closeable {
+    private final File file;
+    private final Map<String, String> unfinished;
+    private final Writer out;
+
+    private UploadJournal(File file, Map<String, String> unfinished, boolean append) throws IOException {
+        this.file = file;
+        this.unfinished = unfinished;
+        this.out = new OutputStreamWriter(new FileOutputStream(file, append), Digests.UTF8);
+    }
+
+    /**
+     * Open the journal of a server in the output directory.
+     *
+     * @param outputDirectory build output directory
+     * @param name name of the loader, rule or page
+     * @param serverUrl url of the server
+     * @param resume read the unfinished entries of the previous run and append to it, otherwise start over
+     * @return UploadJournal
+     * @throws IOException
+     */
+    public static UploadJournal open(File outputDirectory, String name, String serverUrl, boolean resume)
+            throws IOException {
+        String key = Digests.sha256Hex(serverUrl).substring(0, 16);
+        File file = new File(outputDirectory, name + "-journal-" + key + ".log");
+        Map<String, String> unfinished = new LinkedHashMap<String, String>();
+        if (resume && file.exists()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Digests.UTF8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t");
+                    if (fields.length == 3 && "P".equals(fields[0])) {
+                        unfinished.put(fields[1], fields[2]);
+                    } else if (fields.length == 2 && "D".equals(fields[0])) {
+                        unfinished.remove(fields[1]);
+                    }
+                    // anything else is a line cut short by a crash
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return new UploadJournal(file, unfinished, resume);
+    }
+
+    /**
+     * Get the uploads of the previous run that did not finish.
+     *
+     * @return map of key to source path in the order they were queued
+     */
+    public Map<String, String> getUnfinished() {
+        return Collections.unmodifiableMap(unfinished);
+    }
+
+    public synchronized void pending(String key, String path) throws IOException {
+        append("P\t" + key + "\t" + path + "\n");
+    }
+
+    public synchronized void completed(String key) throws IOException {
+        append("D\t" + key + "\n");
+    }
+
+    private void append(String line) throws IOException {
+        out.write(line);
+        out.flush();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
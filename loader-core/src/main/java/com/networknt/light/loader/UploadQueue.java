@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs uploads on up to concurrency threads. submit blocks while all threads are busy, so no more than concurrency
+ * request bodies are held at a time, and await waits for the uploads in flight. An upload returns false or throws if
+ * it has failed; the outcome of every upload is counted. With a concurrency of 1 uploads run on the calling thread.
+ */
+public class UploadQueue {
+    private final int concurrency;
+    private final ExecutorService executor;
+    private final Semaphore slots;
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    public UploadQueue(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+        this.slots = new Semaphore(this.concurrency);
+        if (this.concurrency > 1) {
+            executor = Executors.newFixedThreadPool(this.concurrency, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "loader-upload-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        } else {
+            executor = null;
+        }
+    }
+
+    public void submit(final Callable<Boolean> upload) {
+        if (executor == null) {
+            run(upload);
+            return;
+        }
+        slots.acquireUninterruptibly();
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        UploadQueue.this.run(upload);
+                    } finally {
+                        slots.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    private void run(Callable<Boolean> upload) {
+        try {
+            if (Boolean.TRUE.equals(upload.call())) {
+                succeeded.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Wait until all submitted uploads are done.
+     */
+    public void await() {
+        slots.acquireUninterruptibly(concurrency);
+        slots.release(concurrency);
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    public int getSucceeded() {
+        return succeeded.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+}
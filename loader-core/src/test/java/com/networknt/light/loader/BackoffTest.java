@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class BackoffTest extends TestCase {
+
+    public BackoffTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(BackoffTest.class);
+        return suite;
+    }
+
+    public void testDelayGrowsUpToMax() {
+        Backoff backoff = new Backoff(10, 100, 1000);
+        for (int i = 0; i < 20; i++) {
+            long first = backoff.delay(0, null);
+            assertTrue(first >= 50 && first <= 100);
+            long third = backoff.delay(2, null);
+            assertTrue(third >= 200 && third <= 400);
+            long late = backoff.delay(100, null);
+            assertTrue(late >= 500 && late <= 1000);
+        }
+    }
+
+    public void testRetryAfter() {
+        Backoff backoff = new Backoff(3, 100, 5000);
+        assertEquals(2000, backoff.delay(0, "2"));
+        assertEquals(5000, backoff.delay(0, "60"));
+        assertTrue(backoff.delay(0, "Wed, 21 Oct 2015 07:28:00 GMT") <= 100);
+    }
+
+    public void testTransient() {
+        assertTrue(Backoff.isTransient(503));
+        assertTrue(Backoff.isTransient(429));
+        assertFalse(Backoff.isTransient(500));
+        assertFalse(Backoff.isTransient(400));
+        assertFalse(Backoff.isTransient(200));
+    }
+}
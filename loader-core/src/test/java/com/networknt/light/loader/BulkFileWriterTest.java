@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+public class BulkFileWriterTest extends TestCase {
+    private File file;
+    private File script;
+
+    public BulkFileWriterTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(BulkFileWriterTest.class);
+        return suite;
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("rule", ".csv");
+        script = File.createTempFile("rule-load", ".sql");
+    }
+
+    public void tearDown() throws Exception {
+        file.delete();
+        script.delete();
+        super.tearDown();
+    }
+
+    public void testCopy() throws Exception {
+        BulkFileWriter writer = new BulkFileWriter(file, script, "RULE", "class_name", new String[]{"source_code"},
+                "copy", false);
+        writer.write("a.B", "say \"hi\", \\n\n");
+        writer.write("a.C", "");
+        writer.write("a.D", (String) null);
+        writer.close();
+        assertEquals("class_name,source_code\n\"a.B\",\"say \"\"hi\"\", \\n\n\"\n\"a.C\",\"\"\n\"a.D\",\n",
+                read(file, false));
+        assertEquals("BEGIN;\n"
+                + "CREATE TEMPORARY TABLE RULE_load (LIKE RULE INCLUDING DEFAULTS) ON COMMIT DROP;\n"
+                + "\\copy RULE_load (class_name, source_code) FROM '" + file.getName()
+                + "' WITH (FORMAT csv, HEADER true, ENCODING 'UTF8')\n"
+                + "INSERT INTO RULE (class_name, source_code) SELECT class_name, source_code FROM RULE_load"
+                + " ON CONFLICT (class_name) DO UPDATE SET source_code = EXCLUDED.source_code;\n"
+                + "COMMIT;\n", read(script, false));
+    }
+
+    public void testCopyGzip() throws Exception {
+        BulkFileWriter writer = new BulkFileWriter(file, script, "RULE", "class_name", new String[]{"source_code"},
+                "copy", true);
+        writer.write("a.B", "x");
+        writer.close();
+        assertEquals("class_name,source_code\n\"a.B\",\"x\"\n", read(file, true));
+        assertTrue(read(script, false).contains(" FROM PROGRAM 'gzip -dc " + file.getName() + "' "));
+    }
+
+    public void testLoadData() throws Exception {
+        BulkFileWriter writer = new BulkFileWriter(file, script, "RULE", "class_name", new String[]{"source_code"},
+                "loaddata", false);
+        writer.write("a.B", "a\tb\\c\r\nd\u0000");
+        writer.write("a.C", (String) null);
+        writer.close();
+        assertEquals("class_name\tsource_code\na.B\ta\\tb\\\\c\\r\\nd\\0\na.C\t\\N\n", read(file, false));
+        assertEquals("LOAD DATA LOCAL INFILE '" + file.getName() + "' REPLACE INTO TABLE RULE CHARACTER SET utf8mb4"
+                + " FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' IGNORE 1 LINES"
+                + " (class_name, source_code);\n", read(script, false));
+    }
+
+    public void testUnsupported() throws Exception {
+        try {
+            new BulkFileWriter(file, script, "RULE", "class_name", new String[]{"source_code"}, "loaddata", true);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new BulkFileWriter(file, script, "RULE", "class_name", new String[]{"source_code"}, "xml", false);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static String read(File file, boolean gzip) throws IOException {
+        InputStream in = new FileInputStream(file);
+        if (gzip) {
+            in = new GZIPInputStream(in);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return new String(out.toByteArray(), "UTF-8");
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+public class ChangeSetTest extends TestCase {
+    private File file;
+
+    public ChangeSetTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(ChangeSetTest.class);
+        return suite;
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("changes", ".lcs");
+        file.delete();
+    }
+
+    public void tearDown() throws Exception {
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+        super.tearDown();
+    }
+
+    public void testRoundTrip() throws Exception {
+        ChangeSet.Writer writer = ChangeSet.create(file, "rule", "http://example:8080");
+        writer.add("a.B", "class B {}\n");
+        writer.add("a.C", "class C { String s = \"\u00e9\u20ac\"; }\n");
+        writer.add("a.D", "");
+        assertFalse(file.exists());
+        writer.close();
+        assertEquals(3, writer.getCount());
+
+        ChangeSet.Reader reader = ChangeSet.open(file);
+        try {
+            assertEquals("rule", reader.getName());
+            assertEquals("http://example:8080", reader.getServerUrl());
+            assertTrue(reader.getCreated() > 0);
+            ChangeSet.Entry entry = reader.next();
+            assertEquals("a.B", entry.getKey());
+            assertEquals("class B {}\n", entry.getContent());
+            assertEquals(Digests.sha256Hex("class B {}\n"), entry.getDigest());
+            assertEquals("class C { String s = \"\u00e9\u20ac\"; }\n", reader.next().getContent());
+            assertEquals("", reader.next().getContent());
+            assertNull(reader.next());
+            assertNull(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testDiscard() throws Exception {
+        ChangeSet.Writer writer = ChangeSet.create(file, "rule", "http://example:8080");
+        writer.add("a.B", "class B {}\n");
+        writer.discard();
+        assertFalse(file.exists());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    public void testTruncated() throws Exception {
+        ChangeSet.Writer writer = ChangeSet.create(file, "rule", "http://example:8080");
+        for (int i = 0; i < 100; i++) {
+            writer.add("a.B" + i, "class B" + i + " { long l = " + System.nanoTime() + "L; }\n");
+        }
+        writer.close();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() / 2);
+        raf.close();
+        ChangeSet.Reader reader = ChangeSet.open(file);
+        try {
+            while (reader.next() != null) {
+                // read until it fails
+            }
+            fail("truncated change set was read to the end");
+        } catch (IOException e) {
+            // expected
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void testNotAChangeSet() throws Exception {
+        ChangeSet.Writer writer = ChangeSet.create(file, "rule", "http://example:8080");
+        writer.close();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        raf.write(new byte[]{1, 2, 3, 4});
+        raf.close();
+        try {
+            ChangeSet.open(file).close();
+            fail("opened a file that is not a change set");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
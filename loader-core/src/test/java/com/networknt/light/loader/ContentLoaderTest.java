@@ -0,0 +1,265 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ContentLoaderTest extends TestCase {
+
+    public ContentLoaderTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(ContentLoaderTest.class);
+        return suite;
+    }
+
+    private File root;
+    private StubLightServer server;
+    private Map<String, String> rules;
+    private Map<String, String> pages;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        root = File.createTempFile("content-loader", "");
+        root.delete();
+        root.mkdirs();
+        server = new StubLightServer();
+        writeSources();
+    }
+
+    public void tearDown() throws Exception {
+        server.stop();
+        ServerSession.closeAll();
+        delete(root);
+        super.tearDown();
+    }
+
+    public void testLoadAllTypes() throws Exception {
+        ContentLoader loader = createLoader();
+        loader.setUploads(4, 10, 1048576, 30000);
+        loader.setIncremental(true);
+        loader.execute();
+        assertEquals(rules, server.getRules());
+        assertEquals(pages, server.getPages());
+        assertEquals(Collections.singleton("com.example.signup"), server.getForms().keySet());
+        assertEquals(rules.size() + pages.size() + 1, server.getImports());
+        // one batch per type
+        assertEquals(3, server.getRequests("batch"));
+        assertEquals(7, loader.getMetrics().get(LoadMetrics.FILES_SCANNED));
+        assertTrue(loader.getMetrics().get(LoadMetrics.BYTES_MINIFIED) > 0);
+        assertTrue(new File(root, "target/rule.sql").exists());
+        assertTrue(new File(root, "target/server.sql").exists());
+        assertTrue(new File(root, "target/form.sql").exists());
+        assertTrue(new File(root, "target/content-load-report.json").exists());
+
+        // every file is in the manifest of its type, the next run reads none of them
+        ServerSession.closeAll();
+        loader = createLoader();
+        loader.setIncremental(true);
+        loader.execute();
+        assertEquals(rules.size() + pages.size() + 1, server.getImports());
+        assertEquals(7, loader.getMetrics().get(LoadMetrics.FILES_SKIPPED));
+        assertEquals(0, loader.getMetrics().get(LoadMetrics.BYTES_READ));
+    }
+
+    public void testCompileRules() throws Exception {
+        write("src/com/example/Broken.java", "package com.example;\n\nimport com.networknt.light.rule.Rule;\n\n"
+                + "public class Broken implements Rule {\n    Missing missing;\n}\n");
+        ContentLoader loader = createLoader();
+        ((RuleContentType) loader.getTypes().get(0)).setCompile(true, true, null, null);
+        try {
+            loader.execute();
+            fail("content that is not valid must fail the build");
+        } catch (MojoExecutionException e) {
+            assertEquals("1 rules do not compile, see the errors above", e.getMessage());
+        }
+        // everything else is loaded, the rules with their class files
+        assertEquals(rules, server.getRules());
+        assertEquals(pages, server.getPages());
+        assertEquals(rules.keySet(), server.getBytecode().keySet());
+        for (Map.Entry<String, Map<String, byte[]>> entry : server.getBytecode().entrySet()) {
+            assertEquals(0xCAFEBABE, ByteBuffer.wrap(entry.getValue().get(entry.getKey())).getInt());
+        }
+    }
+
+    public void testSignInFails() throws Exception {
+        server.setUser("stevehu", "changed");
+        try {
+            createLoader().execute();
+            fail("a build that cannot sign in must fail");
+        } catch (MojoExecutionException e) {
+            assertEquals("Failed to sign in to " + server.getUrl() + " as stevehu, see the errors above",
+                    e.getMessage());
+        }
+        assertEquals(0, server.getImports());
+    }
+
+    public void testPlanAndApply() throws Exception {
+        File changes = new File(root, "target/content-changes.lcs");
+        createLoader().plan(changes);
+        assertEquals(0, server.getImports());
+
+        // the change set holds all types, apply needs neither the sources nor the maps of the server
+        delete(new File(root, "src"));
+        ServerSession.closeAll();
+        createLoader().apply(changes);
+        assertEquals(rules, server.getRules());
+        assertEquals(pages, server.getPages());
+        assertEquals(rules.size() + pages.size() + 1, server.getImports());
+        assertEquals(1, server.getRequests("getRuleMap"));
+        assertEquals(1, server.getRequests("getPageMap"));
+    }
+
+    public void testWatch() throws Exception {
+        final ContentLoader loader = createLoader();
+        final Exception[] failure = new Exception[1];
+        Thread thread = new Thread() {
+            public void run() {
+                try {
+                    loader.watch(100);
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        };
+        thread.start();
+        try {
+            int imports = rules.size() + pages.size() + 1;
+            waitForImports(imports);
+            // two bursts, each pushed and flushed on its own
+            editUntilImported(0, "first burst", ++imports);
+            editUntilImported(1, "second burst", ++imports);
+        } finally {
+            thread.interrupt();
+            thread.join(10000);
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        // the sql output stays open while watching and gets the rows of every burst
+        String sql = new String(SourceReader.readAll(new File(root, "target/rule.sql")), Digests.UTF8);
+        assertTrue(sql.contains("first burst"));
+        assertTrue(sql.contains("second burst"));
+    }
+
+    /**
+     * Change a rule until the watching loader has uploaded it. The watcher may not be registered yet when the first
+     * edit is made, so the file is written again until it is seen.
+     */
+    private void editUntilImported(int rule, String comment, int imports) throws Exception {
+        for (int i = 0; i < 20 && server.getImports() < imports; i++) {
+            write("src/com/example/Hello" + rule + ".java", "package com.example;\n\n"
+                    + "import com.networknt.light.rule.Rule;\n\n// " + comment + " " + i + "\npublic class Hello" + rule
+                    + " implements Rule {\n}\n");
+            waitForImports(imports, 1000);
+        }
+        assertEquals(imports, server.getImports());
+    }
+
+    private void waitForImports(int imports) throws InterruptedException {
+        waitForImports(imports, 10000);
+        assertEquals(imports, server.getImports());
+    }
+
+    private void waitForImports(int imports, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (server.getImports() < imports && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * Create a loader of rules, minified pages and forms with the defaults of the plugins, loading to the stub
+     * server.
+     */
+    private ContentLoader createLoader() {
+        ContentLoader loader = new ContentLoader(new SystemStreamLog(), "content", new File(root, "target"));
+        loader.addType(new RuleContentType());
+        PageContentType page = new PageContentType();
+        page.setMinifyHtml(true);
+        loader.addType(page);
+        JsonContentType form = new JsonContentType("form", null, "form", "impForm", null, "id");
+        form.setSqlTable("FORM");
+        loader.addType(form);
+        loader.setSources(Collections.singletonList(new File(root, "src")), null, null, "UTF-8");
+        loader.setServer(server.getUrl(), "stevehu", "123456", "example@Browser", null);
+        loader.setTokenCacheFile(new File(root, "token-cache"));
+        loader.setUploads(4, 1, 1048576, 30000);
+        loader.setRetry(3, 5, 50);
+        return loader;
+    }
+
+    /**
+     * Write the Rule interface and three rules, two pages, a form and a file of no type.
+     */
+    private void writeSources() throws IOException {
+        rules = new HashMap<String, String>();
+        pages = new HashMap<String, String>();
+        write("src/com/networknt/light/rule/Rule.java", "package com.networknt.light.rule;\n\n"
+                + "public interface Rule {\n}\n");
+        for (int i = 0; i < 3; i++) {
+            String source = "package com.example;\n\nimport com.networknt.light.rule.Rule;\n\npublic class Hello" + i
+                    + " implements Rule {\n    public String hello() {\n        return \"" + i + "\";\n    }\n}\n";
+            write("src/com/example/Hello" + i + ".java", source);
+            rules.put("com.example.Hello" + i, source);
+        }
+        for (int i = 0; i < 2; i++) {
+            String html = "<div>\n    <p>page " + i + "</p>\n</div>\n";
+            write("src/pages/page" + i + ".html", html);
+            pages.put("page" + i, HtmlMinifier.minify(html));
+        }
+        write("src/forms/app/signup.json", "{\"id\":\"com.example.signup\",\"schema\":{\"type\":\"object\"}}");
+        write("src/README.txt", "not content");
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(Digests.UTF8));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+public class ContentTypeTest extends TestCase {
+    private File dir;
+
+    public ContentTypeTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(ContentTypeTest.class);
+        return suite;
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        dir = File.createTempFile("content", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    public void tearDown() throws Exception {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                child.delete();
+            }
+        }
+        dir.delete();
+        super.tearDown();
+    }
+
+    public void testServices() {
+        List<String> names = new ArrayList<String>();
+        for (ContentType type : ServiceLoader.load(ContentType.class)) {
+            names.add(type.getName());
+        }
+        assertTrue(names.contains("rule"));
+        assertTrue(names.contains("page"));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testRule() throws Exception {
+        ContentType type = new RuleContentType();
+        String source = "package com.example;\n\npublic class Hello implements Rule {\n}\n";
+        SourceFile hello = write("Hello.java", source);
+        assertEquals("com.example.Hello", type.getId(hello));
+        assertEquals(source, type.getContent(hello));
+        assertNull(type.getId(write("Util.java", "package com.example;\n\nclass Util {}\n")));
+        Map<String, Object> command = type.getImportCommand("com.example.Hello", source);
+        assertEquals("impRule", command.get("name"));
+        assertEquals(source, ((Map<String, Object>) command.get("data")).get("sourceCode"));
+        assertEquals("getRuleMap", type.getMapCommand().get("name"));
+        assertEquals("getRuleDigestMap", type.getDigestMapCommand().get("name"));
+        assertFalse(type.isChanged(source, source));
+        assertTrue(type.isChanged(null, source));
+        assertEquals("RULE", type.getExportTable().getTable());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testPage() throws Exception {
+        PageContentType type = new PageContentType();
+        SourceFile home = write("home.html", "<p>home</p>\n");
+        assertEquals("home", type.getId(home));
+        Map<String, Object> command = type.getImportCommand("home", "<p>home</p>\n");
+        assertEquals("impPage", command.get("name"));
+        assertEquals("home", ((Map<String, Object>) command.get("data")).get("id"));
+        assertEquals("page", type.getManifestName());
+        type.setMinifyHtml(true);
+        assertEquals("page-min", type.getManifestName());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testJson() throws Exception {
+        JsonContentType type = new JsonContentType("form", null, null, "impForm", null, "id");
+        assertTrue(type.isValid());
+        assertFalse(new JsonContentType().isValid());
+        assertEquals("**/forms/**/*.json", type.getIncludes().get(0));
+        String form = "{\"id\":\"com.example.signup\",\"schema\":{\"type\":\"object\"}}";
+        assertEquals("com.example.signup", type.getId(write("signup.json", form)));
+        assertNull(type.getId(write("broken.json", "{not json")));
+        assertNull(type.getId(write("other.json", "{\"name\":\"x\"}")));
+        assertNull(type.getMapCommand());
+        assertNull(type.getExportTable());
+        Map<String, Object> command = type.getImportCommand("com.example.signup", form);
+        assertEquals("form", command.get("category"));
+        assertEquals("impForm", command.get("name"));
+        Map<String, Object> data = (Map<String, Object>) command.get("data");
+        assertEquals("com.example.signup", data.get("id"));
+        assertTrue(data.get("schema") instanceof Map);
+        try {
+            type.getImportCommand("com.example.broken", "{not json");
+            fail("invalid JSON imported");
+        } catch (InvalidContentException e) {
+            assertEquals("are not valid JSON", e.getMessage());
+            assertEquals(1, e.getErrors().size());
+        }
+        type.setSqlTable("FORM");
+        assertEquals("FORM", type.getExportTable().getTable());
+    }
+
+    private SourceFile write(String name, String content) throws IOException {
+        File file = new File(dir, name);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+        return new SourceFile(file, new SourceReader("UTF-8"), new LoadMetrics());
+    }
+}
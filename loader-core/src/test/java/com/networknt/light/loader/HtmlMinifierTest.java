@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class HtmlMinifierTest extends TestCase {
+
+    public HtmlMinifierTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(HtmlMinifierTest.class);
+        return suite;
+    }
+
+    public void testWhiteSpace() {
+        assertEquals("<div class=\"a\">\n<p>one two</p>\n<p>three <b>four</b>\nfive</p>\n</div>", HtmlMinifier.minify(
+                "\n<div class=\"a\">\n  <p>one   two</p>\n  <p>three <b>four</b>\n five</p>\n</div>\n"));
+        // white space next to inline elements is rendered
+        assertEquals("<span>a</span> <span>b</span>\n<i>c</i>",
+                HtmlMinifier.minify("<span>a</span>   <span>b</span> \n <i>c</i>"));
+        assertEquals("<ul>\n<li>\n{{ item.name }}\n</li>\n</ul>",
+                HtmlMinifier.minify("<ul>\n    <li>\n        {{ item.name }}\n    </li>\n</ul>"));
+        assertEquals("<!DOCTYPE html><html><head><title>t</title></head><body><p>a</p></body></html>",
+                HtmlMinifier.minify("<!DOCTYPE html>\n<html>\n<head>\n  <title> t </title>\n</head>\n<body>\n"
+                        + "  <p>a</p>\n</body>\n</html>\n"));
+    }
+
+    public void testInlineListItems() {
+        // list items and cells are often laid out inline, the space between them is rendered then
+        assertEquals("<ul class=\"menu\"><li>Home</li> <li>About</li>\n<li>Contact</li></ul>",
+                HtmlMinifier.minify("<ul class=\"menu\"><li>Home</li>  <li>About</li>\n    <li>Contact</li></ul>"));
+        assertEquals("<tr><td>a</td> <td>b</td></tr>", HtmlMinifier.minify("<tr><td>a</td>   <td>b</td></tr>"));
+    }
+
+    public void testComments() {
+        assertEquals("<p>ab</p>", HtmlMinifier.minify("<p>a<!-- gone --><!---->b</p>"));
+        assertEquals("<div>\n<!--[if IE]><p>old</p><![endif]-->\n</div>",
+                HtmlMinifier.minify("<div>\n<!--[if IE]><p>old</p><![endif]-->\n</div>"));
+        assertEquals("<div> <!-- directive: my-dir exp --> <!--! kept --> </div>",
+                HtmlMinifier.minify("<div> <!-- directive: my-dir exp --> <!--! kept --> </div>"));
+    }
+
+    public void testTags() {
+        assertEquals("<input type=\"text\" value=\"a  b\" disabled><br />",
+                HtmlMinifier.minify("<input\n    type = \"text\"\n    value=\"a  b\"\n    disabled >\n<br />"));
+        assertEquals("<a title='it is  a' href=x>don't</a>",
+                HtmlMinifier.minify("<a title='it is  a'  href=x>don't</a>"));
+        assertEquals("<p>a < b</p>", HtmlMinifier.minify("<p>a < b</p>"));
+    }
+
+    public void testRawElements() {
+        String pre = "<pre>\n  line 1\n    line 2\n</pre>";
+        assertEquals("<div>\n" + pre + "\n</div>", HtmlMinifier.minify("<div>\n" + pre + "\n</div>"));
+        assertEquals("<textarea>  a\n\n b </TEXTAREA>", HtmlMinifier.minify("<textarea>  a\n\n b </TEXTAREA>"));
+        String json = "<script type=\"application/ld+json\">\n  { \"a\" :  1 }\n</script>";
+        assertEquals(json, HtmlMinifier.minify(json));
+    }
+
+    public void testTemplateScript() {
+        assertEquals("<script type=\"text/ng-template\" id=\"item.html\"><li>\n{{ item }}\n</li></script>",
+                HtmlMinifier.minify("<script type=\"text/ng-template\" id=\"item.html\">\n  <li>\n    {{ item }}\n"
+                        + "  </li>\n</script>"));
+    }
+
+    public void testStyle() {
+        assertEquals("<style type=\"text/css\">a:hover,p :first-child{color:red;margin:0 auto}"
+                        + "@media (max-width:10px){p{x:calc(1px + 2px)}}q{content:\"a ; b\"}</style>",
+                HtmlMinifier.minify("<style type=\"text/css\">\n  /* links */\n  a:hover, p :first-child {\n"
+                        + "    color: red;\n    margin: 0 auto;\n  }\n  @media (max-width: 10px) {\n"
+                        + "    p { x: calc( 1px + 2px ); }\n  }\n  q { content: \"a ; b\"; }\n</style>"));
+    }
+
+    public void testScript() {
+        assertEquals("var a=1,b=\"x  // y\"\nvar re=/[/ ]+/g;if(a < b){c=a++ / 2}\nvar t=`a  ${ \"}\" }  b`",
+                HtmlMinifier.minifyJs("\n  // comment\n  var a = 1, b = \"x  // y\"\n  /* block\n comment */\n"
+                        + "  var re = /[/ ]+/g;\n  if (a < b) {\n    c = a++ / 2\n  }\n\n"
+                        + "  var t = `a  ${ \"}\" }  b`\n"));
+        // line ends are kept for automatic semicolon insertion
+        assertEquals("a=b\n(c)", HtmlMinifier.minifyJs("a = b\n(c)"));
+        assertEquals("return /x/.test(y)", HtmlMinifier.minifyJs("return  /x/.test(y)"));
+        assertEquals("<script>if(x){y()}</script>",
+                HtmlMinifier.minify("<script>\n  if (x) {\n    y()\n  }\n</script>"));
+        // the end of a script is its closing tag, whatever is in it
+        assertEquals("<script>a=\"</script>\"", HtmlMinifier.minify("<script>a = \"</script>\""));
+    }
+
+    public void testIdempotent() {
+        String page = "<div>\n  <h1> Title </h1>\n  <p>Some <em>text</em> here.</p>\n"
+                + "  <style> p { color : red } </style>\n  <script> var x = 1 ; // one\n  </script>\n</div>\n";
+        String minified = HtmlMinifier.minify(page);
+        assertEquals(minified, HtmlMinifier.minify(minified));
+        assertTrue(minified.length() < page.length());
+    }
+}
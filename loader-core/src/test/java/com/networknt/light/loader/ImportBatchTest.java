@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class ImportBatchTest extends TestCase {
+
+    public ImportBatchTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(ImportBatchTest.class);
+        return suite;
+    }
+
+    public void testFullBySize() throws Exception {
+        ImportBatch batch = new ImportBatch(2, 1024);
+        batch.add("a", "{\"a\":1}".getBytes("UTF-8"));
+        assertFalse(batch.isFull());
+        batch.add("b", "{\"b\":2}".getBytes("UTF-8"));
+        assertTrue(batch.isFull());
+        assertEquals("[{\"a\":1},{\"b\":2}]", new String(batch.toJson(), "UTF-8"));
+        batch.clear();
+        assertTrue(batch.isEmpty());
+    }
+
+    public void testMaxBatchBytes() throws Exception {
+        ImportBatch batch = new ImportBatch(100, 20);
+        byte[] big = "{\"content\":\"0123456789\"}".getBytes("UTF-8");
+        // an empty batch always takes the command
+        assertTrue(batch.fits(big));
+        batch.add("big", big);
+        assertTrue(batch.isFull());
+        assertFalse(batch.fits("{}".getBytes("UTF-8")));
+    }
+
+    public void testIsRejected() throws Exception {
+        assertTrue(ImportBatch.isRejected(400, "{\"error\":\"Invalid command\"}"));
+        assertTrue(ImportBatch.isRejected(404, ""));
+        assertFalse(ImportBatch.isRejected(400, "{\"error\":\"Bad request\"}"));
+        assertFalse(ImportBatch.isRejected(400, ""));
+        assertTrue(ImportBatch.isRejected(500, "{\"error\":\"Unknown command\"}"));
+        assertFalse(ImportBatch.isRejected(500, "{\"error\":\"Internal error\"}"));
+        assertFalse(ImportBatch.isRejected(503, "{\"error\":\"Service unavailable\"}"));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+public class JsonResponsesTest extends TestCase {
+
+    public JsonResponsesTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(JsonResponsesTest.class);
+        return suite;
+    }
+
+    public void testReadField() throws Exception {
+        String json = "{\"user\":{\"accessToken\":\"nested\"},\"list\":[1,2],\"accessToken\":\"abc\"}";
+        assertEquals("abc", JsonResponses.readField(stream(json), "accessToken"));
+        assertNull(JsonResponses.readField(stream("{\"a\":1}"), "accessToken"));
+        assertNull(JsonResponses.readField(stream("[]"), "accessToken"));
+    }
+
+    public void testReadStringMap() throws Exception {
+        String json = "{\"a\":\"line\\n\",\"b\":null}";
+        Map<String, String> map = JsonResponses.readStringMap(stream(json), false);
+        assertEquals("line\n", map.get("a"));
+        assertTrue(map.containsKey("b"));
+        assertNull(map.get("b"));
+
+        map = JsonResponses.readStringMap(stream(json), true);
+        assertEquals(Digests.sha256Hex("line\n"), map.get("a"));
+        assertNull(map.get("b"));
+    }
+
+    public void testReadStringMapRejectsArray() throws Exception {
+        try {
+            JsonResponses.readStringMap(stream("[\"a\"]"), false);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static InputStream stream(String json) throws IOException {
+        return new ByteArrayInputStream(json.getBytes("UTF-8"));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.util.Map;
+
+public class LoadMetricsTest extends TestCase {
+
+    public LoadMetricsTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(LoadMetricsTest.class);
+        return suite;
+    }
+
+    public void testBuckets() throws Exception {
+        // every value falls into a bucket whose upper bound is within 1/8 above it
+        int last = -1;
+        for (long value = 0; value < 1000000; value += 1 + value / 50) {
+            int index = LoadMetrics.Histogram.index(value);
+            assertTrue(index >= last);
+            last = index;
+            long upper = LoadMetrics.Histogram.upperBound(index);
+            assertTrue(value + " " + upper, upper >= value);
+            assertTrue(value + " " + upper, upper <= value + value / 8);
+            if (index > 0) {
+                assertTrue(LoadMetrics.Histogram.upperBound(index - 1) < value);
+            }
+        }
+        assertEquals(Long.MAX_VALUE, LoadMetrics.Histogram.upperBound(LoadMetrics.Histogram.index(Long.MAX_VALUE)));
+    }
+
+    public void testPercentiles() throws Exception {
+        LoadMetrics.Histogram histogram = new LoadMetrics.Histogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000, i > 98);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(2, histogram.getErrors());
+        long p50 = histogram.getPercentile(50);
+        assertTrue(String.valueOf(p50), p50 >= 50000 && p50 <= 50000 * 9 / 8);
+        long p99 = histogram.getPercentile(99);
+        assertTrue(String.valueOf(p99), p99 >= 99000 && p99 <= 100000);
+        assertEquals(100000, histogram.getPercentile(100));
+    }
+
+    public void testReport() throws Exception {
+        LoadMetrics metrics = new LoadMetrics();
+        metrics.add(LoadMetrics.FILES_SCANNED, 3);
+        metrics.add(LoadMetrics.FILES_SCANNED, 2);
+        metrics.add(LoadMetrics.BYTES_UPLOADED, 2048);
+        metrics.phase("login", System.nanoTime());
+        metrics.request("impRule", System.nanoTime(), false);
+        metrics.request("impRule", System.nanoTime(), true);
+        assertEquals(5, metrics.get(LoadMetrics.FILES_SCANNED));
+        assertEquals(0, metrics.get(LoadMetrics.FILES_CHANGED));
+        assertEquals(2, metrics.getEndpoint("impRule").getCount());
+
+        File file = File.createTempFile("report", ".json");
+        try {
+            ObjectMapper mapper = new ObjectMapper();
+            metrics.write(file, mapper, "rule", "http://example:8080");
+            JsonNode report = mapper.readTree(file);
+            assertEquals("rule", report.get("loader").asText());
+            assertEquals(5, report.get("counters").get(LoadMetrics.FILES_SCANNED).asLong());
+            assertTrue(report.get("phases").has("login"));
+            assertEquals(1, report.get("endpoints").get("impRule").get("errors").asLong());
+            assertTrue(report.get("endpoints").get("impRule").has("p99Millis"));
+            assertTrue(report.get("throughput").has("filesPerSecond"));
+        } finally {
+            file.delete();
+        }
+
+        String summary = metrics.summary();
+        assertTrue(summary, summary.startsWith("5 files scanned"));
+        assertTrue(summary, summary.contains("2.0 KB uploaded"));
+        assertTrue(summary, summary.contains("impRule 2 x p50"));
+        Map<String, Object> report = metrics.toReport("rule", null);
+        assertNotNull(report.get("elapsedMillis"));
+    }
+}
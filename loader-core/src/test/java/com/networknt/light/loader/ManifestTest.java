@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class ManifestTest extends TestCase {
+    private File dir;
+
+    public ManifestTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(ManifestTest.class);
+        return suite;
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        dir = File.createTempFile("manifest", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    public void tearDown() throws Exception {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                child.delete();
+            }
+        }
+        dir.delete();
+        super.tearDown();
+    }
+
+    public void testOnlyUploadedFilesAreClean() throws Exception {
+        File same = write("Same.java", "same");
+        File sent = write("Sent.java", "sent");
+        File failed = write("Failed.java", "failed");
+
+        Manifest manifest = Manifest.load(dir, "test", "http://localhost:8080");
+        manifest.clean(Manifest.entry(same, Digests.sha256Hex("same")));
+        manifest.pending("Sent", Manifest.entry(sent, null));
+        manifest.pending("Failed", Manifest.entry(failed, null));
+        manifest.uploaded("Sent");
+        manifest.save();
+
+        manifest = Manifest.load(dir, "test", "http://localhost:8080");
+        assertNotNull(manifest.getClean(same));
+        assertEquals(Digests.sha256Hex("same"), manifest.getClean(same).getDigest());
+        assertNotNull(manifest.getClean(sent));
+        assertNull(manifest.getClean(failed));
+
+        // a different server has its own manifest
+        assertNull(Manifest.load(dir, "test", "http://other:8080").getClean(same));
+    }
+
+    public void testModifiedFileIsNotClean() throws Exception {
+        File file = write("Changed.java", "one");
+        Manifest manifest = Manifest.load(dir, "test", "http://localhost:8080");
+        manifest.clean(Manifest.entry(file, null));
+        manifest.save();
+
+        write("Changed.java", "three");
+        assertNull(Manifest.load(dir, "test", "http://localhost:8080").getClean(file));
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(dir, name);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+        return file;
+    }
+}
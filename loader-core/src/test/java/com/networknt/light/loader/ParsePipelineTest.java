@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ParsePipelineTest extends TestCase {
+    private File root;
+
+    public ParsePipelineTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(ParsePipelineTest.class);
+        return suite;
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        root = File.createTempFile("pipeline", "");
+        root.delete();
+        for (int i = 0; i < 5; i++) {
+            File dir = new File(root, "dir" + i);
+            dir.mkdirs();
+            for (int j = 0; j < 20; j++) {
+                touch(new File(dir, "file" + j + ".java"));
+            }
+        }
+        touch(new File(root, "top.java"));
+    }
+
+    public void tearDown() throws Exception {
+        delete(root);
+        super.tearDown();
+    }
+
+    public void testResultsInWalkOrder() throws Exception {
+        final List<String> expected = new ArrayList<String>();
+        finder().find(new SourceFinder.Visitor() {
+            public void visit(File file) {
+                expected.add(file.getPath());
+            }
+        });
+        assertEquals(101, expected.size());
+
+        final List<String> applied = new ArrayList<String>();
+        new ParsePipeline<String>(8, 3).run(finder(), new ParsePipeline.Handler<String>() {
+            public String parse(String filePath) throws Exception {
+                // finish out of order on purpose
+                Thread.sleep(filePath.hashCode() & 3);
+                return filePath;
+            }
+
+            public void apply(String result) {
+                applied.add(result);
+            }
+        });
+        assertEquals(expected, applied);
+    }
+
+    public void testParseFailure() {
+        try {
+            new ParsePipeline<String>(2, 2).run(finder(), new ParsePipeline.Handler<String>() {
+                public String parse(String filePath) throws Exception {
+                    throw new IOException("broken " + filePath);
+                }
+
+                public void apply(String result) {
+                    fail("nothing should be applied");
+                }
+            });
+            fail("MojoExecutionException expected");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    private SourceFinder finder() {
+        return new SourceFinder(Collections.singletonList(root), Collections.<String>emptyList(),
+                Collections.<String>emptyList(), 2);
+    }
+
+    private static void touch(File file) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(file.getName().getBytes("UTF-8"));
+        out.close();
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
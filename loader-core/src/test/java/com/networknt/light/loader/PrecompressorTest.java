@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+public class PrecompressorTest extends TestCase {
+
+    public PrecompressorTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(PrecompressorTest.class);
+        return suite;
+    }
+
+    public void testGzip() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            sb.append("<p>paragraph ").append(i).append("</p>");
+        }
+        String page = sb.toString();
+        Precompressor precompressor = new Precompressor("GZIP");
+        assertTrue(precompressor.isEnabled());
+        assertEquals("gzip", precompressor.getEncoding());
+        byte[] compressed = precompressor.compress(page);
+        assertEquals(page, gunzip(compressed));
+        // same page, same bytes
+        assertTrue(Arrays.equals(compressed, precompressor.compress(page)));
+        // too small to get smaller
+        assertNull(precompressor.compress("<p></p>"));
+    }
+
+    public void testNone() throws Exception {
+        Precompressor precompressor = new Precompressor(null);
+        assertFalse(precompressor.isEnabled());
+        assertNull(precompressor.compress("<p>a</p>"));
+    }
+
+    public void testUnsupported() {
+        try {
+            new Precompressor("br");
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new Precompressor("deflate");
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return new String(out.toByteArray(), Digests.UTF8);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpEntity;
+import org.apache.http.util.EntityUtils;
+import org.xerial.snappy.Snappy;
+
+public class RequestCompressionTest extends TestCase {
+
+    public RequestCompressionTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(RequestCompressionTest.class);
+        return suite;
+    }
+
+    private static byte[] body(int repeat) {
+        StringBuilder sb = new StringBuilder("{\"category\":\"rule\",\"data\":\"");
+        for (int i = 0; i < repeat; i++) {
+            sb.append("public class A implements Rule { } ");
+        }
+        return sb.append("\"}").toString().getBytes(Digests.UTF8);
+    }
+
+    public void testSmallBodyIsPlain() throws Exception {
+        byte[] json = body(2);
+        HttpEntity entity = new RequestCompression("gzip", 1024).entity(json);
+        assertNull(entity.getContentEncoding());
+        assertEquals("application/json", entity.getContentType().getValue().split(";")[0]);
+        assertTrue(java.util.Arrays.equals(json, EntityUtils.toByteArray(entity)));
+    }
+
+    public void testGzip() throws Exception {
+        byte[] json = body(200);
+        HttpEntity entity = new RequestCompression("gzip", 1024).entity(json);
+        assertEquals("gzip", entity.getContentEncoding().getValue());
+        byte[] compressed = EntityUtils.toByteArray(entity);
+        assertTrue(compressed.length < json.length / 5);
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        assertTrue(java.util.Arrays.equals(json, out.toByteArray()));
+    }
+
+    public void testSnappy() throws Exception {
+        byte[] json = body(200);
+        HttpEntity entity = new RequestCompression("snappy", 1024).entity(json);
+        assertEquals("snappy", entity.getContentEncoding().getValue());
+        assertTrue(java.util.Arrays.equals(json, Snappy.uncompress(EntityUtils.toByteArray(entity))));
+    }
+
+    public void testStreamed() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, Object> command = new HashMap<String, Object>();
+        command.put("category", "rule");
+        command.put("data", new String(body(200), "UTF-8"));
+        command.put("bytecode", new byte[]{1, 2, 3});
+        byte[] json = mapper.writeValueAsBytes(command);
+
+        HttpEntity entity = new RequestCompression("none", 0).entity(mapper, command, json.length);
+        assertTrue(entity instanceof JsonEntity);
+        // a plain body has a length, only a gzip body is chunked
+        assertFalse(entity.isChunked());
+        assertTrue(entity.isRepeatable());
+        assertEquals(json.length, entity.getContentLength());
+        assertEquals(-1, RequestCompression.sentLength(entity));
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            entity.writeTo(out);
+            assertTrue(java.util.Arrays.equals(json, out.toByteArray()));
+            assertEquals(json.length, RequestCompression.sentLength(entity));
+        }
+
+        entity = new RequestCompression("gzip", 1024).entity(mapper, command, json.length);
+        assertEquals("gzip", entity.getContentEncoding().getValue());
+        assertTrue(entity.isChunked());
+        assertEquals(-1, entity.getContentLength());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        assertEquals(out.size(), RequestCompression.sentLength(entity));
+        assertTrue(out.size() < json.length / 5);
+        assertTrue(java.util.Arrays.equals(json, gunzip(out.toByteArray())));
+
+        // a small body is not compressed, snappy needs the whole body
+        assertNull(new RequestCompression("gzip", 1024).entity(mapper, command, 100).getContentEncoding());
+        entity = new RequestCompression("snappy", 1024).entity(mapper, command, json.length);
+        assertEquals(Snappy.compress(json).length, entity.getContentLength());
+    }
+
+    public void testUtf8Length() throws Exception {
+        String s = "a\u00e9\u20ac\ud83d\ude00";
+        assertEquals(1 + 2 + 3 + 4, RequestCompression.utf8Length(s));
+        assertEquals(s.getBytes("UTF-8").length, RequestCompression.utf8Length(s));
+        assertEquals(0, RequestCompression.utf8Length(""));
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws Exception {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    public void testNone() throws Exception {
+        assertNull(new RequestCompression("none", 0).entity(body(200)).getContentEncoding());
+        try {
+            new RequestCompression("brotli", 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
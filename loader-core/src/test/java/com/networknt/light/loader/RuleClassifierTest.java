@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class RuleClassifierTest extends TestCase {
+
+    public RuleClassifierTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(RuleClassifierTest.class);
+        return suite;
+    }
+
+    private static RuleClassifier.Result classify(String source, String typeName) {
+        byte[] bytes = source.getBytes(Digests.UTF8);
+        return RuleClassifier.classify(bytes, bytes.length, true, typeName);
+    }
+
+    public void testRule() throws Exception {
+        RuleClassifier.Result result = classify("package com.networknt.light.rule.user;\n\n"
+                + "import com.networknt.light.rule.Rule;\n\n"
+                + "public class SignInRule extends AbstractUserRule implements Rule {\n"
+                + "    public boolean execute(Object ...objects) throws Exception {\n"
+                + "        return true;\n    }\n}\n", "SignInRule");
+        assertTrue(result.isResolved());
+        assertTrue(result.isRule());
+        assertEquals("com.networknt.light.rule.user", result.getPackageName());
+        assertEquals("SignInRule", result.getTypeName());
+    }
+
+    public void testFormatting() throws Exception {
+        assertTrue(classify("package  a . b ;\npublic final class X\n    extends Y<Map<String, List<Z>>>\n"
+                + "    implements Serializable,\n               com.networknt.light.rule.Rule\n{\n}\n", "X").isRule());
+        assertEquals("a.b", classify("package  a . b ;class X implements Rule{}", "X").getPackageName());
+        assertTrue(classify("class X implements Rule<String> {}", "X").isRule());
+        assertTrue(classify("@Deprecated @SuppressWarnings({\"unchecked\", \"{\"})\n"
+                + "public class X implements /* a rule */ Rule {}", "X").isRule());
+        assertTrue(classify("enum X implements Rule { A, B }", "X").isRule());
+        assertNull(classify("class X implements Rule {}", "X").getPackageName());
+    }
+
+    public void testByteOrderMark() throws Exception {
+        byte[] source = "package a;\nclass X implements Rule {}".getBytes(Digests.UTF8);
+        byte[] bytes = new byte[source.length + 3];
+        bytes[0] = (byte) 0xEF;
+        bytes[1] = (byte) 0xBB;
+        bytes[2] = (byte) 0xBF;
+        System.arraycopy(source, 0, bytes, 3, source.length);
+        RuleClassifier.Result result = RuleClassifier.classify(bytes, bytes.length, true, "X");
+        assertTrue(result.isRule());
+        assertEquals("a", result.getPackageName());
+    }
+
+    public void testNotRule() throws Exception {
+        // the old line scan took all of these for rules
+        assertFalse(classify("// implements Rule\nclass X {}", "X").isRule());
+        assertFalse(classify("/* class X implements Rule */\nclass X {}", "X").isRule());
+        assertFalse(classify("class X implements RuleHelper {}", "X").isRule());
+        assertFalse(classify("class X implements Runnable { String s = \"implements Rule\"; }", "X").isRule());
+        assertFalse(classify("class X { class Y implements Rule {} }", "X").isRule());
+        assertFalse(classify("interface X extends Rule {}", "X").isRule());
+        assertFalse(classify("class X extends Rule {}", "X").isRule());
+        assertFalse(classify("", "X").isRule());
+        assertTrue(classify("", "X").isResolved());
+    }
+
+    public void testPrimaryType() throws Exception {
+        // the type named after the file counts, not the first one
+        assertTrue(classify("class Helper { char c = '{'; }\nclass X implements Rule {}", "X").isRule());
+        assertFalse(classify("class Helper implements Rule {}\nclass X {}", "X").isRule());
+        // the first type if none has the name of the file
+        RuleClassifier.Result result = classify("class Y implements Rule {}\nclass Z {}", "X");
+        assertTrue(result.isRule());
+        assertEquals("Y", result.getTypeName());
+    }
+
+    public void testPartial() throws Exception {
+        String source = "package a;\n/* a long comment */\npublic class X implements Rule {\n int i;\n}\n";
+        byte[] bytes = source.getBytes(Digests.UTF8);
+        int brace = source.indexOf('{');
+        RuleClassifier.Result result = RuleClassifier.classify(bytes, brace, false, "X");
+        assertFalse(result.isResolved());
+        result = RuleClassifier.classify(bytes, brace + 1, false, "X");
+        assertTrue(result.isResolved());
+        assertTrue(result.isRule());
+        // the end of a partial buffer inside a comment is not the end of the source
+        assertFalse(RuleClassifier.classify(bytes, 15, false, "X").isResolved());
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.ToolProvider;
+
+public class RuleCompilerTest extends TestCase {
+    private File root;
+
+    public RuleCompilerTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(RuleCompilerTest.class);
+        return suite;
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        root = File.createTempFile("rule-compiler", "");
+        root.delete();
+        write(new File(root, "com/networknt/light/rule/Rule.java"),
+                "package com.networknt.light.rule;\n\npublic interface Rule {\n"
+                        + "    boolean execute(Object... objects) throws Exception;\n}\n");
+        write(new File(root, "com/example/Helper.java"),
+                "package com.example;\n\npublic class Helper {\n    public static boolean yes() {\n"
+                        + "        return true;\n    }\n}\n");
+    }
+
+    public void tearDown() throws Exception {
+        delete(root);
+        super.tearDown();
+    }
+
+    public void testCompile() throws Exception {
+        RuleCompiler compiler = new RuleCompiler(Collections.<File>emptyList(), Arrays.asList(root), "UTF-8", null);
+        try {
+            RuleCompiler.Result result = compiler.compile("com.example.MyRule", "package com.example;\n\n"
+                    + "import com.networknt.light.rule.Rule;\n\npublic class MyRule implements Rule {\n"
+                    + "    public boolean execute(Object... objects) throws Exception {\n"
+                    + "        return new Object() {\n            boolean run() {\n"
+                    + "                return Helper.yes();\n            }\n        }.run();\n    }\n}\n");
+            assertTrue(result.getErrors().toString(), result.isSuccess());
+            Map<String, byte[]> classes = result.getClasses();
+            // the helper found in the source path is not written out
+            assertEquals(Arrays.asList("com.example.MyRule", "com.example.MyRule$1"),
+                    Arrays.asList(classes.keySet().toArray()));
+            for (byte[] classFile : classes.values()) {
+                assertEquals(0xCAFEBABE, ByteBuffer.wrap(classFile).getInt());
+            }
+        } finally {
+            compiler.close();
+        }
+    }
+
+    public void testErrors() throws Exception {
+        RuleCompiler compiler = new RuleCompiler(Collections.<File>emptyList(), Arrays.asList(root), "UTF-8", null);
+        try {
+            RuleCompiler.Result result = compiler.compile("com.example.BadRule", "package com.example;\n\n"
+                    + "import com.networknt.light.rule.Rule;\n\npublic class BadRule implements Rule {\n}\n");
+            assertFalse(result.isSuccess());
+            assertTrue(result.getClasses().isEmpty());
+            List<String> errors = result.getErrors();
+            assertEquals(1, errors.size());
+            assertTrue(errors.get(0), errors.get(0).startsWith("com.example.BadRule:5: "));
+
+            // the compiler can be used again after a failure
+            result = compiler.compile("com.example.Other", "package com.example;\n\nclass Other {\n}\n");
+            assertTrue(result.getErrors().toString(), result.isSuccess());
+        } finally {
+            compiler.close();
+        }
+    }
+
+    public void testRelease() throws Exception {
+        // Java 8 is the oldest release javac 8 and the later ones can all compile for
+        RuleCompiler compiler = new RuleCompiler(Collections.<File>emptyList(), Arrays.asList(root), "UTF-8", "8");
+        try {
+            boolean release = ToolProvider.getSystemJavaCompiler().isSupportedOption("--release") >= 0;
+            assertEquals(release, compiler.getOptions().contains("--release"));
+            assertEquals(!release, compiler.getOptions().contains("-target"));
+            RuleCompiler.Result result = compiler.compile("a.Old", "package a;\npublic class Old {\n}\n");
+            assertTrue(result.getErrors().toString(), result.isSuccess());
+            byte[] classFile = result.getClasses().get("a.Old");
+            // major version of the class file format, 52 is Java 8
+            assertEquals(52, ((classFile[6] & 0xff) << 8) | (classFile[7] & 0xff));
+        } finally {
+            compiler.close();
+        }
+        try {
+            new RuleCompiler(Collections.<File>emptyList(), Arrays.asList(root), "UTF-8", "1");
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(Digests.UTF8));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+public class ServerSessionTest extends TestCase {
+
+    public ServerSessionTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(ServerSessionTest.class);
+        return suite;
+    }
+
+    protected void tearDown() {
+        ServerSession.closeAll();
+    }
+
+    private static ServerSession.ClientFactory clientFactory(final AtomicInteger created) {
+        return new ServerSession.ClientFactory() {
+            public CloseableHttpClient create(PoolingHttpClientConnectionManager pool) {
+                created.incrementAndGet();
+                return HttpClients.custom().setConnectionManager(pool).build();
+            }
+        };
+    }
+
+    public void testSharedClient() {
+        final AtomicInteger created = new AtomicInteger();
+        ServerSession.ClientFactory factory = clientFactory(created);
+        assertSame(ServerSession.get("http://a:8080"), ServerSession.get("http://a:8080"));
+        assertNotSame(ServerSession.get("http://a:8080"), ServerSession.get("http://b:8080"));
+        CloseableHttpClient client = ServerSession.get("http://a:8080").getClient(2, factory);
+        assertSame(client, ServerSession.get("http://a:8080").getClient(2, factory));
+        assertEquals(1, created.get());
+        ServerSession.get("http://b:8080").getClient(2, factory);
+        assertEquals(2, created.get());
+    }
+
+    public void testPoolGrows() {
+        ServerSession.ClientFactory factory = clientFactory(new AtomicInteger());
+        ServerSession session = ServerSession.get("http://a:8080");
+        assertEquals(0, session.getPoolSize());
+        CloseableHttpClient client = session.getClient(2, factory);
+        assertEquals(2, session.getPoolSize());
+        // a later module with more concurrent uploads grows the pool of the same client
+        assertSame(client, session.getClient(8, factory));
+        assertEquals(8, session.getPoolSize());
+        // and one with fewer does not shrink it
+        session.getClient(4, factory);
+        assertEquals(8, session.getPoolSize());
+    }
+
+    public void testNewBuild() {
+        final AtomicInteger created = new AtomicInteger();
+        ServerSession.ClientFactory factory = clientFactory(created);
+        Object build = new Object();
+        ServerSession session = ServerSession.get(build, "http://a:8080");
+        CloseableHttpClient client = session.getClient(2, factory);
+        // the modules of one build, and callers that do not know the build, share the session
+        assertSame(session, ServerSession.get(build, "http://a:8080"));
+        assertSame(session, ServerSession.get("http://a:8080"));
+        assertSame(client, ServerSession.get(build, "http://a:8080").getClient(2, factory));
+
+        // the next build gets a new session and client, the ones of the previous build are closed
+        ServerSession next = ServerSession.get(new Object(), "http://a:8080");
+        assertNotSame(session, next);
+        assertNotSame(client, next.getClient(2, factory));
+        assertEquals(2, created.get());
+        assertEquals(0, session.getPoolSize());
+    }
+
+    public void testMapFetchedOnce() {
+        final AtomicInteger fetched = new AtomicInteger();
+        ServerSession.Factory<Map<String, String>> factory = new ServerSession.Factory<Map<String, String>>() {
+            public Map<String, String> create() {
+                if (fetched.incrementAndGet() == 1) {
+                    // the first fetch fails
+                    return null;
+                }
+                Map<String, String> map = new HashMap<String, String>();
+                map.put("a.A", "class A {}");
+                map.put("a.B", null);
+                return map;
+            }
+        };
+        ServerSession session = ServerSession.get("http://a:8080");
+        assertNull(session.getMap("content", factory));
+        Map<String, String> map = session.getMap("content", factory);
+        assertEquals(1, map.size());
+        assertEquals("class A {}", map.get("a.A"));
+        // a module updates the map with what it uploaded and the next one sees it
+        map.put("a.C", "class C {}");
+        assertEquals("class C {}", session.getMap("content", factory).get("a.C"));
+        assertEquals(2, fetched.get());
+        assertNotSame(map, session.getMap("digest", factory));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SourceFinderTest extends TestCase {
+    private File main;
+    private File generated;
+
+    public SourceFinderTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(SourceFinderTest.class);
+        return suite;
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        main = File.createTempFile("finder", "");
+        main.delete();
+        touch(new File(main, "Top.java"));
+        touch(new File(main, "readme.txt"));
+        touch(new File(main, "com/example/B.java"));
+        touch(new File(main, "com/example/A.java"));
+        touch(new File(main, "com/example/internal/Hidden.java"));
+        touch(new File(main, "com/a/C.java"));
+        generated = File.createTempFile("generated", "");
+        generated.delete();
+        touch(new File(generated, "gen/G.java"));
+    }
+
+    public void tearDown() throws Exception {
+        delete(main);
+        delete(generated);
+        super.tearDown();
+    }
+
+    public void testIncludesAndOrder() throws Exception {
+        List<String> found = find(Arrays.asList(main, generated), Arrays.asList("**/*.java"),
+                Collections.<String>emptyList());
+        assertEquals(Arrays.asList("Top.java", "com/a/C.java", "com/example/A.java", "com/example/B.java",
+                "com/example/internal/Hidden.java", "gen/G.java"), found);
+    }
+
+    public void testExcludes() throws Exception {
+        List<String> found = find(Arrays.asList(main, new File(main, "missing")), Arrays.asList("**/*.java"),
+                Arrays.asList("**/internal/**", "**/B.java"));
+        assertEquals(Arrays.asList("Top.java", "com/a/C.java", "com/example/A.java"), found);
+    }
+
+    public void testSymbolicLinks() throws Exception {
+        Files.createSymbolicLink(new File(main, "linked").toPath(), new File(main, "com/a").toPath());
+        // links back to a parent would be walked forever
+        Files.createSymbolicLink(new File(main, "com/example/loop").toPath(), main.toPath());
+        Files.createSymbolicLink(new File(main, "com/a/self").toPath(), new File(main, "com/a").toPath());
+        List<String> found = find(Collections.singletonList(main), Arrays.asList("**/*.java"),
+                Arrays.asList("**/internal/**"));
+        assertEquals(Arrays.asList("Top.java", "com/a/C.java", "com/example/A.java", "com/example/B.java",
+                "linked/C.java"), found);
+    }
+
+    private List<String> find(List<File> roots, List<String> includes, List<String> excludes) throws Exception {
+        final List<String> found = new ArrayList<String>();
+        final String mainPath = main.getPath() + File.separator;
+        final String generatedPath = generated.getPath() + File.separator;
+        new SourceFinder(roots, includes, excludes, 3).find(new SourceFinder.Visitor() {
+            public void visit(File file) {
+                found.add(file.getPath().replace(mainPath, "").replace(generatedPath, "")
+                        .replace(File.separatorChar, '/'));
+            }
+        });
+        return found;
+    }
+
+    private static void touch(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(file.getName().getBytes("UTF-8"));
+        out.close();
+    }
+
+    private static void delete(File file) {
+        File[] children = Files.isSymbolicLink(file.toPath()) ? null : file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.Scanner;
+
+public class SourceReaderTest extends TestCase {
+    private static final String ALPHABET = "ab \t\n\n\r\r\u00a0\u00e9\u2028\u2029\u0085\u3000\u20ac";
+
+    private File file;
+
+    public SourceReaderTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(SourceReaderTest.class);
+        return suite;
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("source", ".java");
+    }
+
+    public void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    public void testNormalForm() throws Exception {
+        assertEquals("a\nb\n", read("a\nb\n", "UTF-8"));
+        assertEquals("a\nb\n", read("a\r\nb", "UTF-8"));
+        assertEquals("a\n\nb  \n", read("a\n\nb  \n \n\t\n", "UTF-8"));
+        assertEquals("  \n", read("  \n\n", "UTF-8"));
+        assertEquals("", read("", "UTF-8"));
+    }
+
+    public void testNormalFormIsNotCopied() throws Exception {
+        write("class A {}\n\n", "UTF-8");
+        SourceReader.Source source = new SourceReader("UTF-8").read(file);
+        assertEquals(12, source.getBytes().length);
+        assertEquals(11, source.getLength());
+        assertEquals(Digests.sha256Hex("class A {}\n"), source.getDigest());
+    }
+
+    public void testSameAsScanner() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = 1 + random.nextInt(12);
+            for (int k = 0; k < length; k++) {
+                sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            String text = sb.toString();
+            assertEquals(escape(text), escape(scan(text, "UTF-8")), escape(read(text, "UTF-8")));
+            String latin = text.replace('\u2028', 'x').replace('\u2029', 'y').replace('\u3000', ' ')
+                    .replace('\u20ac', 'z');
+            assertEquals(escape(latin), escape(scan(latin, "ISO-8859-1")), escape(read(latin, "ISO-8859-1")));
+        }
+    }
+
+    private String read(String text, String encoding) throws IOException {
+        write(text, encoding);
+        return new SourceReader(encoding).read(file).getText();
+    }
+
+    /**
+     * The loop the loaders used before SourceReader.
+     */
+    private String scan(String text, String encoding) throws IOException {
+        write(text, encoding);
+        StringBuilder sb = new StringBuilder();
+        Scanner scan = new Scanner(file, encoding);
+        String line = scan.nextLine();
+        while (scan.hasNext()) {
+            sb.append(line);
+            sb.append("\n");
+            line = scan.nextLine();
+        }
+        sb.append(line);
+        sb.append("\n");
+        scan.close();
+        return sb.toString();
+    }
+
+    private void write(String text, String encoding) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(text.getBytes(encoding));
+        out.close();
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : s.toCharArray()) {
+            if (c < 0x20 || c > 0x7e) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SourceWatcherTest extends TestCase {
+    private File dir;
+
+    public SourceWatcherTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(SourceWatcherTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws IOException {
+        dir = File.createTempFile("watch", "");
+        dir.delete();
+        new File(dir, "a/skip").mkdirs();
+    }
+
+    protected void tearDown() {
+        delete(dir);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void write(File file, String text) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(text.getBytes("UTF-8"));
+        out.close();
+    }
+
+    public void testChanges() throws Exception {
+        SourceFinder finder = new SourceFinder(Arrays.asList(dir), Arrays.asList("**/*.java"),
+                Arrays.asList("**/skip/**"), 1);
+        SourceWatcher watcher = new SourceWatcher(Arrays.asList(dir), finder, 100);
+        try {
+            // several writes of the same file are handed out once
+            write(new File(dir, "a/A.java"), "class A {}");
+            write(new File(dir, "a/A.java"), "class A { }");
+            write(new File(dir, "a/notes.txt"), "not a source");
+            write(new File(dir, "a/skip/S.java"), "class S {}");
+            List<File> files = watcher.next();
+            assertEquals(Collections.singletonList(new File(dir, "a/A.java")), files);
+
+            // a new directory is watched and files already in it are found
+            File b = new File(dir, "b/c");
+            b.mkdirs();
+            write(new File(b, "B.java"), "class B {}");
+            files = watcher.next();
+            assertTrue(files.contains(new File(b, "B.java")));
+            write(new File(b, "C.java"), "class C {}");
+            assertTrue(watcher.next().contains(new File(b, "C.java")));
+        } finally {
+            watcher.close();
+        }
+    }
+}
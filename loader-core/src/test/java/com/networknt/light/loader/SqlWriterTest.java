@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+public class SqlWriterTest extends TestCase {
+    private File file;
+
+    public SqlWriterTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(SqlWriterTest.class);
+        return suite;
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("rule", ".sql");
+    }
+
+    public void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    public void testSingleRowInsert() throws Exception {
+        SqlWriter writer = new SqlWriter(file, "UTF-8", "RULE", "class_name", "source_code", "ansi", 1, false);
+        writer.write("a.B", "it's\n");
+        writer.close();
+        assertEquals("INSERT INTO RULE(class_name, source_code) VALUES ('a.B', 'it''s\n');\n", read(false));
+    }
+
+    public void testMultiRowUpsert() throws Exception {
+        SqlWriter writer = new SqlWriter(file, "UTF-8", "RULE", "class_name", "source_code", "postgresql", 2, false);
+        writer.write("a", "1");
+        writer.write("b", "2");
+        writer.write("c", "3");
+        writer.close();
+        String suffix = " ON CONFLICT (class_name) DO UPDATE SET source_code = EXCLUDED.source_code;\n";
+        assertEquals("INSERT INTO RULE(class_name, source_code) VALUES ('a', '1'),\n('b', '2')" + suffix
+                + "INSERT INTO RULE(class_name, source_code) VALUES ('c', '3')" + suffix, read(false));
+    }
+
+    public void testMysqlBackslash() throws Exception {
+        SqlWriter writer = new SqlWriter(file, "UTF-8", "RULE", "class_name", "source_code", "mysql", 1, true);
+        writer.write("a", "\\n'");
+        writer.close();
+        assertEquals("INSERT INTO RULE(class_name, source_code) VALUES ('a', '\\\\n''')"
+                + " ON DUPLICATE KEY UPDATE source_code = VALUES(source_code);\n", read(true));
+    }
+
+    public void testMoreValueColumns() throws Exception {
+        String[] columns = {"content", "content_gzip"};
+        SqlWriter writer = new SqlWriter(file, "UTF-8", "PAGE", "id", columns, "postgresql", 1, false);
+        writer.write("a", "1", "H4sI");
+        writer.write("b", "2", null);
+        writer.close();
+        String suffix = " ON CONFLICT (id) DO UPDATE SET content = EXCLUDED.content,"
+                + " content_gzip = EXCLUDED.content_gzip;\n";
+        assertEquals("INSERT INTO PAGE(id, content, content_gzip) VALUES ('a', '1', 'H4sI')" + suffix
+                + "INSERT INTO PAGE(id, content, content_gzip) VALUES ('b', '2', NULL)" + suffix, read(false));
+
+        writer = new SqlWriter(file, "UTF-8", "PAGE", "id", columns, "mysql", 1, false);
+        writer.write("a", "1", "H4sI");
+        writer.close();
+        assertEquals("INSERT INTO PAGE(id, content, content_gzip) VALUES ('a', '1', 'H4sI') ON DUPLICATE KEY UPDATE"
+                + " content = VALUES(content), content_gzip = VALUES(content_gzip);\n", read(false));
+
+        writer = new SqlWriter(file, "UTF-8", "PAGE", "id", columns, "sqlserver", 1, false);
+        writer.write("a", "1", "H4sI");
+        writer.close();
+        assertEquals("MERGE INTO PAGE AS t USING (VALUES ('a', '1', 'H4sI')) AS s (id, content, content_gzip)"
+                + " ON t.id = s.id WHEN MATCHED THEN UPDATE SET content = s.content, content_gzip = s.content_gzip"
+                + " WHEN NOT MATCHED THEN INSERT (id, content, content_gzip) VALUES (s.id, s.content, s.content_gzip);\n",
+                read(false));
+    }
+
+    public void testUnknownDialect() throws Exception {
+        try {
+            new SqlWriter(file, "UTF-8", "RULE", "class_name", "source_code", "db2", 1, false);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private String read(boolean gzip) throws IOException {
+        InputStream in = new FileInputStream(file);
+        if (gzip) {
+            in = new GZIPInputStream(in);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return new String(out.toByteArray(), "UTF-8");
+    }
+}
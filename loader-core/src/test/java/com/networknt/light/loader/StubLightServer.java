@@ -0,0 +1,439 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.xerial.snappy.Snappy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-process stand-in for the /api/rs endpoint of a Light Server, good enough to run the loaders end to end. It
+ * knows signInUser, get(Rule|Page|Form)Map, get(Rule|Page)DigestMap, impRule, impPage and impForm, single and
+ * batched, and keeps what is imported in memory.
+ *
+ * Network conditions can be set at any time: a fixed latency plus random jitter per request, a share of requests
+ * answered with 503, and a throughput limit shared by all connections in both directions, like a WAN link.
+ */
+public class StubLightServer {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static {
+        // the server writes headers and body separately, without this every response waits for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, String> rules = new ConcurrentHashMap<String, String>();
+    private final Map<String, Map<String, byte[]>> bytecode = new ConcurrentHashMap<String, Map<String, byte[]>>();
+    private final Map<String, String> pages = new ConcurrentHashMap<String, String>();
+    private final ConcurrentHashMap<String, Map<String, byte[]>> variants =
+            new ConcurrentHashMap<String, Map<String, byte[]>>();
+    private final Map<String, String> forms = new ConcurrentHashMap<String, String>();
+    private final ConcurrentHashMap<String, AtomicInteger> requests = new ConcurrentHashMap<String, AtomicInteger>();
+    private final AtomicInteger imports = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final Random random = new Random();
+    private final String token;
+
+    private volatile String user = "stevehu";
+    private volatile String password = "123456";
+    private volatile long latencyMillis = 0;
+    private volatile long jitterMillis = 0;
+    private volatile double errorRate = 0;
+    private volatile long bytesPerSecond = 0;
+    private volatile boolean batchSupported = true;
+    private volatile boolean digestMapSupported = true;
+    private final Map<String, Boolean> rejected = new ConcurrentHashMap<String, Boolean>();
+    private final Map<String, AtomicInteger> failNext = new ConcurrentHashMap<String, AtomicInteger>();
+    private final Map<String, Integer> failStatus = new ConcurrentHashMap<String, Integer>();
+    private long linkFreeAt = 0;
+
+    public StubLightServer() throws IOException {
+        String header = Base64.getUrlEncoder().encodeToString("{\"alg\":\"none\"}".getBytes(Digests.UTF8));
+        String claims = "{\"exp\":" + (System.currentTimeMillis() / 1000 + 3600) + "}";
+        token = header + "." + Base64.getUrlEncoder().encodeToString(claims.getBytes(Digests.UTF8)) + ".stub";
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "stub-light-server");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/rs", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                int current = inFlight.incrementAndGet();
+                try {
+                    int max;
+                    while ((max = maxInFlight.get()) < current && !maxInFlight.compareAndSet(max, current)) {
+                        // retry
+                    }
+                    serve(exchange);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                    exchange.close();
+                }
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public void setUser(String user, String password) {
+        this.user = user;
+        this.password = password;
+    }
+
+    /**
+     * @param latencyMillis added to every request
+     * @param jitterMillis random extra latency between 0 and jitterMillis
+     */
+    public void setLatency(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * @param errorRate share of requests, between 0 and 1, that are answered with 503
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @param bytesPerSecond throughput of the link shared by all requests and responses, 0 for no limit
+     */
+    public void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public void setBatchSupported(boolean batchSupported) {
+        this.batchSupported = batchSupported;
+    }
+
+    public void setDigestMapSupported(boolean digestMapSupported) {
+        this.digestMapSupported = digestMapSupported;
+    }
+
+    /**
+     * @return class files sent with impRule, by rule class and then by binary class name
+     */
+    public Map<String, Map<String, byte[]>> getBytecode() {
+        return bytecode;
+    }
+
+    public Map<String, String> getRules() {
+        return rules;
+    }
+
+    public Map<String, String> getPages() {
+        return pages;
+    }
+
+    /**
+     * @param encoding content encoding, e.g. gzip
+     * @return precompressed pages sent with impPage by id
+     */
+    public Map<String, byte[]> getVariants(String encoding) {
+        Map<String, byte[]> map = variants.get(encoding);
+        return map == null ? new HashMap<String, byte[]>() : map;
+    }
+
+    /**
+     * @return forms sent with impForm by id, as JSON
+     */
+    public Map<String, String> getForms() {
+        return forms;
+    }
+
+    /**
+     * @param name command name, or batch for multi-item requests
+     * @param count number of the next requests for the command that are answered with 503
+     */
+    public void failNext(String name, int count) {
+        failNext(name, count, 503);
+    }
+
+    /**
+     * @param name command name, or batch for multi-item requests
+     * @param count number of the next requests for the command that are answered with the status
+     * @param status status of the answers, e.g. 400 for requests the server could not handle
+     */
+    public void failNext(String name, int count, int status) {
+        failStatus.put(name, status);
+        failNext.put(name, new AtomicInteger(count));
+    }
+
+    /**
+     * @param key rule class or page id whose imports are answered with an error
+     */
+    public void reject(String key) {
+        rejected.put(key, Boolean.TRUE);
+    }
+
+    public void accept(String key) {
+        rejected.remove(key);
+    }
+
+    /**
+     * @param name command name, e.g. impRule, or batch for multi-item requests
+     * @return number of requests received for the command, including rejected ones
+     */
+    public int getRequests(String name) {
+        AtomicInteger count = requests.get(name);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return number of rules, pages and forms imported, single or in a batch
+     */
+    public int getImports() {
+        return imports.get();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException, InterruptedException {
+        byte[] body = read(exchange.getRequestBody());
+        transfer(body.length);
+        long delay = latencyMillis;
+        boolean fail;
+        synchronized (random) {
+            delay += jitterMillis > 0 ? (long) (random.nextDouble() * jitterMillis) : 0;
+            fail = random.nextDouble() < errorRate;
+        }
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        if ("gzip".equals(encoding)) {
+            body = read(new GZIPInputStream(new ByteArrayInputStream(body)));
+        } else if ("snappy".equals(encoding)) {
+            body = Snappy.uncompress(body);
+        }
+        JsonNode request = MAPPER.readTree(body);
+        String command = request.isArray() ? "batch" : request.path("name").asText();
+        count(command);
+        int failWith = 503;
+        AtomicInteger failures = failNext.get(command);
+        if (failures != null && failures.getAndDecrement() > 0) {
+            fail = true;
+            failWith = failStatus.get(command);
+        }
+        if (fail) {
+            respond(exchange, failWith, failWith == 503 ? "{\"error\":\"Service unavailable\"}"
+                    : "{\"error\":\"Bad request\"}");
+            return;
+        }
+        if (!request.isArray() && "signInUser".equals(request.path("name").asText())) {
+            JsonNode data = request.path("data");
+            if (user.equals(data.path("userIdEmail").asText()) && password.equals(data.path("password").asText())) {
+                respond(exchange, 200, "{\"accessToken\":\"" + token + "\"}");
+            } else {
+                respond(exchange, 401, "{\"error\":\"Invalid user or password\"}");
+            }
+            return;
+        }
+        if (!("Bearer " + token).equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+            respond(exchange, 401, "{\"error\":\"Invalid token\"}");
+            return;
+        }
+        if (request.isArray()) {
+            if (!batchSupported) {
+                respond(exchange, 400, "{\"error\":\"Invalid command\"}");
+                return;
+            }
+            ArrayNode results = MAPPER.createArrayNode();
+            for (JsonNode item : request) {
+                ObjectNode result = results.addObject();
+                String error = execute(item);
+                if (error != null) {
+                    result.put("error", error);
+                }
+            }
+            respond(exchange, 200, MAPPER.writeValueAsString(results));
+            return;
+        }
+        String name = request.path("name").asText();
+        Map<String, String> map = null;
+        boolean digest = false;
+        if ("getRuleMap".equals(name) || "getRuleDigestMap".equals(name)) {
+            map = rules;
+            digest = "getRuleDigestMap".equals(name);
+        } else if ("getPageMap".equals(name) || "getPageDigestMap".equals(name)) {
+            map = pages;
+            digest = "getPageDigestMap".equals(name);
+        } else if ("getFormMap".equals(name)) {
+            map = forms;
+        }
+        if (map != null) {
+            if (digest && !digestMapSupported) {
+                respond(exchange, 400, "{\"error\":\"Invalid command\"}");
+                return;
+            }
+            Map<String, String> result = new HashMap<String, String>();
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                result.put(entry.getKey(), digest ? Digests.sha256Hex(entry.getValue()) : entry.getValue());
+            }
+            respond(exchange, 200, MAPPER.writeValueAsString(result));
+            return;
+        }
+        String error = execute(request);
+        if (error != null) {
+            respond(exchange, 400, "{\"error\":\"" + error + "\"}");
+        } else {
+            respond(exchange, 200, "{\"result\":\"ok\"}");
+        }
+    }
+
+    /**
+     * Run an import command.
+     *
+     * @return error message or null
+     */
+    private String execute(JsonNode command) {
+        String name = command.path("name").asText();
+        JsonNode data = command.path("data");
+        String key = data.path("ruleClass").asText(data.path("id").asText());
+        if (rejected.containsKey(key)) {
+            return "Rejected " + key;
+        }
+        if ("impRule".equals(name) && data.hasNonNull("ruleClass") && data.hasNonNull("sourceCode")) {
+            rules.put(data.get("ruleClass").asText(), data.get("sourceCode").asText());
+            if (data.has("bytecode")) {
+                Map<String, byte[]> classes = new HashMap<String, byte[]>();
+                Iterator<Map.Entry<String, JsonNode>> fields = data.get("bytecode").fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    classes.put(field.getKey(), Base64.getDecoder().decode(field.getValue().asText()));
+                }
+                bytecode.put(data.get("ruleClass").asText(), classes);
+            }
+        } else if ("impPage".equals(name) && data.hasNonNull("id") && data.hasNonNull("content")) {
+            pages.put(data.get("id").asText(), data.get("content").asText());
+            Iterator<Map.Entry<String, JsonNode>> fields = data.path("variants").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                Map<String, byte[]> created = new ConcurrentHashMap<String, byte[]>();
+                Map<String, byte[]> map = variants.putIfAbsent(field.getKey(), created);
+                (map == null ? created : map).put(data.get("id").asText(),
+                        Base64.getDecoder().decode(field.getValue().asText()));
+            }
+        } else if ("impForm".equals(name) && data.hasNonNull("id")) {
+            forms.put(data.get("id").asText(), data.toString());
+        } else {
+            return "Invalid command " + name;
+        }
+        imports.incrementAndGet();
+        return null;
+    }
+
+    private void count(String name) {
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger count = requests.putIfAbsent(name, created);
+        (count == null ? created : count).incrementAndGet();
+    }
+
+    private void respond(HttpExchange exchange, int status, String json) throws IOException, InterruptedException {
+        byte[] body = json.getBytes(Digests.UTF8);
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (accept != null && accept.contains("gzip") && body.length > 1024) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(out);
+            gzip.write(body);
+            gzip.close();
+            body = out.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        transfer(body.length);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    /**
+     * Wait until n bytes have gone over the link. Transfers queue up behind each other, so concurrent requests
+     * share the throughput.
+     */
+    private void transfer(long n) throws InterruptedException {
+        long rate = bytesPerSecond;
+        if (rate <= 0) {
+            return;
+        }
+        long done;
+        synchronized (this) {
+            long now = System.nanoTime();
+            linkFreeAt = Math.max(now, linkFreeAt) + n * 1000000000L / rate;
+            done = linkFreeAt;
+        }
+        long wait = done - System.nanoTime();
+        if (wait > 0) {
+            Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Base64;
+
+public class TokenCacheTest extends TestCase {
+    private File file;
+
+    public TokenCacheTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(TokenCacheTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws IOException {
+        file = File.createTempFile("token", ".cache");
+        file.delete();
+    }
+
+    protected void tearDown() {
+        file.delete();
+    }
+
+    private static String jwt(long exp) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"HS256\"}".getBytes(Digests.UTF8)) + "."
+                + encoder.encodeToString(("{\"user\":\"test\",\"exp\":" + exp + "}").getBytes(Digests.UTF8))
+                + ".c2lnbmF0dXJl";
+    }
+
+    public void testExpiry() {
+        long now = System.currentTimeMillis() / 1000;
+        assertEquals((now + 3600) * 1000, TokenCache.getExpiry(jwt(now + 3600)));
+        assertFalse(TokenCache.isExpired(jwt(now + 3600)));
+        assertTrue(TokenCache.isExpired(jwt(now + 30)));
+        assertEquals(Long.MAX_VALUE, TokenCache.getExpiry("opaque-token"));
+    }
+
+    public void testSession() {
+        String url = "http://session:8080";
+        String token = jwt(System.currentTimeMillis() / 1000 + 3600);
+        assertNull(new TokenCache(null, "pass").get(url, "user"));
+        new TokenCache(null, "pass").put(url, "user", token);
+        assertEquals(token, new TokenCache(null, "pass").get(url, "user"));
+        assertNull(new TokenCache(null, "pass").get(url, "other"));
+        new TokenCache(null, "pass").invalidate(url, "user");
+        assertNull(new TokenCache(null, "pass").get(url, "user"));
+
+        new TokenCache(null, "pass").put(url, "user", jwt(System.currentTimeMillis() / 1000 - 10));
+        assertNull(new TokenCache(null, "pass").get(url, "user"));
+    }
+
+    public void testBuild() {
+        String url = "http://build:8080";
+        String token = jwt(System.currentTimeMillis() / 1000 + 3600);
+        Object build = new Object();
+        new TokenCache(build, null, "pass").put(url, "user", token);
+        // the other modules of the build use the token
+        assertEquals(token, new TokenCache(build, null, "pass").get(url, "user"));
+        assertEquals(token, new TokenCache(null, "pass").get(url, "user"));
+
+        // the next build of the same Maven signs in again
+        assertNull(new TokenCache(new Object(), null, "pass").get(url, "user"));
+    }
+
+    public void testFile() throws Exception {
+        String url = "http://file:8080";
+        String token = jwt(System.currentTimeMillis() / 1000 + 3600);
+        new TokenCache(file, "secret").put(url, "user", token);
+        String content = new String(Files.readAllBytes(file.toPath()), Digests.UTF8);
+        assertFalse(content.contains(token.substring(0, 20)));
+
+        // a later build has an empty session
+        new TokenCache(null, "secret").invalidate(url, "user");
+        assertNull(new TokenCache(file, "changed").get(url, "user"));
+        assertEquals(token, new TokenCache(file, "secret").get(url, "user"));
+
+        new TokenCache(file, "secret").invalidate(url, "user");
+        assertNull(new TokenCache(file, "secret").get(url, "user"));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+public class UploadJournalTest extends TestCase {
+    private File dir;
+
+    public UploadJournalTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(UploadJournalTest.class);
+        return suite;
+    }
+
+    protected void setUp() throws IOException {
+        dir = File.createTempFile("journal", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    protected void tearDown() {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    public void testResume() throws Exception {
+        UploadJournal journal = UploadJournal.open(dir, "rule", "http://example:8080", false);
+        assertTrue(journal.getUnfinished().isEmpty());
+        journal.pending("a.A", "src/a/A.java");
+        journal.pending("a.B", "src/a/B.java");
+        journal.pending("a.C", "src/a/C.java");
+        journal.completed("a.B");
+        journal.close();
+        // simulate a crash in the middle of a line
+        FileOutputStream out = new FileOutputStream(journal.getFile(), true);
+        out.write("P\ta.D".getBytes("UTF-8"));
+        out.close();
+
+        journal = UploadJournal.open(dir, "rule", "http://example:8080", true);
+        Map<String, String> unfinished = journal.getUnfinished();
+        assertEquals(Arrays.asList("a.A", "a.C"), Arrays.asList(unfinished.keySet().toArray()));
+        assertEquals("src/a/C.java", unfinished.get("a.C"));
+        journal.pending("a.A", "src/a/A.java");
+        journal.completed("a.A");
+        journal.close();
+
+        journal = UploadJournal.open(dir, "rule", "http://example:8080", true);
+        assertEquals(Arrays.asList("a.C"), Arrays.asList(journal.getUnfinished().keySet().toArray()));
+        journal.close();
+    }
+
+    public void testNewRunStartsOver() throws Exception {
+        UploadJournal journal = UploadJournal.open(dir, "rule", "http://example:8080", false);
+        journal.pending("a.A", "src/a/A.java");
+        journal.close();
+        UploadJournal.open(dir, "rule", "http://example:8080", false).close();
+        journal = UploadJournal.open(dir, "rule", "http://example:8080", true);
+        assertTrue(journal.getUnfinished().isEmpty());
+        journal.close();
+        // other servers have their own journal
+        UploadJournal other = UploadJournal.open(dir, "rule", "http://other:8080", true);
+        other.close();
+        assertFalse(journal.getFile().equals(other.getFile()));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class UploadQueueTest extends TestCase {
+
+    public UploadQueueTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(UploadQueueTest.class);
+        return suite;
+    }
+
+    public void testConcurrencyAndResults() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        UploadQueue uploads = new UploadQueue(4);
+        for (int i = 0; i < 40; i++) {
+            final int n = i;
+            uploads.submit(new Callable<Boolean>() {
+                public Boolean call() throws Exception {
+                    int now = running.incrementAndGet();
+                    synchronized (maxRunning) {
+                        maxRunning.set(Math.max(maxRunning.get(), now));
+                    }
+                    Thread.sleep(5);
+                    running.decrementAndGet();
+                    if (n % 10 == 0) {
+                        throw new IOException("broken pipe");
+                    }
+                    return n % 10 != 1;
+                }
+            });
+        }
+        uploads.await();
+        uploads.shutdown();
+        assertEquals(0, running.get());
+        assertTrue(maxRunning.get() <= 4);
+        assertEquals(8, uploads.getFailed());
+        assertEquals(32, uploads.getSucceeded());
+    }
+
+    public void testInline() {
+        final Thread caller = Thread.currentThread();
+        UploadQueue uploads = new UploadQueue(1);
+        uploads.submit(new Callable<Boolean>() {
+            public Boolean call() {
+                return Thread.currentThread() == caller;
+            }
+        });
+        uploads.await();
+        assertEquals(1, uploads.getSucceeded());
+    }
+}
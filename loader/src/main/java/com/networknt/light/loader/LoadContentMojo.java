@@ -0,0 +1,449 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Goal that loads every kind of content in one pass: the source roots are walked once, each file is handed to the
+ * first content type that claims it, and everything is compared with the server and imported over one login and
+ * one connection pool. Rules and pages are built in; JSON content such as forms and menus is configured with
+ * jsonTypes, and further types can be plugged in as ContentType services on the plugin class path.
+ *
+ * The work is done by ContentLoader, the same engine the rule and page plugins run, so the manifest, the upload
+ * journal, batches, the SQL output and the load report work the same way. Each type keeps its own manifest, SQL
+ * file and server map.
+ *
+ * @goal load
+ *
+ * @phase process-sources
+ *
+ * @requiresDependencyResolution compile
+ */
+public class LoadContentMojo extends AbstractMojo {
+
+    /**
+     * Location of the manifests, the upload journal, the SQL output and the load report.
+     *
+     * @parameter expression="${project.build.directory}"
+     * @required
+     */
+    private final File outputDirectory = new File("");
+
+    /**
+     * Project's source directory as specified in the POM.
+     *
+     * @parameter expression="${project.build.sourceDirectory}"
+     * @readonly
+     * @required
+     */
+    private final File sourceDirectory = new File("");
+
+    /**
+     * Project's source directory for test code as specified in the POM.
+     *
+     * @parameter expression="${project.build.testSourceDirectory}"
+     * @readonly
+     * @required
+     */
+    private final File testSourceDirectory = new File("");
+
+    /**
+     * Encoding of source files
+     *
+     * @parameter default-value="UTF-8"
+     * @required
+     */
+    private String encoding;
+
+    /**
+     * server url
+     *
+     * @parameter default-value="http://example:8080"
+     * @required
+     */
+    private String serverUrl;
+
+    /**
+     * server user
+     *
+     * @parameter default-value="stevehu"
+     * @required
+     */
+    private String serverUser;
+
+    /**
+     * server pass
+     *
+     * @parameter default-value="123456"
+     * @required
+     */
+    private String serverPass;
+
+    /**
+     * client id
+     *
+     * @parameter default-value="example@Browser"
+     * @required
+     */
+    private String clientId;
+
+    /**
+     * Names of the content types to load, e.g. rule and page. All known types are loaded if not given.
+     *
+     * @parameter
+     */
+    private String[] types;
+
+    /**
+     * JSON content types such as forms or menus, see JsonContentType.
+     *
+     * @parameter
+     */
+    private JsonContentType[] jsonTypes;
+
+    /**
+     * Glob patterns of the files to walk, relative to each source root. Defaults to the patterns of the types; a
+     * file still has to match the patterns of a type to be loaded.
+     *
+     * @parameter
+     */
+    private String[] includes;
+
+    /**
+     * Glob patterns of the files to leave out, relative to each source root. Directories matching a pattern that
+     * ends with /** are not walked at all.
+     *
+     * @parameter
+     */
+    private String[] excludes;
+
+    /**
+     * Load content from the test source directory as well.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean includeTestSources;
+
+    /**
+     * Additional source roots to load content from, for example generated sources or resources.
+     *
+     * @parameter
+     */
+    private File[] sourceRoots;
+
+    /**
+     * Number of threads that read and classify source files in parallel.
+     *
+     * @parameter default-value="4"
+     */
+    private int parserThreads;
+
+    /**
+     * Maximum number of parsed files waiting to be uploaded.
+     *
+     * @parameter default-value="256"
+     */
+    private int parserQueueSize;
+
+    /**
+     * Number of imports of one type sent in one request, as a JSON array with one result per item. If the server
+     * rejects the array form, the plugin falls back to one request per import.
+     *
+     * @parameter default-value="1"
+     */
+    private int batchSize;
+
+    /**
+     * Maximum size in bytes of one batch request body.
+     *
+     * @parameter default-value="1048576"
+     */
+    private long maxBatchBytes;
+
+    /**
+     * Compare SHA-256 digests instead of full content, for the types the server has a digest map of.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean digestMode;
+
+    /**
+     * Skip files that have not been touched since the last load to the same server. Each type keeps a manifest of
+     * the files in sync with the server in the output directory. Only use it if nobody else updates the content
+     * on the server.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean incremental;
+
+    /**
+     * SQL dialect of the SQL output: ansi for plain INSERT statements, or postgresql, mysql, h2 or sqlserver for
+     * upserts.
+     *
+     * @parameter default-value="ansi"
+     */
+    private String sqlDialect;
+
+    /**
+     * Number of rows per INSERT or MERGE statement.
+     *
+     * @parameter default-value="1"
+     */
+    private int sqlBatchSize;
+
+    /**
+     * Compress the SQL output with gzip.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean sqlGzip;
+
+    /**
+     * Format of the SQL output: insert, copy for PostgreSQL COPY or loaddata for MySQL LOAD DATA. Rules go to
+     * rule.sql, pages to server.sql and JSON types with a sqlTable to their own file.
+     *
+     * @parameter default-value="insert"
+     */
+    private String sqlFormat;
+
+    /**
+     * Write all content to the SQL output, not only what changed.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean sqlSnapshot;
+
+    /**
+     * Number of import requests sent to the server at the same time.
+     *
+     * @parameter default-value="1"
+     */
+    private int maxConcurrentUploads;
+
+    /**
+     * How long in milliseconds an idle connection is kept open if the server does not say otherwise.
+     *
+     * @parameter default-value="30000"
+     */
+    private long keepAliveMillis;
+
+    /**
+     * Compression of request bodies: none, gzip or snappy.
+     *
+     * @parameter default-value="none"
+     */
+    private String requestCompression;
+
+    /**
+     * Smallest request body in bytes that is compressed.
+     *
+     * @parameter default-value="1024"
+     */
+    private int compressMinBytes;
+
+    /**
+     * Number of times a request is retried after an I/O error or a busy server.
+     *
+     * @parameter default-value="3"
+     */
+    private int maxRetries;
+
+    /**
+     * Delay in milliseconds before the first retry, doubled with each retry up to maxRetryBackoffMillis.
+     *
+     * @parameter default-value="500"
+     */
+    private long retryBackoffMillis;
+
+    /**
+     * Longest delay in milliseconds between two retries.
+     *
+     * @parameter default-value="30000"
+     */
+    private long maxRetryBackoffMillis;
+
+    /**
+     * Only upload what was left unfinished by the last run to the same server, as recorded in the upload journal
+     * in the output directory.
+     *
+     * @parameter expression="${resume}" default-value="false"
+     */
+    private boolean resume;
+
+    /**
+     * Log every file that is processed and everything that is loaded. The numbers of each phase and endpoint are
+     * in content-load-report.json in the output directory.
+     *
+     * @parameter expression="${verbose}" default-value="false"
+     */
+    private boolean verbose;
+
+    /**
+     * Minify pages before they are compared with the server and uploaded.
+     *
+     * @parameter expression="${minifyHtml}" default-value="false"
+     */
+    private boolean minifyHtml;
+
+    /**
+     * Compress each uploaded page at build time so that the server can serve the stored bytes: none or gzip.
+     *
+     * @parameter expression="${precompress}" default-value="none"
+     */
+    private String precompress;
+
+    /**
+     * Compile each changed rule with the Java compiler of the build before it is uploaded. A rule that does not
+     * compile is not uploaded and the build fails once the rest is done.
+     *
+     * @parameter expression="${compileRules}" default-value="false"
+     */
+    private boolean compileRules;
+
+    /**
+     * Send the class files of each compiled rule with its source. Implies compileRules.
+     *
+     * @parameter expression="${uploadBytecode}" default-value="false"
+     */
+    private boolean uploadBytecode;
+
+    /**
+     * Java release the rules are compiled for.
+     *
+     * @parameter expression="${ruleRelease}"
+     */
+    private String ruleRelease;
+
+    /**
+     * Compile classpath of the project.
+     *
+     * @parameter expression="${project.compileClasspathElements}"
+     * @readonly
+     */
+    private List<String> classpathElements;
+
+    /**
+     * Keep the access token in tokenCacheFile as well, so that later builds do not have to sign in again.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean cacheTokenInFile;
+
+    /**
+     * File the access tokens are kept in, encrypted with the password of the user.
+     *
+     * @parameter default-value="${user.home}/.light/token-cache"
+     */
+    private File tokenCacheFile;
+
+    /**
+     * Execution request of the running build. All modules of a build share it, so it tells the build apart from
+     * earlier ones when Maven is embedded and runs several builds in one JVM.
+     *
+     * @parameter expression="${session.request}"
+     * @readonly
+     */
+    private Object buildRequest;
+
+    ContentLoader loader = null;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        loader = createLoader();
+        loader.execute();
+    }
+
+    /**
+     * Create a loader of the content types configured with the parameters of the goal.
+     */
+    ContentLoader createLoader() throws MojoExecutionException {
+        ContentLoader loader = new ContentLoader(getLog(), "content", outputDirectory);
+        for (ContentType type : createTypes()) {
+            loader.addType(type);
+        }
+        loader.setSources(getSourceRoots(), includes, excludes, encoding);
+        loader.setServer(serverUrl, serverUser, serverPass, clientId, buildRequest);
+        loader.setTokenCacheFile(cacheTokenInFile ? tokenCacheFile : null);
+        loader.setParser(parserThreads, parserQueueSize);
+        loader.setUploads(maxConcurrentUploads, batchSize, maxBatchBytes, keepAliveMillis);
+        loader.setCompression(requestCompression, compressMinBytes);
+        loader.setRetry(maxRetries, retryBackoffMillis, maxRetryBackoffMillis);
+        loader.setSql(sqlFormat, sqlDialect, sqlBatchSize, sqlGzip, sqlSnapshot);
+        loader.setDigestMode(digestMode);
+        loader.setIncremental(incremental);
+        loader.setResume(resume);
+        loader.setVerbose(verbose);
+        return loader;
+    }
+
+    /**
+     * Find the content types: the ones registered as services and the configured JSON types, narrowed down to
+     * the ones named in types. The built in types get the parameters of the goal.
+     */
+    List<ContentType> createTypes() throws MojoExecutionException {
+        List<ContentType> all = new ArrayList<ContentType>();
+        for (ContentType type : ServiceLoader.load(ContentType.class, getClass().getClassLoader())) {
+            all.add(type);
+        }
+        if (jsonTypes != null) {
+            for (JsonContentType type : jsonTypes) {
+                if (!type.isValid()) {
+                    throw new MojoExecutionException("A jsonType needs a name and an importCommand");
+                }
+                all.add(type);
+            }
+        }
+        List<ContentType> list = new ArrayList<ContentType>();
+        for (ContentType type : all) {
+            if (types != null && types.length > 0 && !Arrays.asList(types).contains(type.getName())) {
+                continue;
+            }
+            if (type instanceof RuleContentType) {
+                ((RuleContentType) type).setCompile(compileRules, uploadBytecode, classpathElements, ruleRelease);
+            } else if (type instanceof PageContentType) {
+                ((PageContentType) type).setMinifyHtml(minifyHtml);
+                try {
+                    ((PageContentType) type).setPrecompress(precompress);
+                } catch (IllegalArgumentException e) {
+                    throw new MojoExecutionException(e.getMessage());
+                }
+            }
+            list.add(type);
+        }
+        return list;
+    }
+
+    List<File> getSourceRoots() {
+        List<File> list = new ArrayList<File>();
+        list.add(sourceDirectory);
+        if (includeTestSources) {
+            list.add(testSourceDirectory);
+        }
+        if (sourceRoots != null) {
+            list.addAll(Arrays.asList(sourceRoots));
+        }
+        return list;
+    }
+}
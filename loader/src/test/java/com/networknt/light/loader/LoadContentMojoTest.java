@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.loader;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class LoadContentMojoTest extends TestCase {
+
+    public LoadContentMojoTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        suite.addTestSuite(LoadContentMojoTest.class);
+        return suite;
+    }
+
+    private File root;
+    private StubLightServer server;
+    private Map<String, String> rules;
+    private Map<String, String> pages;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        root = File.createTempFile("content-loader", "");
+        root.delete();
+        root.mkdirs();
+        server = new StubLightServer();
+        writeSources();
+    }
+
+    public void tearDown() throws Exception {
+        server.stop();
+        ServerSession.closeAll();
+        delete(root);
+        super.tearDown();
+    }
+
+    public void testLoad() throws Exception {
+        LoadContentMojo mojo = createMojo();
+        set(mojo, "batchSize", 10);
+        set(mojo, "incremental", true);
+        set(mojo, "minifyHtml", true);
+        set(mojo, "uploadBytecode", true);
+        mojo.execute();
+        assertEquals(rules, server.getRules());
+        assertEquals(rules.keySet(), server.getBytecode().keySet());
+        for (Map.Entry<String, String> entry : pages.entrySet()) {
+            assertEquals(HtmlMinifier.minify(entry.getValue()), server.getPages().get(entry.getKey()));
+        }
+        assertEquals(Collections.singleton("com.example.signup"), server.getForms().keySet());
+        assertEquals(3, server.getRequests("batch"));
+        assertTrue(new File(root, "target/rule.sql").exists());
+        assertTrue(new File(root, "target/server.sql").exists());
+        assertTrue(new File(root, "target/content-load-report.json").exists());
+
+        // nothing has been touched since
+        ServerSession.closeAll();
+        mojo = createMojo();
+        set(mojo, "incremental", true);
+        set(mojo, "minifyHtml", true);
+        mojo.execute();
+        assertEquals(rules.size() + pages.size() + 1, server.getImports());
+        assertEquals(0, mojo.loader.getMetrics().get(LoadMetrics.BYTES_READ));
+    }
+
+    public void testTypes() throws Exception {
+        LoadContentMojo mojo = createMojo();
+        set(mojo, "types", new String[]{"page"});
+        mojo.execute();
+        assertTrue(server.getRules().isEmpty());
+        assertEquals(pages, server.getPages());
+        assertTrue(server.getForms().isEmpty());
+    }
+
+    public void testInvalidJsonType() throws Exception {
+        LoadContentMojo mojo = createMojo();
+        set(mojo, "jsonTypes", new JsonContentType[]{new JsonContentType()});
+        try {
+            mojo.execute();
+            fail("a jsonType without name must fail the build");
+        } catch (MojoExecutionException e) {
+            assertEquals("A jsonType needs a name and an importCommand", e.getMessage());
+        }
+    }
+
+    /**
+     * Create a mojo configured the way Maven would with the defaults of the plugin and a form type, loading to the
+     * stub server.
+     */
+    private LoadContentMojo createMojo() {
+        LoadContentMojo mojo = new LoadContentMojo();
+        set(mojo, "outputDirectory", new File(root, "target"));
+        set(mojo, "sourceDirectory", new File(root, "src"));
+        set(mojo, "testSourceDirectory", new File(root, "test"));
+        set(mojo, "encoding", "UTF-8");
+        set(mojo, "serverUrl", server.getUrl());
+        set(mojo, "serverUser", "stevehu");
+        set(mojo, "serverPass", "123456");
+        set(mojo, "clientId", "example@Browser");
+        set(mojo, "jsonTypes", new JsonContentType[]{
+                new JsonContentType("form", null, "form", "impForm", null, "id")});
+        set(mojo, "parserThreads", 4);
+        set(mojo, "parserQueueSize", 256);
+        set(mojo, "batchSize", 1);
+        set(mojo, "maxBatchBytes", 1048576L);
+        set(mojo, "sqlDialect", "ansi");
+        set(mojo, "sqlBatchSize", 1);
+        set(mojo, "maxConcurrentUploads", 4);
+        set(mojo, "keepAliveMillis", 30000L);
+        set(mojo, "requestCompression", "none");
+        set(mojo, "compressMinBytes", 1024);
+        set(mojo, "maxRetries", 3);
+        set(mojo, "retryBackoffMillis", 5L);
+        set(mojo, "maxRetryBackoffMillis", 50L);
+        set(mojo, "precompress", "none");
+        return mojo;
+    }
+
+    private static void set(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot set " + name, e);
+        }
+    }
+
+    /**
+     * Write the Rule interface and two rules, two pages, a form and a file of no type.
+     */
+    private void writeSources() throws IOException {
+        rules = new HashMap<String, String>();
+        pages = new HashMap<String, String>();
+        write("src/com/networknt/light/rule/Rule.java", "package com.networknt.light.rule;\n\n"
+                + "public interface Rule {\n}\n");
+        for (int i = 0; i < 2; i++) {
+            String source = "package com.example;\n\nimport com.networknt.light.rule.Rule;\n\npublic class Hello" + i
+                    + " implements Rule {\n}\n";
+            write("src/com/example/Hello" + i + ".java", source);
+            rules.put("com.example.Hello" + i, source);
+        }
+        for (int i = 0; i < 2; i++) {
+            String html = "<div>\n    <p>page " + i + "</p>\n</div>\n";
+            write("src/pages/page" + i + ".html", html);
+            pages.put("page" + i, html);
+        }
+        write("src/forms/app/signup.json", "{\"id\":\"com.example.signup\",\"schema\":{\"type\":\"object\"}}");
+        write("src/README.txt", "not content");
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(Digests.UTF8));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -16,22 +16,13 @@
 
 package com.networknt.light.server;
 
-import java.io.*;
+import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Scanner;
-
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.http.HttpEntity;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
+
+import com.networknt.light.loader.ContentLoader;
+import com.networknt.light.loader.PageContentType;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 
@@ -39,20 +30,14 @@ import org.apache.maven.plugin.MojoExecutionException;
  * Goal load page source code from the project source to Light Server through REST API impPage. It checks if the
  * source code has been changed.
  *
+ * The work is done by ContentLoader with PageContentType, this goal only maps its parameters.
+ *
  * @goal load
  *
  * @phase process-sources
  *  
  */
 public class LoadPageMojo extends AbstractMojo {
-    ObjectMapper mapper = new ObjectMapper();
-    CloseableHttpClient httpclient = null;
-    Map<String, String> pageMap = null;
-    String jwt = null;
-
-    private final List<String> files = new ArrayList<String>(10000);
-    private String sqlString = "";
-
     /**
      * Location of the file.
      *
@@ -122,241 +107,317 @@ public class LoadPageMojo extends AbstractMojo {
      */
     private String clientId;
 
-    @Override
-    public void execute() throws MojoExecutionException {
-        if (!ensureTargetDirectoryExists()) {
-            getLog().error("Could not create target directory");
-            return;
-        }
-        if (!sourceDirectory.exists()) {
-            getLog().error("Source directory \"" + sourceDirectory + "\" is not valid.");
-            return;
-        }
+    /**
+     * Keep the access token in tokenCacheFile as well, so that later builds do not have to sign in again until it
+     * expires. Within one build the token is always shared by all modules.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean cacheTokenInFile;
 
-        httpclient = HttpClients.createDefault();
+    /**
+     * File the access tokens are kept in, encrypted with the password of the user.
+     *
+     * @parameter default-value="${user.home}/.light/token-cache"
+     */
+    private File tokenCacheFile;
 
-        login();
+    /**
+     * Number of threads that read and compare page files in parallel.
+     *
+     * @parameter default-value="4"
+     */
+    private int parserThreads;
 
-        // get page id and content map from the server in order to compare.
-        pageMap = getPageMap();
+    /**
+     * Maximum number of parsed files waiting to be uploaded. The directory walk blocks once this many files
+     * are pending, so memory stays bounded for any size of source tree.
+     *
+     * @parameter default-value="256"
+     */
+    private int parserQueueSize;
 
-        fillListWithAllFilesRecursiveTask(sourceDirectory, files);
-        //fillListWithAllFilesRecursiveTask(testSourceDirectory, files);
+    /**
+     * Glob patterns of the files to load, relative to each source root. Defaults to **&#47;*.html.
+     *
+     * @parameter
+     */
+    private String[] includes;
 
-        for (final String filePath : files) {
-            // load server file and import to Light Server
-            parsePageFile(filePath);
-        }
+    /**
+     * Glob patterns of the files to leave out, relative to each source root. Directories matching a pattern that
+     * ends with /** are not walked at all.
+     *
+     * @parameter
+     */
+    private String[] excludes;
 
-        // write a sql out put file in case you are using the server engine with SQL database.
-        writeSqlToOutputFile();
+    /**
+     * Load pages from the test source directory as well.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean includeTestSources;
 
-        if (httpclient != null) {
-            try {
-                httpclient.close();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
-    }
+    /**
+     * Additional source roots to load pages from, for example generated sources.
+     *
+     * @parameter
+     */
+    private File[] sourceRoots;
 
-    private boolean ensureTargetDirectoryExists() {
-        if (outputDirectory.exists()) {
-            return true;
-        }
-        return outputDirectory.mkdirs();
-    }
+    /**
+     * Number of pages sent to impPage in one request. With a value greater than 1 the commands are posted to the
+     * server as a JSON array and the server answers with one result per item; an item has failed if its result
+     * has an error field. If the server rejects the array form, the plugin falls back to one request per page.
+     *
+     * @parameter default-value="1"
+     */
+    private int batchSize;
 
-    public void parsePageFile(final String filePath) {
-        System.out.println("Process file = " + filePath);
-        StringBuilder content = new StringBuilder();
-        try {
-            File file = new File(filePath);
-            String id = getFileName(file);
-            if (".html".equals(getExtension(file))) {
-                final Scanner scan = new Scanner(file, encoding);
-                String line = scan.nextLine();
-                while (scan.hasNext()) {
-                    content.append(line);
-                    content.append("\n");
-                    line = scan.nextLine();
-                }
-                content.append(line);
-                content.append("\n");
-
-                // only import if content has been changed after comparing with server
-                if(!content.toString().equals(pageMap.get(id))) {
-                    impPage(id, content.toString());
-                    // generate SQL insert statements
-
-                    String sql = "INSERT INTO PAGE(id, content) VALUES ('" + id + "', '" + content.toString().replaceAll("'", "''") + "');\n";
-                    sqlString += sql;
-                }
+    /**
+     * Maximum size in bytes of one batch request body.
+     *
+     * @parameter default-value="1048576"
+     */
+    private long maxBatchBytes;
 
-            }
-        } catch (final IOException e) {
-            getLog().error(e.getMessage());
-        }
-    }
+    /**
+     * Compare SHA-256 digests instead of full content. The server is asked for a map of page id to digest with
+     * getPageDigestMap; if it does not support it, the full map is downloaded once and reduced to digests.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean digestMode;
 
-    private void login() {
-        // login to the server
-        Map<String, Object> inputMap = new HashMap<String, Object>();
-        inputMap.put("category", "user");
-        inputMap.put("name", "signInUser");
-        inputMap.put("readOnly", false);
-        Map<String, Object> data = new HashMap<String, Object>();
-        data.put("userIdEmail", serverUser);
-        data.put("password", serverPass);
-        data.put("rememberMe", true);
-        data.put("clientId", clientId);
-        inputMap.put("data", data);
-
-        CloseableHttpResponse response = null;
-        try {
-            HttpPost httpPost = new HttpPost(serverUrl + "/api/rs");
-            StringEntity input = new StringEntity(mapper.writeValueAsString(inputMap));
-            input.setContentType("application/json");
-            httpPost.setEntity(input);
-            response = httpclient.execute(httpPost);
-            HttpEntity entity = response.getEntity();
-            BufferedReader rd = new BufferedReader(new InputStreamReader(entity.getContent()));
-            String json = "";
-            String line = "";
-            while ((line = rd.readLine()) != null) {
-                json = json + line;
-            }
-            Map<String, Object> jsonMap = mapper.readValue(json,
-                    new TypeReference<HashMap<String, Object>>() {
-                    });
-            jwt = (String)jsonMap.get("accessToken");
-            EntityUtils.consume(entity);
-            System.out.println("Logged in successfully");
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            if (response != null) {
-                try {
-                    response.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-        }
-    }
+    /**
+     * Skip files that have not been touched since the last load to the same server. A manifest with path, size,
+     * modification time and digest of every file in sync with the server is kept in the output directory and
+     * replaced at the end of each run. Only use it if nobody else updates the pages on the server.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean incremental;
 
     /**
-     * Get all pages from the server and construct a map in order to compare content
-     * to detect changes or not.
+     * SQL dialect of server.sql: ansi for plain INSERT statements, or postgresql, mysql, h2 or sqlserver for
+     * upserts so that the file can be imported again without duplicate key errors.
      *
-     * @return Map<String, String>
+     * @parameter default-value="ansi"
      */
-    private Map<String, String> getPageMap() {
-        Map<String, String> map = null;
+    private String sqlDialect;
 
-        Map<String, Object> inputMap = new HashMap<String, Object>();
-        inputMap.put("category", "page");
-        inputMap.put("name", "getPageMap");
-        inputMap.put("readOnly", true);
+    /**
+     * Number of rows per INSERT or MERGE statement in server.sql.
+     *
+     * @parameter default-value="1"
+     */
+    private int sqlBatchSize;
 
-        CloseableHttpResponse response = null;
-        try {
-            HttpPost httpPost = new HttpPost(serverUrl + "/api/rs");
-            httpPost.addHeader("Authorization", "Bearer " + jwt);
-            StringEntity input = new StringEntity(mapper.writeValueAsString(inputMap));
-            input.setContentType("application/json");
-            httpPost.setEntity(input);
-            response = httpclient.execute(httpPost);
-            HttpEntity entity = response.getEntity();
-            BufferedReader rd = new BufferedReader(new InputStreamReader(entity.getContent()));
-            String json = "";
-            String line = "";
-            while ((line = rd.readLine()) != null) {
-                json = json + line;
-            }
-            EntityUtils.consume(entity);
-            System.out.println("Got page map from server");
-            map = mapper.readValue(json,
-                    new TypeReference<HashMap<String, String>>() {
-                    });
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            if (response != null) {
-                try {
-                    response.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-        }
-        return map;
+    /**
+     * Write server.sql.gz instead of server.sql.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean sqlGzip;
+
+    /**
+     * Format of the SQL output: insert for server.sql in sqlDialect, copy for server.csv to be loaded into
+     * PostgreSQL with COPY, or loaddata for server.tsv to be loaded into MySQL with LOAD DATA. The bulk load formats
+     * come with server-load.sql that loads the file and replaces pages already in the table; run it from the output
+     * directory.
+     *
+     * @parameter default-value="insert"
+     */
+    private String sqlFormat;
+
+    /**
+     * Write every page to the SQL output, not only the ones that changed, so that an empty database can be filled
+     * with one bulk load. Pages are still only uploaded if they changed.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean sqlSnapshot;
+
+    /**
+     * Number of import requests sent to the server at the same time. Each one uses its own pooled keep-alive
+     * connection.
+     *
+     * @parameter default-value="1"
+     */
+    private int maxConcurrentUploads;
+
+    /**
+     * How long in milliseconds an idle connection is kept open if the server does not say otherwise.
+     *
+     * @parameter default-value="30000"
+     */
+    private long keepAliveMillis;
+
+    /**
+     * Compression of request bodies: none, gzip or snappy. The server has to accept the matching
+     * Content-Encoding. Responses are always requested with Accept-Encoding gzip, deflate.
+     *
+     * @parameter default-value="none"
+     */
+    private String requestCompression;
+
+    /**
+     * Smallest request body in bytes that is compressed. Smaller bodies are sent as they are.
+     *
+     * @parameter default-value="1024"
+     */
+    private int compressMinBytes;
+
+    /**
+     * Number of times a request is retried after an I/O error or a busy server (408, 429, 502, 503, 504).
+     *
+     * @parameter default-value="3"
+     */
+    private int maxRetries;
+
+    /**
+     * Delay in milliseconds before the first retry. It doubles with each retry up to maxRetryBackoffMillis.
+     *
+     * @parameter default-value="500"
+     */
+    private long retryBackoffMillis;
+
+    /**
+     * Longest delay in milliseconds between two retries.
+     *
+     * @parameter default-value="30000"
+     */
+    private long maxRetryBackoffMillis;
+
+    /**
+     * Only upload what was left unfinished by the last run to the same server, as recorded in the upload journal
+     * in the output directory. Nothing is compared with the server and the manifest is left alone.
+     *
+     * @parameter expression="${resume}" default-value="false"
+     */
+    private boolean resume;
+
+    /**
+     * Log every file that is processed and every page that is loaded. Without it only the summary of the run is
+     * logged, the numbers of each phase and endpoint are in page-load-report.json in the output directory.
+     *
+     * @parameter expression="${verbose}" default-value="false"
+     */
+    private boolean verbose;
+
+    /**
+     * Minify pages before they are compared with the server and uploaded. Comments and white space that is not
+     * rendered are removed, from inline style and script blocks as well. The server is compared with the minified
+     * form, so every page is uploaded once after this is turned on.
+     *
+     * @parameter expression="${minifyHtml}" default-value="false"
+     */
+    private boolean minifyHtml;
+
+    /**
+     * Compress each uploaded page at build time so that the server can serve the stored bytes: none or gzip. The
+     * variant is sent base64 encoded in the variants field of impPage, keyed by its encoding, and written to the
+     * content_gzip column of server.sql. A page already on the server gets its variant the next time it changes.
+     *
+     * @parameter expression="${precompress}" default-value="none"
+     */
+    private String precompress;
+
+    /**
+     * Execution request of the running build. All modules of a build share it, so it tells the build apart from
+     * earlier ones when Maven is embedded and runs several builds in one JVM.
+     *
+     * @parameter expression="${session.request}"
+     * @readonly
+     */
+    private Object buildRequest;
+
+    ContentLoader loader = null;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        loader = createLoader();
+        loader.execute();
+    }
+
+    /**
+     * Compare the sources with the server like load, but write the changed pages to a change set for the apply goal
+     * instead of uploading them.
+     *
+     * @param file change set file
+     * @throws MojoExecutionException
+     */
+    void plan(File file) throws MojoExecutionException {
+        loader = createLoader();
+        loader.plan(file);
     }
 
-    private void impPage(String id, String content) {
+    /**
+     * Upload the pages of a change set written by the plan goal. No sources are read and nothing is compared with the
+     * server, every page in the change set is sent.
+     *
+     * @param file change set file
+     * @throws MojoExecutionException
+     */
+    void apply(File file) throws MojoExecutionException {
+        loader = createLoader();
+        loader.apply(file);
+    }
 
-        Map<String, Object> inputMap = new HashMap<String, Object>();
-        inputMap.put("category", "page");
-        inputMap.put("name", "impPage");
-        inputMap.put("readOnly", false);
-        Map<String, Object> data = new HashMap<String, Object>();
-        data.put("id", id);
-        data.put("content", content);
-        inputMap.put("data", data);
+    /**
+     * Load once and then push every page saved after that, until the thread is interrupted.
+     *
+     * @param debounceMillis time without further changes before a burst of edits is pushed
+     * @throws MojoExecutionException
+     */
+    void watch(long debounceMillis) throws MojoExecutionException {
+        loader = createLoader();
+        loader.watch(debounceMillis);
+    }
 
-        CloseableHttpResponse response = null;
+    /**
+     * Create a loader of pages configured with the parameters of the goal.
+     */
+    ContentLoader createLoader() throws MojoExecutionException {
+        PageContentType type = new PageContentType();
+        type.setMinifyHtml(minifyHtml);
         try {
-            HttpPost httpPost = new HttpPost(serverUrl + "/api/rs");
-            httpPost.addHeader("Authorization", "Bearer " + jwt);
-            StringEntity input = new StringEntity(mapper.writeValueAsString(inputMap));
-            input.setContentType("application/json");
-            httpPost.setEntity(input);
-            response = httpclient.execute(httpPost);
-            HttpEntity entity = response.getEntity();
-            BufferedReader rd = new BufferedReader(new InputStreamReader(entity.getContent()));
-            String json = "";
-            String line = "";
-            while ((line = rd.readLine()) != null) {
-                json = json + line;
-            }
-            EntityUtils.consume(entity);
-            System.out.println("Loaded " + id);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            if (response != null) {
-                try {
-                    response.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
+            type.setPrecompress(precompress);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage());
         }
+        ContentLoader loader = new ContentLoader(getLog(), "page", outputDirectory);
+        loader.addType(type);
+        loader.setSources(getSourceRoots(), includes, excludes, encoding);
+        loader.setServer(serverUrl, serverUser, serverPass, clientId, buildRequest);
+        loader.setTokenCacheFile(cacheTokenInFile ? tokenCacheFile : null);
+        loader.setParser(parserThreads, parserQueueSize);
+        loader.setUploads(maxConcurrentUploads, batchSize, maxBatchBytes, keepAliveMillis);
+        loader.setCompression(requestCompression, compressMinBytes);
+        loader.setRetry(maxRetries, retryBackoffMillis, maxRetryBackoffMillis);
+        loader.setSql(sqlFormat, sqlDialect, sqlBatchSize, sqlGzip, sqlSnapshot);
+        loader.setDigestMode(digestMode);
+        loader.setIncremental(incremental);
+        loader.setResume(resume);
+        loader.setVerbose(verbose);
+        return loader;
     }
 
-    private void writeSqlToOutputFile() {
-        OutputStreamWriter out = null;
-        try {
-            final StringBuffer path = new StringBuffer();
-            path.append(outputDirectory);
-            path.append(System.getProperty("file.separator"));
-            path.append("server.sql");
-
-            final FileOutputStream fos = new FileOutputStream(path.toString());
-            out = new OutputStreamWriter(fos, encoding);
-            out.write(sqlString);
-
-        } catch (final IOException e) {
-            getLog().error(e.getMessage());
-        } finally {
-            if (null != out) {
-                try {
-                    out.close();
-                } catch (final IOException e) {
-                    getLog().error(e.getMessage());
-                }
-            }
+    List<File> getSourceRoots() {
+        List<File> roots = new ArrayList<File>();
+        roots.add(sourceDirectory);
+        if (includeTestSources) {
+            roots.add(testSourceDirectory);
+        }
+        if (sourceRoots != null) {
+            roots.addAll(Arrays.asList(sourceRoots));
         }
+        return roots;
+    }
+
+    public void parsePageFile(final String filePath) throws MojoExecutionException {
+        loader.parseFile(filePath);
     }
 
     /*
@@ -394,4 +455,4 @@ public class LoadPageMojo extends AbstractMojo {
             return filename.substring(dotPos);
         }
     }
-}
\ No newline at end of file
+}
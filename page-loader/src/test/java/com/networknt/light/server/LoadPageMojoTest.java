@@ -16,10 +16,27 @@
 
 package com.networknt.light.server;
 
+import com.networknt.light.loader.Digests;
+import com.networknt.light.loader.HtmlMinifier;
+import com.networknt.light.loader.ServerSession;
+import com.networknt.light.loader.SourceReader;
+import com.networknt.light.loader.StubLightServer;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
 /**
  * Created by steve on 04/08/14.
  */
@@ -35,15 +52,343 @@ public class LoadPageMojoTest extends TestCase {
         return suite;
     }
 
+    /**
+     * Number of source files of the end to end tests, raise it with -Dloadtest.files=100000 for a load test.
+     */
+    private static final int FILES = Integer.getInteger("loadtest.files", 200);
+
+    private File root;
+    private StubLightServer server;
+
     public void setUp() throws Exception {
         super.setUp();
+        root = File.createTempFile("page-loader", "");
+        root.delete();
+        root.mkdirs();
+        server = new StubLightServer();
     }
 
     public void tearDown() throws Exception {
+        server.stop();
+        ServerSession.closeAll();
+        delete(root);
         super.tearDown();
     }
 
     public void testNothing() {
         assertTrue(true);
     }
+
+    public void testLoad() throws Exception {
+        Map<String, String> pages = writeSources(FILES);
+        createMojo().execute();
+        assertEquals(pages, server.getPages());
+        assertEquals(pages.size(), server.getImports());
+        assertTrue(new File(root, "target/page-load-report.json").exists());
+
+        // a new build compares with the server and has nothing to upload
+        ServerSession.closeAll();
+        createMojo().execute();
+        assertEquals(pages.size(), server.getImports());
+        assertEquals(2, server.getRequests("getPageMap"));
+    }
+
+    public void testSlowAndFailingServer() throws Exception {
+        Map<String, String> pages = writeSources(FILES);
+        server.setLatency(5, 20);
+        server.setErrorRate(0.2);
+        LoadPageMojo mojo = createMojo();
+        set(mojo, "batchSize", 10);
+        set(mojo, "maxConcurrentUploads", 8);
+        set(mojo, "maxRetries", 20);
+        set(mojo, "requestCompression", "gzip");
+        long started = System.currentTimeMillis();
+        mojo.execute();
+        System.out.println(FILES + " files over a slow link in " + (System.currentTimeMillis() - started) + " ms");
+        assertEquals(pages, server.getPages());
+        // with one request in five failing there is almost always a retry, but not always
+        assertTrue(server.getRequests("batch") >= (pages.size() + 9) / 10);
+        assertTrue(server.getMaxInFlight() > 1);
+    }
+
+    public void testBatchFailureKeepsBatching() throws Exception {
+        Map<String, String> pages = writeSources(FILES);
+        server.failNext("batch", 1);
+        LoadPageMojo mojo = createMojo();
+        set(mojo, "batchSize", 10);
+        set(mojo, "maxRetries", 0);
+        mojo.execute();
+        assertEquals(pages, server.getPages());
+        // the batch answered with 503 is sent item by item, the next one is a batch again
+        assertEquals((pages.size() + 9) / 10, server.getRequests("batch"));
+        assertTrue(mojo.loader.isBatchSupported());
+    }
+
+    public void testThroughputLimit() throws Exception {
+        Map<String, String> pages = writeSources(FILES);
+        long bytes = 0;
+        for (String source : pages.values()) {
+            bytes += source.length();
+        }
+        server.setBytesPerSecond(4 * bytes);
+        long started = System.nanoTime();
+        createMojo().execute();
+        long elapsed = (System.nanoTime() - started) / 1000000;
+        assertEquals(pages, server.getPages());
+        // every page had to go over the link
+        assertTrue(elapsed + " ms", elapsed >= 250);
+    }
+
+    public void testDigestModeWithoutServerSupport() throws Exception {
+        Map<String, String> pages = writeSources(FILES);
+        server.setDigestMapSupported(false);
+        server.setBatchSupported(false);
+        LoadPageMojo mojo = createMojo();
+        set(mojo, "digestMode", true);
+        set(mojo, "batchSize", 10);
+        mojo.execute();
+        assertEquals(pages, server.getPages());
+
+        // only the changed page is sent again
+        String id = pages.keySet().iterator().next();
+        File file = new File(root, "src/" + id.substring(0, id.indexOf('-')) + "/" + id + ".html");
+        String changed = pages.get(id) + "<!-- changed -->\n";
+        write(file, changed);
+        ServerSession.closeAll();
+        mojo = createMojo();
+        set(mojo, "digestMode", true);
+        mojo.execute();
+        assertEquals(changed, server.getPages().get(id));
+        assertEquals(pages.size() + 1, server.getImports());
+    }
+
+    public void testRejectedUpload() throws Exception {
+        Map<String, String> pages = writeSources(FILES);
+        String id = pages.keySet().iterator().next();
+        server.reject(id);
+        LoadPageMojo mojo = createMojo();
+        // the default, uploads run on the calling thread
+        set(mojo, "maxConcurrentUploads", 1);
+        mojo.execute();
+        assertFalse(server.getPages().containsKey(id));
+        // the shared map must not take the page as being on the server
+        assertFalse(mojo.loader.getServerMap("page").containsKey(id));
+        assertEquals(pages.size() - 1, mojo.loader.getServerMap("page").size());
+
+        // so a later module of the same build tries it again
+        server.accept(id);
+        createMojo().execute();
+        assertEquals(pages, server.getPages());
+        assertEquals(1, server.getRequests("getPageMap"));
+    }
+
+    public void testBuildScopedSession() throws Exception {
+        Map<String, String> pages = writeSources(FILES);
+        Object build = new Object();
+        LoadPageMojo mojo = createMojo();
+        set(mojo, "buildRequest", build);
+        set(mojo, "maxConcurrentUploads", 2);
+        mojo.execute();
+        ServerSession session = mojo.loader.getSession();
+        assertEquals(2, session.getPoolSize());
+
+        // a later module of the build reuses the map and grows the pool for its uploads
+        mojo = createMojo();
+        set(mojo, "buildRequest", build);
+        set(mojo, "maxConcurrentUploads", 8);
+        mojo.execute();
+        assertSame(session, mojo.loader.getSession());
+        assertEquals(8, session.getPoolSize());
+        assertEquals(1, server.getRequests("getPageMap"));
+
+        // the next build in the same JVM starts over
+        mojo = createMojo();
+        set(mojo, "buildRequest", new Object());
+        mojo.execute();
+        assertNotSame(session, mojo.loader.getSession());
+        assertEquals(0, session.getPoolSize());
+        assertEquals(2, server.getRequests("getPageMap"));
+        assertEquals(pages, server.getPages());
+    }
+
+    public void testPlanAndApply() throws Exception {
+        Map<String, String> pages = writeSources(FILES);
+        File changes = new File(root, "target/page-changes.lcs");
+        createMojo().plan(changes);
+        assertTrue(changes.exists());
+        assertEquals(0, server.getImports());
+        assertEquals(1, server.getRequests("getPageMap"));
+
+        // apply needs neither the sources nor the map of the server
+        delete(new File(root, "src"));
+        ServerSession.closeAll();
+        LoadPageMojo mojo = createMojo();
+        set(mojo, "maxConcurrentUploads", 8);
+        mojo.apply(changes);
+        assertEquals(pages, server.getPages());
+        assertEquals(pages.size(), server.getImports());
+        assertEquals(1, server.getRequests("getPageMap"));
+    }
+
+    public void testMinifyAndPrecompress() throws Exception {
+        Map<String, String> pages = writeSources(FILES);
+        Map<String, String> minified = new HashMap<String, String>();
+        for (Map.Entry<String, String> entry : pages.entrySet()) {
+            minified.put(entry.getKey(), HtmlMinifier.minify(entry.getValue()));
+        }
+        LoadPageMojo mojo = createMojo();
+        set(mojo, "minifyHtml", true);
+        set(mojo, "precompress", "gzip");
+        set(mojo, "incremental", true);
+        mojo.execute();
+        assertEquals(minified, server.getPages());
+        Map<String, byte[]> variants = server.getVariants("gzip");
+        assertEquals(pages.size(), variants.size());
+        for (Map.Entry<String, byte[]> entry : variants.entrySet()) {
+            assertEquals(minified.get(entry.getKey()), gunzip(entry.getValue()));
+        }
+        String sql = new String(SourceReader.readAll(new File(root, "target/server.sql")), Digests.UTF8);
+        assertTrue(sql.startsWith("INSERT INTO PAGE(id, content, content_gzip) VALUES ('d"));
+
+        // the minified pages are in sync, and so are they without the manifest
+        ServerSession.closeAll();
+        mojo = createMojo();
+        set(mojo, "minifyHtml", true);
+        mojo.execute();
+        assertEquals(pages.size(), server.getImports());
+
+        // without minification every page is different from the server again
+        ServerSession.closeAll();
+        createMojo().execute();
+        assertEquals(pages, server.getPages());
+        assertEquals(2 * pages.size(), server.getImports());
+    }
+
+    public void testSqlSnapshot() throws Exception {
+        Map<String, String> pages = writeSources(FILES);
+        LoadPageMojo mojo = createMojo();
+        set(mojo, "sqlFormat", "loaddata");
+        set(mojo, "incremental", true);
+        mojo.execute();
+        // a header and one line per page
+        assertEquals(pages.size() + 1, countLines(new File(root, "target/server.tsv")));
+        assertTrue(new File(root, "target/server-load.sql").exists());
+
+        // only the changed page is uploaded, but all of them are in the snapshot
+        String id = pages.keySet().iterator().next();
+        write(new File(root, "src/" + id.substring(0, id.indexOf('-')) + "/" + id + ".html"),
+                pages.get(id) + "<p>changed</p>\n");
+        ServerSession.closeAll();
+        mojo = createMojo();
+        set(mojo, "sqlFormat", "loaddata");
+        set(mojo, "sqlSnapshot", true);
+        set(mojo, "incremental", true);
+        mojo.execute();
+        assertEquals(pages.size() + 1, server.getImports());
+        assertEquals(pages.size() + 1, countLines(new File(root, "target/server.tsv")));
+    }
+
+    private static int countLines(File file) throws IOException {
+        int lines = 0;
+        for (byte b : SourceReader.readAll(file)) {
+            if (b == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return new String(out.toByteArray(), Digests.UTF8);
+    }
+
+    /**
+     * Create a mojo configured the way Maven would with the defaults of the plugin, loading to the stub server.
+     */
+    private LoadPageMojo createMojo() {
+        LoadPageMojo mojo = new LoadPageMojo();
+        set(mojo, "outputDirectory", new File(root, "target"));
+        set(mojo, "sourceDirectory", new File(root, "src"));
+        set(mojo, "testSourceDirectory", new File(root, "test"));
+        set(mojo, "encoding", "UTF-8");
+        set(mojo, "serverUrl", server.getUrl());
+        set(mojo, "serverUser", "stevehu");
+        set(mojo, "serverPass", "123456");
+        set(mojo, "clientId", "example@Browser");
+        set(mojo, "tokenCacheFile", new File(root, "token-cache"));
+        set(mojo, "parserThreads", 4);
+        set(mojo, "parserQueueSize", 256);
+        set(mojo, "batchSize", 1);
+        set(mojo, "maxBatchBytes", 1048576L);
+        set(mojo, "sqlDialect", "ansi");
+        set(mojo, "sqlBatchSize", 1);
+        set(mojo, "maxConcurrentUploads", 4);
+        set(mojo, "keepAliveMillis", 30000L);
+        set(mojo, "requestCompression", "none");
+        set(mojo, "compressMinBytes", 1024);
+        set(mojo, "maxRetries", 3);
+        set(mojo, "retryBackoffMillis", 5L);
+        set(mojo, "maxRetryBackoffMillis", 50L);
+        return mojo;
+    }
+
+    private static void set(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot set " + name, e);
+        }
+    }
+
+    /**
+     * Write a tree of pages, 50 per directory.
+     *
+     * @return content of the pages by id
+     */
+    private Map<String, String> writeSources(int files) throws IOException {
+        Map<String, String> pages = new HashMap<String, String>();
+        for (int i = 0; i < files; i++) {
+            String directory = "d" + (i / 50);
+            String id = directory + "-page" + i;
+            StringBuilder sb = new StringBuilder();
+            sb.append("<div class=\"container\" ng-controller=\"").append(id).append("Ctrl\">\n");
+            for (int k = 0; k < 10 + i % 40; k++) {
+                sb.append("  <p>").append(Integer.toHexString(i * 31 + k)).append("</p>\n");
+            }
+            sb.append("</div>\n");
+            write(new File(root, "src/" + directory + "/" + id + ".html"), sb.toString());
+            pages.put(id, sb.toString());
+        }
+        return pages;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(Digests.UTF8));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
 }
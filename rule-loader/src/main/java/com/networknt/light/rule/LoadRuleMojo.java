@@ -16,29 +16,13 @@
 
 package com.networknt.light.rule;
 
-import java.io.*;
+import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Scanner;
-
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.orientechnologies.orient.core.db.document.ODatabaseDocumentPool;
-import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
-import com.orientechnologies.orient.core.metadata.schema.OClass;
-import com.orientechnologies.orient.core.metadata.schema.OSchema;
-import com.orientechnologies.orient.core.record.impl.ODocument;
-import com.orientechnologies.orient.core.metadata.schema.OType;
-import com.orientechnologies.orient.core.sql.query.OSQLSynchQuery;
-import org.apache.http.HttpEntity;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
+
+import com.networknt.light.loader.ContentLoader;
+import com.networknt.light.loader.RuleContentType;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 
@@ -46,20 +30,17 @@ import org.apache.maven.plugin.MojoExecutionException;
  * Goal load java source code from the project source to Light Server through REST API impRule. It checks if the
  * class implements com.networknt.light.rule.Rule interface and if source code has been changed.
  *
+ * The work is done by ContentLoader with RuleContentType, this goal only maps its parameters and adds the
+ * OrientDB store.
+ *
  * @goal load
  *
  * @phase process-sources
+ *
+ * @requiresDependencyResolution compile
  *  
  */
 public class LoadRuleMojo extends AbstractMojo {
-    ObjectMapper mapper = new ObjectMapper();
-    CloseableHttpClient httpclient = null;
-    Map<String, String> ruleMap = null;
-    String jwt = null;
-
-    private final List<String> files = new ArrayList<String>(10000);
-    private String sqlString = "";
-
     /**
      * Location of the file.
      *
@@ -129,254 +110,382 @@ public class LoadRuleMojo extends AbstractMojo {
      */
     private String clientId;
 
-    @Override
-    public void execute() throws MojoExecutionException {
-        if (!ensureTargetDirectoryExists()) {
-            getLog().error("Could not create target directory");
-            return;
-        }
-        if (!sourceDirectory.exists()) {
-            getLog().error("Source directory \"" + sourceDirectory + "\" is not valid.");
-            return;
-        }
+    /**
+     * Keep the access token in tokenCacheFile as well, so that later builds do not have to sign in again until it
+     * expires. Within one build the token is always shared by all modules.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean cacheTokenInFile;
 
-        httpclient = HttpClients.createDefault();
+    /**
+     * File the access tokens are kept in, encrypted with the password of the user.
+     *
+     * @parameter default-value="${user.home}/.light/token-cache"
+     */
+    private File tokenCacheFile;
 
-        login();
+    /**
+     * Number of threads that read and compare source files in parallel.
+     *
+     * @parameter default-value="4"
+     */
+    private int parserThreads;
 
-        // get ruleClass and sourceCode map from the server in order to compare.
-        ruleMap = getRuleMap();
+    /**
+     * Maximum number of parsed files waiting to be uploaded. The directory walk blocks once this many files
+     * are pending, so memory stays bounded for any size of source tree.
+     *
+     * @parameter default-value="256"
+     */
+    private int parserQueueSize;
 
-        fillListWithAllFilesRecursiveTask(sourceDirectory, files);
-        //fillListWithAllFilesRecursiveTask(testSourceDirectory, files);
+    /**
+     * Glob patterns of the files to load, relative to each source root. Defaults to **&#47;*.java, only Java
+     * sources are ever rules.
+     *
+     * @parameter
+     */
+    private String[] includes;
 
-        for (final String filePath : files) {
-            // load rule file and import to Light Server
-            parseRuleFile(filePath);
-        }
+    /**
+     * Glob patterns of the files to leave out, relative to each source root. Directories matching a pattern that
+     * ends with /** are not walked at all.
+     *
+     * @parameter
+     */
+    private String[] excludes;
 
-        // write a sql out put file in case you are using the rule engine with SQL database.
-        writeSqlToOutputFile();
+    /**
+     * Load rules from the test source directory as well.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean includeTestSources;
 
-        if (httpclient != null) {
-            try {
-                httpclient.close();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
+    /**
+     * Additional source roots to load rules from, for example generated sources.
+     *
+     * @parameter
+     */
+    private File[] sourceRoots;
+
+    /**
+     * Number of rules sent to impRule in one request. With a value greater than 1 the commands are posted to the
+     * server as a JSON array and the server answers with one result per item; an item has failed if its result
+     * has an error field. If the server rejects the array form, the plugin falls back to one request per rule.
+     *
+     * @parameter default-value="1"
+     */
+    private int batchSize;
+
+    /**
+     * Maximum size in bytes of one batch request body.
+     *
+     * @parameter default-value="1048576"
+     */
+    private long maxBatchBytes;
+
+    /**
+     * Compare SHA-256 digests instead of full content. The server is asked for a map of rule to digest with
+     * getRuleDigestMap; if it does not support it, the full map is downloaded once and reduced to digests.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean digestMode;
+
+    /**
+     * Skip files that have not been touched since the last load to the same server. A manifest with path, size,
+     * modification time and digest of every file in sync with the server is kept in the output directory and
+     * replaced at the end of each run. Only use it if nobody else updates the rules on the server.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean incremental;
+
+    /**
+     * SQL dialect of rule.sql: ansi for plain INSERT statements, or postgresql, mysql, h2 or sqlserver for
+     * upserts so that the file can be imported again without duplicate key errors.
+     *
+     * @parameter default-value="ansi"
+     */
+    private String sqlDialect;
+
+    /**
+     * Number of rows per INSERT or MERGE statement in rule.sql.
+     *
+     * @parameter default-value="1"
+     */
+    private int sqlBatchSize;
+
+    /**
+     * Write rule.sql.gz instead of rule.sql.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean sqlGzip;
+
+    /**
+     * Format of the SQL output: insert for rule.sql in sqlDialect, copy for rule.csv to be loaded into PostgreSQL
+     * with COPY, or loaddata for rule.tsv to be loaded into MySQL with LOAD DATA. The bulk load formats come with
+     * rule-load.sql that loads the file and replaces rules already in the table; run it from the output directory.
+     *
+     * @parameter default-value="insert"
+     */
+    private String sqlFormat;
+
+    /**
+     * Write every rule to the SQL output, not only the ones that changed, so that an empty database can be filled
+     * with one bulk load. Rules are still only uploaded if they changed.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean sqlSnapshot;
+
+    /**
+     * Number of import requests sent to the server at the same time. Each one uses its own pooled keep-alive
+     * connection.
+     *
+     * @parameter default-value="1"
+     */
+    private int maxConcurrentUploads;
+
+    /**
+     * How long in milliseconds an idle connection is kept open if the server does not say otherwise.
+     *
+     * @parameter default-value="30000"
+     */
+    private long keepAliveMillis;
+
+    /**
+     * Compression of request bodies: none, gzip or snappy. The server has to accept the matching
+     * Content-Encoding. Responses are always requested with Accept-Encoding gzip, deflate.
+     *
+     * @parameter default-value="none"
+     */
+    private String requestCompression;
+
+    /**
+     * Smallest request body in bytes that is compressed. Smaller bodies are sent as they are.
+     *
+     * @parameter default-value="1024"
+     */
+    private int compressMinBytes;
+
+    /**
+     * Number of times a request is retried after an I/O error or a busy server (408, 429, 502, 503, 504).
+     *
+     * @parameter default-value="3"
+     */
+    private int maxRetries;
+
+    /**
+     * Delay in milliseconds before the first retry. It doubles with each retry up to maxRetryBackoffMillis.
+     *
+     * @parameter default-value="500"
+     */
+    private long retryBackoffMillis;
+
+    /**
+     * Longest delay in milliseconds between two retries.
+     *
+     * @parameter default-value="30000"
+     */
+    private long maxRetryBackoffMillis;
+
+    /**
+     * Only upload what was left unfinished by the last run to the same server, as recorded in the upload journal
+     * in the output directory. Nothing is compared with the server and the manifest is left alone.
+     *
+     * @parameter expression="${resume}" default-value="false"
+     */
+    private boolean resume;
+
+    /**
+     * Log every file that is processed and every rule that is loaded. Without it only the summary of the run is
+     * logged, the numbers of each phase and endpoint are in rule-load-report.json in the output directory.
+     *
+     * @parameter expression="${verbose}" default-value="false"
+     */
+    private boolean verbose;
+
+    /**
+     * Write the rules straight into the OrientDB database of a Light Server instead of calling the REST API, e.g.
+     * plocal:/data/light to seed a new environment. The server must not have the database open. Nothing is sent
+     * to serverUrl in this mode. It needs a build on Java 8, OrientDB 2.0 does not run on later versions.
+     *
+     * @parameter
+     */
+    private String orientDbUrl;
+
+    /**
+     * OrientDB user for orientDbUrl.
+     *
+     * @parameter default-value="admin"
+     */
+    private String orientDbUser;
+
+    /**
+     * OrientDB password for orientDbUrl.
+     *
+     * @parameter default-value="admin"
+     */
+    private String orientDbPassword;
+
+    /**
+     * Number of rules written to OrientDB per transaction.
+     *
+     * @parameter default-value="1000"
+     */
+    private int orientBatchSize;
+
+    /**
+     * Compile each changed rule with the Java compiler of the build before it is uploaded. Rules are compiled
+     * against the compile classpath of the project, with the source roots as source path, on the parser threads. A
+     * rule that does not compile is not uploaded and the build fails once the other rules are done; plan writes no
+     * change set then.
+     *
+     * @parameter expression="${compileRules}" default-value="false"
+     */
+    private boolean compileRules;
+
+    /**
+     * Send the class files of each compiled rule with its source, so that the server does not have to compile it.
+     * They are put in the bytecode field of impRule, base64 encoded and keyed by binary class name. Implies
+     * compileRules. Change sets only hold sources, apply uploads them without class files.
+     *
+     * @parameter expression="${uploadBytecode}" default-value="false"
+     */
+    private boolean uploadBytecode;
+
+    /**
+     * Java release the rules are compiled for, passed to the compiler as --release, or as -source and -target if
+     * the build runs on Java 8. Without it the compiler default is used, which has to match what the server runs
+     * on if the class files are uploaded.
+     *
+     * @parameter expression="${ruleRelease}"
+     */
+    private String ruleRelease;
+
+    /**
+     * Compile classpath of the project.
+     *
+     * @parameter expression="${project.compileClasspathElements}"
+     * @readonly
+     */
+    private List<String> classpathElements;
+
+    /**
+     * Execution request of the running build. All modules of a build share it, so it tells the build apart from
+     * earlier ones when Maven is embedded and runs several builds in one JVM.
+     *
+     * @parameter expression="${session.request}"
+     * @readonly
+     */
+    private Object buildRequest;
+
+    ContentLoader loader = null;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        loader = createLoader();
+        loader.execute();
     }
 
-    private boolean ensureTargetDirectoryExists() {
-        if (outputDirectory.exists()) {
-            return true;
-        }
-        return outputDirectory.mkdirs();
+    /**
+     * Compare the sources with the server like load, but write the changed rules to a change set for the apply goal
+     * instead of uploading them.
+     *
+     * @param file change set file
+     * @throws MojoExecutionException
+     */
+    void plan(File file) throws MojoExecutionException {
+        checkRestApi();
+        loader = createLoader();
+        loader.plan(file);
     }
 
-    public void parseRuleFile(final String filePath) {
-        System.out.println("Process file = " + filePath);
-        String packageName = null;
-        StringBuilder sourceCode = new StringBuilder();
-        boolean validRule = false;
-        try {
-            File file = new File(filePath);
-            String className = getClassName(file);
-            if (".java".equals(getExtension(file))) {
-                final Scanner scan = new Scanner(file, encoding);
-                String line = scan.nextLine();
-                while (scan.hasNext()) {
-                    if (!line.trim().isEmpty()) {
-                        if (line.startsWith("package")) {
-                            packageName = line.substring(8, line.length() -1);
-                        }
-                        if (!validRule && line.indexOf("implements") != -1 && line.indexOf("Rule") != -1) {
-                            validRule = true;
-                        }
-                    }
-                    sourceCode.append(line);
-                    sourceCode.append("\n");
-                    line = scan.nextLine();
-                }
-                sourceCode.append(line);
-                sourceCode.append("\n");
-            }
-            if (validRule) {
-                // connect to example:8080 to upload rule here.
-                String ruleClass = packageName + "." + className;
-
-                // only import the rule if source has been changed after comparing with server
-                if(!sourceCode.toString().equals(ruleMap.get(ruleClass))) {
-                    impRule(ruleClass, sourceCode.toString());
-                    // generate SQL insert statements
-
-                    String sql = "INSERT INTO RULE(class_name, source_code) VALUES ('" + ruleClass + "', '" + sourceCode.toString().replaceAll("'", "''") + "');\n";
-                    sqlString += sql;
-                }
-            }
-        } catch (final IOException e) {
-            getLog().error(e.getMessage());
-        }
+    /**
+     * Upload the rules of a change set written by the plan goal. No sources are read and nothing is compared with the
+     * server, every rule in the change set is sent.
+     *
+     * @param file change set file
+     * @throws MojoExecutionException
+     */
+    void apply(File file) throws MojoExecutionException {
+        checkRestApi();
+        loader = createLoader();
+        loader.apply(file);
+    }
 
+    /**
+     * Load once and then push every rule saved after that, until the thread is interrupted.
+     *
+     * @param debounceMillis time without further changes before a burst of edits is pushed
+     * @throws MojoExecutionException
+     */
+    void watch(long debounceMillis) throws MojoExecutionException {
+        loader = createLoader();
+        loader.watch(debounceMillis);
     }
-    private void login() {
-        // login to the server
-        Map<String, Object> inputMap = new HashMap<String, Object>();
-        inputMap.put("category", "user");
-        inputMap.put("name", "signInUser");
-        inputMap.put("readOnly", false);
-        Map<String, Object> data = new HashMap<String, Object>();
-        data.put("userIdEmail", serverUser);
-        data.put("password", serverPass);
-        data.put("rememberMe", true);
-        data.put("clientId", clientId);
-        inputMap.put("data", data);
-
-        CloseableHttpResponse response = null;
-        try {
-            HttpPost httpPost = new HttpPost(serverUrl + "/api/rs");
-            StringEntity input = new StringEntity(mapper.writeValueAsString(inputMap));
-            input.setContentType("application/json");
-            httpPost.setEntity(input);
-            response = httpclient.execute(httpPost);
-            HttpEntity entity = response.getEntity();
-            BufferedReader rd = new BufferedReader(new InputStreamReader(entity.getContent()));
-            String json = "";
-            String line = "";
-            while ((line = rd.readLine()) != null) {
-                json = json + line;
-            }
-            Map<String, Object> jsonMap = mapper.readValue(json,
-                    new TypeReference<HashMap<String, Object>>() {
-                    });
-            jwt = (String)jsonMap.get("accessToken");
-            EntityUtils.consume(entity);
-            System.out.println("Logged in successfully");
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            if (response != null) {
-                try {
-                    response.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
+
+    private void checkRestApi() throws MojoExecutionException {
+        if (orientDbUrl != null && orientDbUrl.length() > 0) {
+            throw new MojoExecutionException("plan and apply work with the REST API only, remove orientDbUrl");
         }
     }
 
     /**
-     * Get all rules from the server and construct a map in order to compare source code
-     * to detect changes or not.
-     *
-     * @return Map<String, String>
-     */
-    private Map<String, String> getRuleMap() {
-        Map<String, String> ruleMap = null;
-
-        Map<String, Object> inputMap = new HashMap<String, Object>();
-        inputMap.put("category", "rule");
-        inputMap.put("name", "getRuleMap");
-        inputMap.put("readOnly", true);
-
-        CloseableHttpResponse response = null;
-        try {
-            HttpPost httpPost = new HttpPost(serverUrl + "/api/rs");
-            httpPost.addHeader("Authorization", "Bearer " + jwt);
-            StringEntity input = new StringEntity(mapper.writeValueAsString(inputMap));
-            input.setContentType("application/json");
-            httpPost.setEntity(input);
-            response = httpclient.execute(httpPost);
-            HttpEntity entity = response.getEntity();
-            BufferedReader rd = new BufferedReader(new InputStreamReader(entity.getContent()));
-            String json = "";
-            String line = "";
-            while ((line = rd.readLine()) != null) {
-                json = json + line;
+     * Create a loader of rules configured with the parameters of the goal.
+     */
+    ContentLoader createLoader() throws MojoExecutionException {
+        RuleContentType type = new RuleContentType();
+        type.setCompile(compileRules, uploadBytecode, classpathElements, ruleRelease);
+        ContentLoader loader = new ContentLoader(getLog(), "rule", outputDirectory);
+        loader.addType(type);
+        loader.setSources(getSourceRoots(), includes, excludes, encoding);
+        loader.setServer(serverUrl, serverUser, serverPass, clientId, buildRequest);
+        loader.setTokenCacheFile(cacheTokenInFile ? tokenCacheFile : null);
+        loader.setParser(parserThreads, parserQueueSize);
+        loader.setUploads(maxConcurrentUploads, batchSize, maxBatchBytes, keepAliveMillis);
+        loader.setCompression(requestCompression, compressMinBytes);
+        loader.setRetry(maxRetries, retryBackoffMillis, maxRetryBackoffMillis);
+        loader.setSql(sqlFormat, sqlDialect, sqlBatchSize, sqlGzip, sqlSnapshot);
+        loader.setDigestMode(digestMode);
+        loader.setIncremental(incremental);
+        loader.setResume(resume);
+        loader.setVerbose(verbose);
+        if (orientDbUrl != null && orientDbUrl.length() > 0) {
+            if (!OrientRuleStore.isSupported()) {
+                throw new MojoExecutionException("orientDbUrl needs Java 8, OrientDB 2.0 does not run on Java "
+                        + System.getProperty("java.specification.version")
+                        + ". Run the build on Java 8 or load through serverUrl.");
             }
-            EntityUtils.consume(entity);
-            System.out.println("Got rule map from server");
-            ruleMap = mapper.readValue(json,
-                    new TypeReference<HashMap<String, String>>() {
-                    });
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            if (response != null) {
-                try {
-                    response.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+            // the database is diffed through its index on ruleClass, there is nothing to log in to.
+            try {
+                loader.setStore(orientDbUrl,
+                        new OrientRuleStore(orientDbUrl, orientDbUser, orientDbPassword, orientBatchSize));
+            } catch (RuntimeException e) {
+                throw new MojoExecutionException("Failed to open " + orientDbUrl, e);
             }
         }
-        return ruleMap;
+        return loader;
     }
 
-    private void impRule(String ruleClass, String sourceCode) {
-
-        Map<String, Object> inputMap = new HashMap<String, Object>();
-        inputMap.put("category", "rule");
-        inputMap.put("name", "impRule");
-        inputMap.put("readOnly", false);
-        Map<String, Object> data = new HashMap<String, Object>();
-        data.put("ruleClass", ruleClass);
-        data.put("sourceCode", sourceCode);
-        inputMap.put("data", data);
-
-        CloseableHttpResponse response = null;
-        try {
-            HttpPost httpPost = new HttpPost(serverUrl + "/api/rs");
-            httpPost.addHeader("Authorization", "Bearer " + jwt);
-            StringEntity input = new StringEntity(mapper.writeValueAsString(inputMap));
-            input.setContentType("application/json");
-            httpPost.setEntity(input);
-            response = httpclient.execute(httpPost);
-            HttpEntity entity = response.getEntity();
-            BufferedReader rd = new BufferedReader(new InputStreamReader(entity.getContent()));
-            String json = "";
-            String line = "";
-            while ((line = rd.readLine()) != null) {
-                json = json + line;
-            }
-            EntityUtils.consume(entity);
-            System.out.println("Loaded " + ruleClass);
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            if (response != null) {
-                try {
-                    response.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
+    List<File> getSourceRoots() {
+        List<File> roots = new ArrayList<File>();
+        roots.add(sourceDirectory);
+        if (includeTestSources) {
+            roots.add(testSourceDirectory);
+        }
+        if (sourceRoots != null) {
+            roots.addAll(Arrays.asList(sourceRoots));
         }
+        return roots;
     }
 
-    private void writeSqlToOutputFile() {
-        OutputStreamWriter out = null;
-        try {
-            final StringBuffer path = new StringBuffer();
-            path.append(outputDirectory);
-            path.append(System.getProperty("file.separator"));
-            path.append("rule.sql");
-
-            final FileOutputStream fos = new FileOutputStream(path.toString());
-            out = new OutputStreamWriter(fos, encoding);
-            out.write(sqlString);
-
-        } catch (final IOException e) {
-            getLog().error(e.getMessage());
-        } finally {
-            if (null != out) {
-                try {
-                    out.close();
-                } catch (final IOException e) {
-                    getLog().error(e.getMessage());
-                }
-            }
-        }
+    public void parseRuleFile(final String filePath) throws MojoExecutionException {
+        loader.parseFile(filePath);
     }
 
     /*
@@ -414,4 +523,4 @@ public class LoadRuleMojo extends AbstractMojo {
             return filename.substring(dotPos);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.rule;
+
+import java.util.Date;
+
+import com.networknt.light.loader.ContentStore;
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
+import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.index.OIndex;
+import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
+import com.orientechnologies.orient.core.metadata.schema.OClass;
+import com.orientechnologies.orient.core.metadata.schema.OSchema;
+import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.impl.ODocument;
+
+/**
+ * Writes rules straight into the OrientDB database of a Light Server instead of going through the REST API one
+ * rule at a time. This is meant for seeding a new environment from a local or plocal database. The Rule class and
+ * its unique index on ruleClass are created if they are missing, every rule is looked up in that index to see if
+ * it is new, changed or the same, and changes are committed in transactions of batchSize records with the
+ * massive insert intent declared.
+ *
+ * The database is bound to the thread that opened it, so all calls have to come from that thread.
+ */
+public class OrientRuleStore implements ContentStore {
+    public static final String CLASS = "Rule";
+    public static final String INDEX = "Rule.ruleClass";
+
+    private final ODatabaseDocumentTx db;
+    private final OIndex<?> index;
+    private final int batchSize;
+    private int pending = 0;
+    private int inserted = 0;
+    private int updated = 0;
+    private int unchanged = 0;
+
+    /**
+     * OrientDB 2.0 finds its index factories through the ImageIO service registry, which is closed to other classes
+     * from Java 9 on, so a database can only be opened on Java 8.
+     *
+     * @return true if the running Java can open a database
+     */
+    public static boolean isSupported() {
+        return System.getProperty("java.specification.version").startsWith("1.");
+    }
+
+    /**
+     * Open the database, a memory, local or plocal database that does not exist yet is created.
+     *
+     * @param url database url, e.g. plocal:/data/light or memory:test
+     * @param user database user
+     * @param password database password
+     * @param batchSize number of records per transaction
+     */
+    public OrientRuleStore(String url, String user, String password, int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        db = new ODatabaseDocumentTx(url);
+        boolean embedded = url.startsWith("memory:") || url.startsWith("plocal:") || url.startsWith("local:");
+        if (embedded && !db.exists()) {
+            db.create();
+        } else {
+            db.open(user, password);
+        }
+        OSchema schema = db.getMetadata().getSchema();
+        OClass ruleClass = schema.getClass(CLASS);
+        if (ruleClass == null) {
+            ruleClass = schema.createClass(CLASS);
+            ruleClass.createProperty("ruleClass", OType.STRING);
+            ruleClass.createProperty("sourceCode", OType.STRING);
+            ruleClass.createProperty("createDate", OType.DATETIME);
+            ruleClass.createProperty("updateDate", OType.DATETIME);
+        }
+        OIndex<?> idx = ruleClass.getClassIndex(INDEX);
+        if (idx == null) {
+            idx = ruleClass.createIndex(INDEX, OClass.INDEX_TYPE.UNIQUE, "ruleClass");
+        }
+        index = idx;
+        db.declareIntent(new OIntentMassiveInsert());
+        db.begin();
+    }
+
+    /**
+     * Insert or update a rule.
+     *
+     * @return false if the rule is in the database with the same source code already
+     */
+    public boolean store(String ruleClass, String sourceCode) {
+        OIdentifiable id = (OIdentifiable) index.get(ruleClass);
+        ODocument doc;
+        if (id == null) {
+            doc = new ODocument(CLASS);
+            doc.field("ruleClass", ruleClass);
+            doc.field("createDate", new Date());
+            inserted++;
+        } else {
+            doc = id.getRecord();
+            if (sourceCode.equals(doc.field("sourceCode"))) {
+                unchanged++;
+                return false;
+            }
+            doc.field("updateDate", new Date());
+            updated++;
+        }
+        doc.field("sourceCode", sourceCode);
+        doc.save();
+        if (++pending >= batchSize) {
+            commit();
+        }
+        return true;
+    }
+
+    /**
+     * Get the source code of a rule.
+     *
+     * @return source code or null if the rule is not in the database
+     */
+    public String get(String ruleClass) {
+        OIdentifiable id = (OIdentifiable) index.get(ruleClass);
+        if (id == null) {
+            return null;
+        }
+        ODocument doc = id.getRecord();
+        return doc.field("sourceCode");
+    }
+
+    /**
+     * Commit what has been stored so far and start the next transaction.
+     */
+    public void commit() {
+        db.commit();
+        db.begin();
+        pending = 0;
+    }
+
+    public int getInserted() {
+        return inserted;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    public String getSummary() {
+        return "OrientDB: " + inserted + " inserted, " + updated + " updated, " + unchanged + " unchanged";
+    }
+
+    public void close() {
+        try {
+            db.commit();
+            db.declareIntent(null);
+        } finally {
+            db.close();
+        }
+    }
+}
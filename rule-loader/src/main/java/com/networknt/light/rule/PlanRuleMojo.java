@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.rule;
+
+import java.io.File;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Goal that compares the rules with the server like load, but writes the changed ones to a change set instead of
+ * uploading them. The diff can run on a fast build agent and the apply goal can send the change set later from a
+ * deploy agent close to the server.
+ *
+ * @goal plan
+ *
+ * @requiresDependencyResolution compile
+ */
+public class PlanRuleMojo extends LoadRuleMojo {
+
+    /**
+     * Change set file to write.
+     *
+     * @parameter expression="${changeSetFile}" default-value="${project.build.directory}/rule-changes.lcs"
+     */
+    private File changeSetFile;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        plan(changeSetFile);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.rule;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Goal that loads the rules once like load and then keeps watching the source directories. Every rule saved after
+ * that is pushed to the server right away, reusing the login, the connection pool and the rule map from the first
+ * load instead of starting over for each edit. It runs until it is stopped with Ctrl+C.
+ *
+ * @goal watch
+ *
+ * @requiresDependencyResolution compile
+ */
+public class WatchRuleMojo extends LoadRuleMojo {
+
+    /**
+     * Time in milliseconds without further changes before a burst of edits is pushed.
+     *
+     * @parameter default-value="200"
+     */
+    private long debounceMillis;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        watch(debounceMillis);
+    }
+}
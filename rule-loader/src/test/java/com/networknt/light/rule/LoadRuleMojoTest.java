@@ -16,6 +16,10 @@
 
 package com.networknt.light.rule;
 
+import com.networknt.light.loader.Digests;
+import com.networknt.light.loader.ServerSession;
+import com.networknt.light.loader.SourceReader;
+import com.networknt.light.loader.StubLightServer;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentPool;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
@@ -23,9 +27,14 @@ import com.orientechnologies.orient.core.metadata.schema.OSchema;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
+import org.apache.maven.plugin.MojoExecutionException;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -44,15 +53,372 @@ public class LoadRuleMojoTest extends TestCase {
         return suite;
     }
 
+    /**
+     * Number of source files of the end to end tests, raise it with -Dloadtest.files=100000 for a load test.
+     */
+    private static final int FILES = Integer.getInteger("loadtest.files", 200);
+
+    private File root;
+    private StubLightServer server;
+
     public void setUp() throws Exception {
         super.setUp();
+        root = File.createTempFile("rule-loader", "");
+        root.delete();
+        root.mkdirs();
+        server = new StubLightServer();
     }
 
     public void tearDown() throws Exception {
+        server.stop();
+        ServerSession.closeAll();
+        delete(root);
         super.tearDown();
     }
 
     public void testNothing() {
         assertTrue(true);
     }
+
+    public void testLoad() throws Exception {
+        Map<String, String> rules = writeSources(FILES);
+        createMojo().execute();
+        assertEquals(rules, server.getRules());
+        assertEquals(rules.size(), server.getImports());
+        assertTrue(new File(root, "target/rule-load-report.json").exists());
+
+        // a new build compares with the server and has nothing to upload
+        ServerSession.closeAll();
+        createMojo().execute();
+        assertEquals(rules.size(), server.getImports());
+        assertEquals(2, server.getRequests("getRuleMap"));
+    }
+
+    public void testSlowAndFailingServer() throws Exception {
+        Map<String, String> rules = writeSources(FILES);
+        server.setLatency(5, 20);
+        server.setErrorRate(0.2);
+        LoadRuleMojo mojo = createMojo();
+        set(mojo, "batchSize", 10);
+        set(mojo, "maxConcurrentUploads", 8);
+        set(mojo, "maxRetries", 20);
+        set(mojo, "requestCompression", "gzip");
+        long started = System.currentTimeMillis();
+        mojo.execute();
+        System.out.println(FILES + " files over a slow link in " + (System.currentTimeMillis() - started) + " ms");
+        assertEquals(rules, server.getRules());
+        // with one request in five failing there is almost always a retry, but not always
+        assertTrue(server.getRequests("batch") >= (rules.size() + 9) / 10);
+        assertTrue(server.getMaxInFlight() > 1);
+    }
+
+    public void testBatchFailureKeepsBatching() throws Exception {
+        Map<String, String> rules = writeSources(FILES);
+        server.failNext("batch", 1);
+        LoadRuleMojo mojo = createMojo();
+        set(mojo, "batchSize", 10);
+        set(mojo, "maxRetries", 0);
+        mojo.execute();
+        assertEquals(rules, server.getRules());
+        // the batch answered with 503 is sent item by item, the next one is a batch again
+        assertEquals((rules.size() + 9) / 10, server.getRequests("batch"));
+        assertTrue(mojo.loader.isBatchSupported());
+    }
+
+    public void testBatchBadRequestKeepsBatching() throws Exception {
+        Map<String, String> rules = writeSources(FILES);
+        server.failNext("batch", 1, 400);
+        LoadRuleMojo mojo = createMojo();
+        set(mojo, "batchSize", 10);
+        mojo.execute();
+        assertEquals(rules, server.getRules());
+        // a 400 from a server that knows batches fails that batch only, it does not turn batching off
+        assertEquals((rules.size() + 9) / 10, server.getRequests("batch"));
+        assertTrue(mojo.loader.isBatchSupported());
+    }
+
+    public void testThroughputLimit() throws Exception {
+        Map<String, String> rules = writeSources(FILES);
+        long bytes = 0;
+        for (String source : rules.values()) {
+            bytes += source.length();
+        }
+        server.setBytesPerSecond(4 * bytes);
+        long started = System.nanoTime();
+        createMojo().execute();
+        long elapsed = (System.nanoTime() - started) / 1000000;
+        assertEquals(rules, server.getRules());
+        // every rule had to go over the link
+        assertTrue(elapsed + " ms", elapsed >= 250);
+    }
+
+    public void testDigestModeWithoutServerSupport() throws Exception {
+        Map<String, String> rules = writeSources(FILES);
+        server.setDigestMapSupported(false);
+        server.setBatchSupported(false);
+        LoadRuleMojo mojo = createMojo();
+        set(mojo, "digestMode", true);
+        set(mojo, "batchSize", 10);
+        mojo.execute();
+        assertEquals(rules, server.getRules());
+
+        // only the changed rule is sent again
+        String ruleClass = rules.keySet().iterator().next();
+        File file = new File(root, "src/" + ruleClass.substring("com.example.".length()).replace('.', '/') + ".java");
+        String changed = rules.get(ruleClass) + "// changed\n";
+        write(file, changed);
+        ServerSession.closeAll();
+        mojo = createMojo();
+        set(mojo, "digestMode", true);
+        mojo.execute();
+        assertEquals(changed, server.getRules().get(ruleClass));
+        assertEquals(rules.size() + 1, server.getImports());
+    }
+
+    public void testRejectedUpload() throws Exception {
+        Map<String, String> rules = writeSources(FILES);
+        String ruleClass = rules.keySet().iterator().next();
+        server.reject(ruleClass);
+        LoadRuleMojo mojo = createMojo();
+        // the default, uploads run on the calling thread
+        set(mojo, "maxConcurrentUploads", 1);
+        mojo.execute();
+        assertFalse(server.getRules().containsKey(ruleClass));
+        // the shared map must not take the rule as being on the server
+        assertFalse(mojo.loader.getServerMap("rule").containsKey(ruleClass));
+        assertEquals(rules.size() - 1, mojo.loader.getServerMap("rule").size());
+
+        // so a later module of the same build tries it again
+        server.accept(ruleClass);
+        createMojo().execute();
+        assertEquals(rules, server.getRules());
+        assertEquals(1, server.getRequests("getRuleMap"));
+    }
+
+    public void testBuildScopedSession() throws Exception {
+        Map<String, String> rules = writeSources(FILES);
+        Object build = new Object();
+        LoadRuleMojo mojo = createMojo();
+        set(mojo, "buildRequest", build);
+        set(mojo, "maxConcurrentUploads", 2);
+        mojo.execute();
+        ServerSession session = mojo.loader.getSession();
+        assertEquals(2, session.getPoolSize());
+
+        // a later module of the build reuses the map and grows the pool for its uploads
+        mojo = createMojo();
+        set(mojo, "buildRequest", build);
+        set(mojo, "maxConcurrentUploads", 8);
+        mojo.execute();
+        assertSame(session, mojo.loader.getSession());
+        assertEquals(8, session.getPoolSize());
+        assertEquals(1, server.getRequests("getRuleMap"));
+
+        // the next build in the same JVM starts over
+        mojo = createMojo();
+        set(mojo, "buildRequest", new Object());
+        mojo.execute();
+        assertNotSame(session, mojo.loader.getSession());
+        assertEquals(0, session.getPoolSize());
+        assertEquals(2, server.getRequests("getRuleMap"));
+        assertEquals(rules, server.getRules());
+    }
+
+    public void testPlanAndApply() throws Exception {
+        Map<String, String> rules = writeSources(FILES);
+        File changes = new File(root, "target/rule-changes.lcs");
+        createMojo().plan(changes);
+        assertTrue(changes.exists());
+        assertEquals(0, server.getImports());
+        assertEquals(1, server.getRequests("getRuleMap"));
+
+        // apply needs neither the sources nor the map of the server
+        delete(new File(root, "src"));
+        ServerSession.closeAll();
+        LoadRuleMojo mojo = createMojo();
+        set(mojo, "maxConcurrentUploads", 8);
+        mojo.apply(changes);
+        assertEquals(rules, server.getRules());
+        assertEquals(rules.size(), server.getImports());
+        assertEquals(1, server.getRequests("getRuleMap"));
+    }
+
+    public void testCompileRules() throws Exception {
+        // every rule is compiled on its own, a few are enough
+        Map<String, String> rules = writeSources(Math.min(FILES, 40));
+        // the interface the rules implement comes from the source path
+        write(new File(root, "src/com/networknt/light/rule/Rule.java"),
+                "package com.networknt.light.rule;\n\npublic interface Rule {\n}\n");
+        String broken = rules.keySet().iterator().next();
+        String packageName = broken.substring("com.example.".length(), broken.lastIndexOf('.'));
+        String className = broken.substring(broken.lastIndexOf('.') + 1);
+        write(new File(root, "src/" + packageName + "/" + className + ".java"), "package com.example." + packageName
+                + ";\n\nimport com.networknt.light.rule.Rule;\n\npublic class " + className
+                + " implements Rule {\n    Missing missing;\n}\n");
+        rules.remove(broken);
+
+        LoadRuleMojo mojo = createMojo();
+        set(mojo, "uploadBytecode", true);
+        set(mojo, "incremental", true);
+        try {
+            mojo.execute();
+            fail("a rule that does not compile must fail the build");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("1 rules do not compile"));
+        }
+        // everything else is loaded, with its class files
+        assertEquals(rules, server.getRules());
+        assertEquals(rules.keySet(), server.getBytecode().keySet());
+        for (Map.Entry<String, Map<String, byte[]>> entry : server.getBytecode().entrySet()) {
+            byte[] classFile = entry.getValue().get(entry.getKey());
+            assertEquals(0xCAFEBABE, ByteBuffer.wrap(classFile).getInt());
+        }
+
+        // the broken rule is tried again on the next run
+        ServerSession.closeAll();
+        mojo = createMojo();
+        set(mojo, "compileRules", true);
+        set(mojo, "incremental", true);
+        try {
+            mojo.execute();
+            fail("a rule that does not compile must fail the build");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("1 rules do not compile"));
+        }
+        assertEquals(rules.size(), server.getImports());
+    }
+
+    public void testOrientDbNeedsJava8() throws Exception {
+        if (OrientRuleStore.isSupported()) {
+            // OrientRuleStoreTest covers the store on Java 8
+            return;
+        }
+        LoadRuleMojo mojo = createMojo();
+        set(mojo, "orientDbUrl", "memory:rules");
+        try {
+            mojo.execute();
+            fail("orientDbUrl must fail the build after Java 8");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("orientDbUrl needs Java 8"));
+        }
+    }
+
+    public void testSqlSnapshot() throws Exception {
+        Map<String, String> rules = writeSources(FILES);
+        LoadRuleMojo mojo = createMojo();
+        set(mojo, "sqlFormat", "copy");
+        set(mojo, "incremental", true);
+        mojo.execute();
+        assertEquals(rules.size(), countRows(new File(root, "target/rule.csv")));
+        assertTrue(new File(root, "target/rule-load.sql").exists());
+
+        // only the changed rule is uploaded, but all of them are in the snapshot
+        String ruleClass = rules.keySet().iterator().next();
+        File file = new File(root, "src/" + ruleClass.substring("com.example.".length()).replace('.', '/') + ".java");
+        write(file, rules.get(ruleClass) + "// changed\n");
+        ServerSession.closeAll();
+        mojo = createMojo();
+        set(mojo, "sqlFormat", "copy");
+        set(mojo, "sqlSnapshot", true);
+        set(mojo, "incremental", true);
+        mojo.execute();
+        assertEquals(rules.size() + 1, server.getImports());
+        assertEquals(rules.size(), countRows(new File(root, "target/rule.csv")));
+    }
+
+    /**
+     * @return number of rows in a CSV file written by BulkFileWriter
+     */
+    private static int countRows(File file) throws IOException {
+        String csv = new String(SourceReader.readAll(file), Digests.UTF8);
+        return csv.split("\n\"com\\.example\\.", -1).length - 1;
+    }
+
+    /**
+     * Create a mojo configured the way Maven would with the defaults of the plugin, loading to the stub server.
+     */
+    private LoadRuleMojo createMojo() {
+        LoadRuleMojo mojo = new LoadRuleMojo();
+        set(mojo, "outputDirectory", new File(root, "target"));
+        set(mojo, "sourceDirectory", new File(root, "src"));
+        set(mojo, "testSourceDirectory", new File(root, "test"));
+        set(mojo, "encoding", "UTF-8");
+        set(mojo, "serverUrl", server.getUrl());
+        set(mojo, "serverUser", "stevehu");
+        set(mojo, "serverPass", "123456");
+        set(mojo, "clientId", "example@Browser");
+        set(mojo, "tokenCacheFile", new File(root, "token-cache"));
+        set(mojo, "parserThreads", 4);
+        set(mojo, "parserQueueSize", 256);
+        set(mojo, "batchSize", 1);
+        set(mojo, "maxBatchBytes", 1048576L);
+        set(mojo, "sqlDialect", "ansi");
+        set(mojo, "sqlBatchSize", 1);
+        set(mojo, "maxConcurrentUploads", 4);
+        set(mojo, "keepAliveMillis", 30000L);
+        set(mojo, "requestCompression", "none");
+        set(mojo, "compressMinBytes", 1024);
+        set(mojo, "maxRetries", 3);
+        set(mojo, "retryBackoffMillis", 5L);
+        set(mojo, "maxRetryBackoffMillis", 50L);
+        return mojo;
+    }
+
+    private static void set(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot set " + name, e);
+        }
+    }
+
+    /**
+     * Write a tree of sources, 50 per directory. One in five is a helper that does not implement Rule.
+     *
+     * @return content of the rules by class name
+     */
+    private Map<String, String> writeSources(int files) throws IOException {
+        Map<String, String> rules = new HashMap<String, String>();
+        for (int i = 0; i < files; i++) {
+            String packageName = "p" + (i / 50);
+            String className = "Generated" + i + "Rule";
+            boolean rule = i % 5 != 0;
+            StringBuilder sb = new StringBuilder();
+            sb.append("package com.example.").append(packageName).append(";\n\n")
+                    .append("import com.networknt.light.rule.Rule;\n\n")
+                    .append("public class ").append(className).append(rule ? " implements Rule {\n" : " {\n");
+            for (int k = 0; k < 10 + i % 40; k++) {
+                sb.append("    public String value").append(k).append("() {\n        return \"")
+                        .append(Integer.toHexString(i * 31 + k)).append("\";\n    }\n");
+            }
+            sb.append("}\n");
+            write(new File(root, "src/" + packageName + "/" + className + ".java"), sb.toString());
+            if (rule) {
+                rules.put("com.example." + packageName + "." + className, sb.toString());
+            }
+        }
+        return rules;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(Digests.UTF8));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
 }
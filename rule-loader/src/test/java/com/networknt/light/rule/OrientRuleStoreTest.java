@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.light.rule;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class OrientRuleStoreTest extends TestCase {
+
+    public OrientRuleStoreTest(String name) {
+        super(name);
+    }
+
+    public static Test suite() {
+        TestSuite suite = new TestSuite();
+        if (OrientRuleStore.isSupported()) {
+            suite.addTestSuite(OrientRuleStoreTest.class);
+        } else {
+            System.out.println("Skipping OrientRuleStoreTest: OrientDB 2.0 needs Java 8, this is Java "
+                    + System.getProperty("java.specification.version"));
+        }
+        return suite;
+    }
+
+    public void testStore() {
+        String url = "memory:rulestore" + System.nanoTime();
+        OrientRuleStore store = new OrientRuleStore(url, "admin", "admin", 100);
+        try {
+            for (int i = 0; i < 250; i++) {
+                assertTrue(store.store("com.example.Rule" + i, "class Rule" + i + " implements Rule {}\n"));
+            }
+            store.commit();
+            assertEquals(250, store.getInserted());
+            assertEquals("class Rule7 implements Rule {}\n", store.get("com.example.Rule7"));
+
+            // same source is skipped, changed source is updated in place
+            assertFalse(store.store("com.example.Rule1", "class Rule1 implements Rule {}\n"));
+            assertTrue(store.store("com.example.Rule2", "class Rule2 implements Rule { }\n"));
+            store.commit();
+            assertEquals(1, store.getUnchanged());
+            assertEquals(1, store.getUpdated());
+            assertEquals("class Rule2 implements Rule { }\n", store.get("com.example.Rule2"));
+            assertNull(store.get("com.example.Missing"));
+        } finally {
+            store.close();
+        }
+    }
+}